@@ -0,0 +1,62 @@
+-- Upgrades the tables created before the composite keys, unique names and lookup indexes were added to the tbl_*.sql scripts.
+-- On a database created from the current baseline the changes are already in place, and the errors of the indexes are ignored.
+--
+-- The link tables are rebuilt instead of deduplicated in place: the keyed copy is filled first, and swapped in with one
+-- atomic RENAME, so a failure at any step leaves the original links intact and the migration can simply be re-run.
+-- The data steps (INSERT, DELETE) are run by the MigrationRunner in their own transactions, between the DDL batches.
+
+DROP TABLE IF EXISTS movies_actors_rebuild;
+CREATE TABLE movies_actors_rebuild (
+    movie_id SMALLINT NOT NULL,
+    actor_id SMALLINT NOT NULL,
+    PRIMARY KEY (movie_id, actor_id),
+    INDEX idx_movies_actors_actor (actor_id, movie_id),
+    FOREIGN KEY (movie_id) REFERENCES movies(movie_id),
+    FOREIGN KEY (actor_id) REFERENCES actors(actor_id)
+);
+
+DROP TABLE IF EXISTS movies_directors_rebuild;
+CREATE TABLE movies_directors_rebuild (
+    movie_id SMALLINT NOT NULL,
+    director_id SMALLINT NOT NULL,
+    PRIMARY KEY (movie_id, director_id),
+    INDEX idx_movies_directors_director (director_id, movie_id),
+    FOREIGN KEY (movie_id) REFERENCES movies(movie_id),
+    FOREIGN KEY (director_id) REFERENCES directors(director_id)
+);
+
+-- Copies every link once, without incomplete links, and pointing to the lowest id of people with the same name,
+-- which are the ones kept when the unique name indexes are added
+INSERT IGNORE INTO movies_actors_rebuild (movie_id, actor_id)
+    SELECT ma.movie_id, MIN(keep.actor_id) FROM movies_actors ma
+    INNER JOIN actors a ON a.actor_id=ma.actor_id
+    INNER JOIN actors keep ON keep.name=a.name
+    WHERE ma.movie_id IS NOT NULL
+    GROUP BY ma.movie_id, ma.actor_id;
+
+INSERT IGNORE INTO movies_directors_rebuild (movie_id, director_id)
+    SELECT md.movie_id, MIN(keep.director_id) FROM movies_directors md
+    INNER JOIN directors d ON d.director_id=md.director_id
+    INNER JOIN directors keep ON keep.name=d.name
+    WHERE md.movie_id IS NOT NULL
+    GROUP BY md.movie_id, md.director_id;
+
+RENAME TABLE movies_actors TO movies_actors_legacy, movies_actors_rebuild TO movies_actors;
+DROP TABLE movies_actors_legacy;
+RENAME TABLE movies_directors TO movies_directors_legacy, movies_directors_rebuild TO movies_directors;
+DROP TABLE movies_directors_legacy;
+
+-- No link points to the duplicate people any more
+DELETE a FROM actors a INNER JOIN actors keep ON keep.name=a.name AND keep.actor_id<a.actor_id;
+DELETE d FROM directors d INNER JOIN directors keep ON keep.name=d.name AND keep.director_id<d.director_id;
+
+-- Built online, in parallel per table
+CREATE UNIQUE INDEX uq_actors_name ON actors (name);
+CREATE UNIQUE INDEX uq_directors_name ON directors (name);
+CREATE INDEX idx_rents_movie_end ON rents (movie_id, rent_end_date);
+CREATE INDEX idx_rents_renter_start ON rents (renter_id, rent_start_date);
+CREATE UNIQUE INDEX uq_movies_title_year ON movies (title, year);
+CREATE INDEX idx_movies_year ON movies (year);
+
+-- The unique (title, year) index serves the title lookups
+DROP INDEX idx_movies_title ON movies;
@@ -1,5 +1,6 @@
 CREATE TABLE IF NOT EXISTS actors (
     actor_id SMALLINT NOT NULL AUTO_INCREMENT,
     name VARCHAR(255) NOT NULL,
-    PRIMARY KEY (actor_id)
+    PRIMARY KEY (actor_id),
+    UNIQUE INDEX uq_actors_name (name)
 );
\ No newline at end of file
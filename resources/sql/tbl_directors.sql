@@ -1,5 +1,6 @@
 CREATE TABLE IF NOT EXISTS directors (
     director_id SMALLINT NOT NULL AUTO_INCREMENT,
     name VARCHAR(255) NOT NULL,
-    PRIMARY KEY (director_id)
+    PRIMARY KEY (director_id),
+    UNIQUE INDEX uq_directors_name (name)
 );
\ No newline at end of file
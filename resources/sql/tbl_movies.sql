@@ -8,5 +8,7 @@ CREATE TABLE IF NOT EXISTS movies (
     media_origin ENUM('OFFICIAL', 'PIRATE') NOT NULL,
     num_of_rents SMALLINT NOT NULL,
     is_rented BIT(1) NOT NULL,
-    PRIMARY KEY (movie_id)
+    PRIMARY KEY (movie_id),
+    UNIQUE INDEX uq_movies_title_year (title, year),
+    INDEX idx_movies_year (year)
 );
\ No newline at end of file
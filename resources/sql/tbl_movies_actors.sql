@@ -1,6 +1,8 @@
 CREATE TABLE IF NOT EXISTS movies_actors (
-    movie_id SMALLINT,
-    actor_id SMALLINT,
+    movie_id SMALLINT NOT NULL,
+    actor_id SMALLINT NOT NULL,
+    PRIMARY KEY (movie_id, actor_id),
+    INDEX idx_movies_actors_actor (actor_id, movie_id),
     FOREIGN KEY (movie_id) REFERENCES movies(movie_id),
     FOREIGN KEY (actor_id) REFERENCES actors(actor_id)
 );
\ No newline at end of file
@@ -1,6 +1,8 @@
 CREATE TABLE IF NOT EXISTS movies_directors (
-    movie_id SMALLINT,
-    director_id SMALLINT,
+    movie_id SMALLINT NOT NULL,
+    director_id SMALLINT NOT NULL,
+    PRIMARY KEY (movie_id, director_id),
+    INDEX idx_movies_directors_director (director_id, movie_id),
     FOREIGN KEY (movie_id) REFERENCES movies(movie_id),
     FOREIGN KEY (director_id) REFERENCES directors(director_id)
 );
\ No newline at end of file
@@ -3,6 +3,8 @@ CREATE TABLE IF NOT EXISTS rents (
     renter_id SMALLINT,
     rent_start_date DATE NOT NULL,
     rent_end_date DATE,
+    INDEX idx_rents_movie_end (movie_id, rent_end_date),
+    INDEX idx_rents_renter_start (renter_id, rent_start_date),
     FOREIGN KEY (movie_id) REFERENCES movies(movie_id),
     FOREIGN KEY (renter_id) REFERENCES renter_persons(renter_id)
 );
\ No newline at end of file
@@ -0,0 +1,96 @@
+package com.bakoalex.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.bakoalex.graph.CastGraph;
+
+/**
+ * Traversals of a generated cast graph, with 10 actors and 1 director per movie,
+ * and a catalog-like skew: a tenth of the actors play in most of the movies.
+ * build is the time to rebuild the snapshot from the collected links.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+@State(Scope.Benchmark)
+public class CastGraphBenchmark {
+
+    @Param({ "1000000" })
+    public int movieCount;
+
+    private CastGraph graph;
+    private CastGraph.Builder builder;
+    private int actorCount;
+    private int directorCount;
+    private int[] actors;
+    private int[] directors;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        actorCount = movieCount / 2;
+        directorCount = movieCount / 20;
+        builder = new CastGraph.Builder();
+        for (int movieId = 1; movieId <= movieCount; movieId++) {
+            for (int i = 0; i < 10; i++) builder.addActor(movieId, randomActor(random));
+            builder.addDirector(movieId, 1 + random.nextInt(directorCount));
+        }
+        graph = builder.build();
+
+        // Pairs of a director and an actor of one of the director's movies
+        actors = new int[1024];
+        directors = new int[1024];
+        for (int i = 0; i < actors.length; i++) {
+            int movieId = 1 + random.nextInt(movieCount);
+            int[] cast = graph.actorsOfMovie(movieId);
+            actors[i] = cast[random.nextInt(cast.length)];
+            directors[i] = graph.directorsOfMovie(movieId)[0];
+        }
+    }
+
+    private int randomActor(Random random) {
+        if (random.nextInt(10) < 7) return 1 + random.nextInt(actorCount / 10);
+        return 1 + random.nextInt(actorCount);
+    }
+
+    @Benchmark
+    public int[] moviesOfActor() {
+        return graph.moviesOfActor(actors[next++ & 1023]);
+    }
+
+    @Benchmark
+    public int[] coStars() {
+        return graph.coStars(actors[next++ & 1023]);
+    }
+
+    @Benchmark
+    public int[] moviesByDirectorWithActor() {
+        int i = next++ & 1023;
+        return graph.moviesByDirectorWithActor(directors[i], actors[i]);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Measurement(iterations = 5)
+    public CastGraph build() {
+        return builder.build();
+    }
+}
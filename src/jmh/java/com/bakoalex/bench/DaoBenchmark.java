@@ -0,0 +1,162 @@
+package com.bakoalex.bench;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.bakoalex.dao.ActorDao;
+import com.bakoalex.dao.DirectorDao;
+import com.bakoalex.dao.MovieDao;
+import com.bakoalex.database.ConnectionFactory;
+import com.bakoalex.database.EmbeddedDatabase;
+import com.bakoalex.dto.Actor;
+import com.bakoalex.dto.Director;
+import com.bakoalex.dto.Movie;
+import com.bakoalex.logger.ConsoleLogger;
+
+/**
+ * Benchmarks of the DAO hot paths and of the connection acquisition.
+ * Throughput and sampled latency (with percentiles) are measured, the gc profiler enabled
+ * by the bench profile adds the allocation rate.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DaoBenchmark {
+
+    /** Actors inserted per actorInsertAll call. */
+    private static final int INSERT_BATCH = 100;
+
+    @Param({ "1000" })
+    public int catalogSize;
+
+    /** Level of the application logger, so the cost of the DAO logging can be compared with it switched off. */
+    @Param({ "OFF", "INFO", "FINE" })
+    public String logLevel;
+
+    /**
+     * Whether the connections are wrapped in the SqlMetrics proxies, so their cost can be compared with the raw connections.
+     * It sets piratemovies.metrics.enabled, which is read once, so every trial needs its own fork.
+     */
+    @Param({ "true", "false" })
+    public boolean metricsEnabled;
+
+    private EmbeddedDatabase database;
+    private MovieDao movieDao;
+    private ActorDao actorDao;
+    private DirectorDao directorDao;
+
+    private int nextMovieId;
+    private int insertedActors;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        System.setProperty("piratemovies.metrics.enabled", String.valueOf(metricsEnabled));
+        if (ConnectionFactory.isMetricsEnabled() != metricsEnabled)
+            throw new IllegalStateException("piratemovies.metrics.enabled was read before the benchmark set it");
+        ConsoleLogger.setLevel(java.util.logging.Level.parse(logLevel));
+        database = EmbeddedDatabase.start(catalogSize, false);
+        movieDao = new MovieDao();
+        actorDao = new ActorDao();
+        directorDao = new DirectorDao();
+        ActorDao.warmNameIndex();
+        DirectorDao.warmNameIndex();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        database.stop();
+    }
+
+    /**
+     * Deletes the actors inserted by actorInsert and actorInsertAll, so the table and the name index do not grow between iterations.
+     */
+    @TearDown(Level.Iteration)
+    public void deleteInsertedActors() throws SQLException {
+        List<Actor> inserted = new ArrayList<>();
+        try (Connection conn = ConnectionFactory.getConnection()) {
+            PreparedStatement statement = conn.prepareStatement("SELECT actor_id, name FROM actors WHERE actor_id > ?");
+            statement.setInt(1, catalogSize);
+            ResultSet result = statement.executeQuery();
+            while (result.next()) inserted.add(new Actor(result.getInt(1), result.getString(2)));
+        }
+        for (Actor actor : inserted) actorDao.delete(actor);
+    }
+
+    /**
+     * A MovieDao per fetch mode, so movieGet compares the single joined query with the three separate ones.
+     */
+    @State(Scope.Benchmark)
+    public static class FetchModeState {
+        @Param({ "JOINED", "SEPARATE_QUERIES" })
+        public MovieDao.FetchMode fetchMode;
+
+        private MovieDao movieDao;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            movieDao = new MovieDao(fetchMode);
+        }
+    }
+
+    @Benchmark
+    public Movie movieGet(FetchModeState state) {
+        nextMovieId = nextMovieId % catalogSize + 1;
+        return state.movieDao.get(nextMovieId);
+    }
+
+    @Benchmark
+    public List<Movie> movieGetAll() {
+        return movieDao.getAll();
+    }
+
+    @Benchmark
+    public int actorInsert() {
+        return actorDao.insert(new Actor("Benchmark Actor " + ++insertedActors));
+    }
+
+    /**
+     * Inserts the actors with one batched insertAll call, scored per actor so it compares with actorInsert.
+     */
+    @Benchmark
+    @OperationsPerInvocation(INSERT_BATCH)
+    public int[] actorInsertAll() {
+        List<Actor> actors = new ArrayList<>(INSERT_BATCH);
+        for (int i = 0; i < INSERT_BATCH; i++) actors.add(new Actor("Benchmark Actor " + ++insertedActors));
+        return actorDao.insertAll(actors);
+    }
+
+    @Benchmark
+    public List<Director> directorGetAll() {
+        return directorDao.getAll();
+    }
+
+    @Benchmark
+    public boolean connectionAcquire() throws SQLException {
+        try (Connection conn = ConnectionFactory.getConnection()) {
+            return conn.getAutoCommit();
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.bakoalex.bench;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.bakoalex.dao.MovieDao;
+import com.bakoalex.database.ConnectionFactory;
+import com.bakoalex.database.EmbeddedDatabase;
+import com.bakoalex.dto.Movie;
+
+/**
+ * The link table lookups with and without the composite primary keys and reverse indexes of the
+ * movies_actors and movies_directors tables. FOREIGN_KEYS_ONLY is the schema before the keys were added,
+ * where the only indexes of the link tables are the ones created for their foreign keys.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LinkKeysBenchmark {
+
+    public enum Schema { COMPOSITE_KEYS, FOREIGN_KEYS_ONLY }
+
+    @Param({ "10000" })
+    public int catalogSize;
+
+    @Param({ "COMPOSITE_KEYS", "FOREIGN_KEYS_ONLY" })
+    public Schema schema;
+
+    private EmbeddedDatabase database;
+    private MovieDao movieDao;
+    private int nextId;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        database = EmbeddedDatabase.start(catalogSize, false);
+        if (schema == Schema.FOREIGN_KEYS_ONLY) dropLinkKeys();
+        movieDao = new MovieDao();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        database.stop();
+    }
+
+    /**
+     * Replaces the keys with single column indexes on the foreign key columns, like the ones MySQL creates for them.
+     */
+    private void dropLinkKeys() throws SQLException {
+        try (Connection conn = database.getDirectConnection()) {
+            Statement statement = conn.createStatement();
+            statement.execute("CREATE INDEX fk_movies_actors_movie ON movies_actors (movie_id)");
+            statement.execute("CREATE INDEX fk_movies_actors_actor ON movies_actors (actor_id)");
+            statement.execute("CREATE INDEX fk_movies_directors_movie ON movies_directors (movie_id)");
+            statement.execute("CREATE INDEX fk_movies_directors_director ON movies_directors (director_id)");
+            statement.execute("DROP INDEX idx_movies_actors_actor");
+            statement.execute("DROP INDEX idx_movies_directors_director");
+            statement.execute("ALTER TABLE movies_actors DROP PRIMARY KEY");
+            statement.execute("ALTER TABLE movies_directors DROP PRIMARY KEY");
+        }
+    }
+
+    private int nextId() {
+        nextId = nextId % catalogSize + 1;
+        return nextId;
+    }
+
+    /** The joined movie, actors and directors query. */
+    @Benchmark
+    public Movie movieGet() {
+        return movieDao.get(nextId());
+    }
+
+    /** The movies of an actor, which needs the reverse (actor_id, movie_id) index. */
+    @Benchmark
+    public int moviesOfActor() throws SQLException {
+        try (Connection conn = ConnectionFactory.getConnection()) {
+            PreparedStatement statement = conn.prepareStatement("SELECT ma.movie_id FROM movies_actors ma WHERE ma.actor_id=?");
+            statement.setInt(1, nextId());
+            int movies = 0;
+            ResultSet result = statement.executeQuery();
+            while (result.next()) movies++;
+            return movies;
+        }
+    }
+
+    /** The check whether a movie already has an actor, a lookup of the whole composite key. */
+    @Benchmark
+    public boolean linkExists() throws SQLException {
+        try (Connection conn = ConnectionFactory.getConnection()) {
+            int movieId = nextId();
+            PreparedStatement statement = conn.prepareStatement(
+                "SELECT 1 FROM movies_actors ma WHERE ma.movie_id=? AND ma.actor_id=?");
+            statement.setInt(1, movieId);
+            statement.setInt(2, movieId);
+            return statement.executeQuery().next();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.bakoalex.bench;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.bakoalex.search.EntityType;
+import com.bakoalex.search.SearchHit;
+import com.bakoalex.search.SearchIndex;
+
+/**
+ * Query latency of the search index over a generated catalog of titles made of common and rare words.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+@State(Scope.Benchmark)
+public class SearchBenchmark {
+
+    private static final String[] COMMON = { "the", "of", "a", "and", "night", "love", "man", "last", "day", "dark",
+        "city", "story", "black", "king", "war", "dead", "blue", "house", "return", "star" };
+
+    @Param({ "1000000" })
+    public int catalogSize;
+
+    private SearchIndex index;
+    private String[] rareWords;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        rareWords = new String[catalogSize / 10];
+        for (int i = 0; i < rareWords.length; i++) rareWords[i] = randomWord(random);
+
+        index = new SearchIndex();
+        StringBuilder title = new StringBuilder();
+        for (int id = 1; id <= catalogSize; id++) {
+            title.setLength(0);
+            int words = 1 + random.nextInt(5);
+            for (int i = 0; i < words; i++) {
+                if (i > 0) title.append(' ');
+                title.append(random.nextInt(3) == 0 ? rareWords[random.nextInt(rareWords.length)] : COMMON[random.nextInt(COMMON.length)]);
+            }
+            index.put(EntityType.MOVIE, id, title.toString());
+        }
+    }
+
+    private static String randomWord(Random random) {
+        char[] word = new char[5 + random.nextInt(6)];
+        for (int i = 0; i < word.length; i++) word[i] = (char) ('a' + random.nextInt(26));
+        return new String(word);
+    }
+
+    /** A rare word, typed completely. */
+    @Benchmark
+    public List<SearchHit> rareWord() {
+        return index.search(rareWords[next++ % rareWords.length], 10);
+    }
+
+    /** A rare word typed partially, after a common word. */
+    @Benchmark
+    public List<SearchHit> commonAndRarePrefix() {
+        String rare = rareWords[next++ % rareWords.length];
+        return index.search("dark " + rare.substring(0, 4), 10);
+    }
+
+    /** Two common words, the worst case, which has to rank a large part of the catalog. */
+    @Benchmark
+    public List<SearchHit> commonWords() {
+        return index.search("black king", 10);
+    }
+}
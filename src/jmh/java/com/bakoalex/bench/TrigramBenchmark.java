@@ -0,0 +1,95 @@
+package com.bakoalex.bench;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.bakoalex.search.EntityType;
+import com.bakoalex.search.SearchHit;
+import com.bakoalex.search.TrigramIndex;
+
+/**
+ * Fuzzy name lookups in the trigram index over generated "first last" names, queried with one typo.
+ * fullScan is the baseline: the similarity computed against every name.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+@State(Scope.Benchmark)
+public class TrigramBenchmark {
+
+    private static final String[] FIRST_NAMES = { "james", "mary", "john", "patricia", "robert", "jennifer", "michael",
+        "linda", "william", "elizabeth", "david", "barbara", "richard", "susan", "joseph", "jessica", "thomas", "sarah",
+        "charles", "karen", "christopher", "nancy", "daniel", "lisa", "matthew", "betty", "anthony", "margaret" };
+
+    @Param({ "500000" })
+    public int nameCount;
+
+    private TrigramIndex index;
+    private String[] names;
+    private String[] queries;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        index = new TrigramIndex();
+        names = new String[nameCount];
+        for (int id = 1; id <= nameCount; id++) {
+            String name = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + " " + randomSurname(random);
+            names[id - 1] = name;
+            index.put(EntityType.ACTOR, id, name);
+        }
+
+        // Every query is a name with one changed letter in its surname
+        queries = new String[1024];
+        for (int i = 0; i < queries.length; i++) {
+            char[] name = names[random.nextInt(nameCount)].toCharArray();
+            name[name.length - 1 - random.nextInt(3)] = (char) ('a' + random.nextInt(26));
+            queries[i] = new String(name);
+        }
+    }
+
+    private static String randomSurname(Random random) {
+        String[] syllables = { "son", "man", "ber", "ski", "ton", "ley", "ard", "mil", "ros", "vak", "der", "lin", "ez", "ova" };
+        StringBuilder surname = new StringBuilder();
+        int count = 2 + random.nextInt(2);
+        for (int i = 0; i < count; i++) surname.append(syllables[random.nextInt(syllables.length)]);
+        return surname.toString();
+    }
+
+    /** The import-time dedupe lookup. */
+    @Benchmark
+    public SearchHit mostSimilar() {
+        return index.mostSimilar(queries[next++ & 1023], EntityType.ACTOR, 0.7);
+    }
+
+    /** A search for similar names with a low threshold, which has many more candidates. */
+    @Benchmark
+    public List<SearchHit> similarTop10() {
+        return index.similar(queries[next++ & 1023], EntityType.ACTOR, 0.4, 10);
+    }
+
+    @Benchmark
+    public int fullScan() {
+        String query = queries[next++ & 1023];
+        int matches = 0;
+        for (String name : names) if (TrigramIndex.similarity(query, name) >= 0.7) matches++;
+        return matches;
+    }
+}
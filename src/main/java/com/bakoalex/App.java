@@ -3,10 +3,15 @@ package com.bakoalex;
 import java.util.ArrayList;
 import java.util.List;
 
+import com.bakoalex.dao.ActorDao;
 import com.bakoalex.dao.DirectorDao;
 import com.bakoalex.dao.MovieDao;
+import com.bakoalex.database.migration.MigrationRunner;
 import com.bakoalex.dto.Director;
 import com.bakoalex.dto.Movie;
+import com.bakoalex.graph.CastGraph;
+import com.bakoalex.search.SearchIndex;
+import com.bakoalex.search.TrigramIndex;
 
 /**
  * Hello world!
@@ -18,6 +23,22 @@ public class App
     {
         System.out.println("Starting Application.");
 
+        if (!new MigrationRunner().migrate()) {
+            System.out.println("Could not bring the database schema up to date, exiting application.");
+            return;
+        }
+
+        // Load the name indexes used for the duplicate checks of the inserts
+        ActorDao.warmNameIndex();
+        DirectorDao.warmNameIndex();
+
+        // Build the search indexes, the DAOs keep them up to date from here on
+        SearchIndex.loadShared();
+        TrigramIndex.loadShared();
+
+        // Snapshot of the movie-actor and movie-director links, rebuilt with CastGraph.loadShared()
+        CastGraph.loadShared();
+
         MovieDao movieDao = new MovieDao();
         System.out.println(movieDao.get(1).toString());
 
@@ -4,19 +4,51 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Logger;
+import java.util.stream.Stream;
 
 import com.bakoalex.database.ConnectionFactory;
 import com.bakoalex.dto.Actor;
 import com.bakoalex.logger.ConsoleLogger;
+import com.bakoalex.logger.Log;
+import com.bakoalex.search.SearchIndex;
+import com.bakoalex.search.TrigramIndex;
+import com.bakoalex.search.EntityType;
 
 public class ActorDao implements Dao<Actor> {
 
     private static final Logger LOGGER = ConsoleLogger.attach();
 
+    private static final NameIndex NAME_INDEX = new NameIndex("SELECT actor_id, name FROM actors;");
+
+    private static final NameBatchInserter BATCH_INSERTER = new NameBatchInserter("actors", "actor_id", NAME_INDEX);
+
+    /**
+     * Loads the name index of the actors table, so the first inserts do not have to wait for it.
+     */
+    public static void warmNameIndex() {
+        try (Connection conn = ConnectionFactory.getConnection()) {
+            NAME_INDEX.warm(conn);
+        } catch (SQLException ex) {
+            LOGGER.info(ConsoleLogger.SQL_EXC + ex.getMessage());
+        }
+    }
+
+    /**
+     * Drops the name index of the actors table, it is loaded again on the next insert.
+     * Needed when the table was changed behind the Dao, e.g. when the database was switched.
+     */
+    public static void invalidateNameIndex() {
+        NAME_INDEX.invalidate();
+    }
+
     /**
      * Deserialize Actor object from an SQL ResultSet 
      * @param result
@@ -36,6 +68,14 @@ public class ActorDao implements Dao<Actor> {
      */
     @Override
     public Actor get(int id) {
+        DaoEvent.Get event = new DaoEvent.Get();
+        event.begin();
+        Actor actor = queryById(id);
+        event.commit(DaoEvent.ACTOR, id, actor == null ? 0 : 1);
+        return actor;
+    }
+
+    private Actor queryById(int id) {
         Actor actor = null;
 
         LOGGER.fine(ConsoleLogger.DB_CONN);
@@ -43,12 +83,12 @@ public class ActorDao implements Dao<Actor> {
             LOGGER.fine(ConsoleLogger.DB_CONN_OK);
             
             String sqlQueryString = "SELECT * FROM actors WHERE actors.actor_id=" + id + ";";
-            LOGGER.fine(ConsoleLogger.DB_QUERY + sqlQueryString);
+            Log.fine(LOGGER, ConsoleLogger.DB_QUERY, sqlQueryString);
 
             Statement statement = conn.createStatement();
             ResultSet sqlQuery = statement.executeQuery(sqlQueryString);
             
-            if (sqlQuery.first()) {
+            if (sqlQuery.next()) {
                 // Only one record should be matched. It returns a new Actor object from the ResultSet.
                 actor = deserializeActor(sqlQuery);
             } else {
@@ -69,6 +109,14 @@ public class ActorDao implements Dao<Actor> {
      */
     @Override
     public List<Actor> getAll() {
+        DaoEvent.GetAll event = new DaoEvent.GetAll();
+        event.begin();
+        List<Actor> actors = queryAll();
+        event.commit(DaoEvent.ACTOR, 0, actors.size());
+        return actors;
+    }
+
+    private List<Actor> queryAll() {
         List<Actor> actors = new ArrayList<>();
 
         // Connect to the database.
@@ -77,7 +125,7 @@ public class ActorDao implements Dao<Actor> {
 
             // Run the query
             String queryString = "SELECT * FROM actors;";
-            LOGGER.fine(ConsoleLogger.DB_QUERY + queryString);
+            Log.fine(LOGGER, ConsoleLogger.DB_QUERY, queryString);
             Statement statement = conn.createStatement();
             ResultSet sqlQuery = statement.executeQuery(queryString);
 
@@ -92,52 +140,129 @@ public class ActorDao implements Dao<Actor> {
         return actors;
     }
 
+    /**
+     * Returns one page of the actors table ordered by actor_id, using keyset pagination:
+     * the page starts right after afterId, so every page costs the same regardless of its depth.
+     * In case of an error, we return an empty list.
+     */
+    @Override
+    public List<Actor> page(int afterId, int limit) {
+        List<Actor> actors = new ArrayList<>();
+
+        try (Connection conn = ConnectionFactory.getConnection()) {
+
+            String sqlQueryString = "SELECT * FROM actors WHERE actors.actor_id>? ORDER BY actors.actor_id LIMIT ?;";
+            Log.fine(LOGGER, ConsoleLogger.DB_QUERY, sqlQueryString);
+            PreparedStatement pStatement = conn.prepareStatement(sqlQueryString);
+            pStatement.setInt(1, afterId);
+            pStatement.setInt(2, limit);
+
+            ResultSet queryResult = pStatement.executeQuery();
+            while (queryResult.next()) actors.add(deserializeActor(queryResult));
+
+        } catch (SQLException ex) {
+            LOGGER.info(ConsoleLogger.SQL_EXC + ex.getMessage());
+        }
+        return actors;
+    }
+
+    /**
+     * Returns the actors with the given ids, keyed by actor_id, using chunked IN-list queries.
+     * In case of an error, we return the records loaded so far.
+     */
+    @Override
+    public Map<Integer, Actor> getMany(Collection<Integer> ids) {
+        Map<Integer, Actor> actors = new HashMap<>();
+        if (ids.isEmpty()) return actors;
+
+        try (Connection conn = ConnectionFactory.getConnection()) {
+            for (int[] chunk : IdChunks.split(ids)) {
+                String sqlQueryString = "SELECT * FROM actors WHERE actors.actor_id IN (" + IdChunks.placeholders(chunk.length) + ");";
+                Log.fine(LOGGER, ConsoleLogger.DB_QUERY, sqlQueryString);
+                PreparedStatement pStatement = conn.prepareStatement(sqlQueryString);
+                for (int i = 0; i < chunk.length; i++) pStatement.setInt(i + 1, chunk[i]);
+
+                ResultSet queryResult = pStatement.executeQuery();
+                while (queryResult.next()) {
+                    Actor actor = deserializeActor(queryResult);
+                    actors.put(actor.getActorId(), actor);
+                }
+                pStatement.close();
+            }
+        } catch (SQLException ex) {
+            LOGGER.info(ConsoleLogger.SQL_EXC + ex.getMessage());
+        }
+        return actors;
+    }
+
+    /**
+     * Streams all records from the actors table. The Stream must be closed after use.
+     */
+    @Override
+    public Stream<Actor> stream() {
+        return JdbcStreams.stream("SELECT * FROM actors;", this::deserializeActor);
+    }
+
     /**
      * Insert an Actor object to the actors table
      * Returns the inserted row's actor_id.
      */
     @Override
     public int insert(Actor actor) {
+        DaoEvent.Insert event = new DaoEvent.Insert();
+        event.begin();
+        int actorId = insertRow(actor);
+        event.commit(DaoEvent.ACTOR, actorId, actorId == 0 ? 0 : 1);
+        return actorId;
+    }
+
+    private int insertRow(Actor actor) {
 
         LOGGER.fine(ConsoleLogger.DB_CONN);
         try (Connection conn = ConnectionFactory.getConnection()) {
             LOGGER.fine(ConsoleLogger.DB_CONN_OK);
 
-            //Check if the same actor is in the database
-            String sqlQueryString = "SELECT * FROM actors WHERE actors.name LIKE ?;";
-            LOGGER.fine(ConsoleLogger.DB_QUERY + sqlQueryString);
-            PreparedStatement pStatement = conn.prepareStatement(sqlQueryString);
-            pStatement.setString(1, actor.getName());
-
-            // If the result is not empty, then it is a duplicate, we dont add anything
-            ResultSet queryResult = pStatement.executeQuery();
-            if (queryResult.first()) {
+            // Check if the same actor is in the database, using the in-memory name index
+            String name = NameIndex.clean(actor.getName());
+            NAME_INDEX.warm(conn);
+            if (NAME_INDEX.find(name) != null) {
                 LOGGER.info(ConsoleLogger.DB_QUERY_DUPL + actor.toString());
                 return 0;
             }
 
             // Now we can add our Actor object to the database
-            sqlQueryString = "INSERT INTO actors (name) VALUES (?);";
-            LOGGER.fine(ConsoleLogger.DB_QUERY + sqlQueryString);
+            String sqlQueryString = "INSERT INTO actors (name) VALUES (?);";
+            Log.fine(LOGGER, ConsoleLogger.DB_QUERY, sqlQueryString);
 
             conn.setAutoCommit(false);
-            pStatement = conn.prepareStatement(sqlQueryString, PreparedStatement.RETURN_GENERATED_KEYS);
-            pStatement.setString(1, actor.getName());
-
-            int affectedRows = pStatement.executeUpdate();
+            PreparedStatement pStatement = conn.prepareStatement(sqlQueryString, PreparedStatement.RETURN_GENERATED_KEYS);
+            pStatement.setString(1, name);
+
+            int affectedRows;
+            try {
+                affectedRows = pStatement.executeUpdate();
+            } catch (SQLIntegrityConstraintViolationException ex) {
+                // Another process inserted the same name, the unique index caught it
+                LOGGER.info(ConsoleLogger.DB_QUERY_DUPL + actor.toString());
+                conn.rollback();
+                return 0;
+            }
             if (affectedRows != 1) {
                 LOGGER.info(ConsoleLogger.DB_INSERT_FAIL + actor.toString());
                 conn.rollback();
                 return 0;
             }
 
-            conn.commit();
-            LOGGER.fine(ConsoleLogger.DB_INSERT_OK + actor.toString());
-
             //Return the generated actor_id
             ResultSet generatedId = pStatement.getGeneratedKeys();
-            if (generatedId.next()) return generatedId.getInt(1);
-            else return 0;
+            int actorId = generatedId.next() ? generatedId.getInt(1) : 0;
+
+            conn.commit();
+            NAME_INDEX.put(name, actorId);
+            SearchIndex.sharedPut(EntityType.ACTOR, actorId, name);
+            TrigramIndex.sharedPut(EntityType.ACTOR, actorId, name);
+            Log.fine(LOGGER, ConsoleLogger.DB_INSERT_OK, actor);
+            return actorId;
 
 
         } catch (SQLException ex) {
@@ -146,6 +271,43 @@ public class ActorDao implements Dao<Actor> {
         }
     }
 
+    /**
+     * Inserts actors in batches, committing after every chunkSize rows.
+     * Names which already exist in the table are not inserted again, the same as in insert().
+     * The id of every Actor object is set to the id of its row, whether it was inserted or it already existed.
+     * Returns the generated actor_id for each inserted actor, and 0 for duplicates or in case of an error.
+     */
+    @Override
+    public int[] insertAll(Collection<Actor> actors, int chunkSize) {
+        DaoEvent.Insert event = new DaoEvent.Insert();
+        event.begin();
+        int[] generatedIds = insertBatches(actors, chunkSize);
+        event.commit(DaoEvent.ACTOR, generatedIds.length == 1 ? generatedIds[0] : 0, DaoEvent.countInserted(generatedIds));
+        return generatedIds;
+    }
+
+    private int[] insertBatches(Collection<Actor> actors, int chunkSize) {
+        List<Actor> actorList = new ArrayList<>(actors);
+        int[] generatedIds = new int[actorList.size()];
+
+        List<String> names = new ArrayList<>(actorList.size());
+        for (Actor actor : actorList) names.add(actor == null ? null : NameIndex.clean(actor.getName()));
+
+        try (Connection conn = ConnectionFactory.getConnection()) {
+            BATCH_INSERTER.insertAll(conn, names, chunkSize, (index, id, inserted) -> {
+                if (id != 0) actorList.get(index).setActorId(id);
+                if (inserted) {
+                    generatedIds[index] = id;
+                    SearchIndex.sharedPut(EntityType.ACTOR, id, names.get(index));
+                    TrigramIndex.sharedPut(EntityType.ACTOR, id, names.get(index));
+                }
+            });
+        } catch (SQLException ex) {
+            LOGGER.info(ConsoleLogger.SQL_EXC + ex.getMessage());
+        }
+        return generatedIds;
+    }
+
     /**
      * Updates an existing record in the actors tables based on the provided Actor object.
      * If the correspondant record does not exists in the table, returns false.
@@ -153,13 +315,21 @@ public class ActorDao implements Dao<Actor> {
      */
     @Override
     public boolean update(Actor actor) {
+        DaoEvent.Update event = new DaoEvent.Update();
+        event.begin();
+        boolean updated = updateRow(actor);
+        event.commit(DaoEvent.ACTOR, actor == null ? 0 : actor.getActorId(), updated ? 1 : 0);
+        return updated;
+    }
+
+    private boolean updateRow(Actor actor) {
         LOGGER.fine(ConsoleLogger.DB_CONN);
         try (Connection conn = ConnectionFactory.getConnection()) {
             LOGGER.fine(ConsoleLogger.DB_CONN_OK);
             
             // Check if the provided Actor object exists in the actors table.
             String sqlQueryString = "SELECT * FROM actors WHERE actors.actor_id=?;";
-            LOGGER.fine(ConsoleLogger.DB_QUERY + sqlQueryString);
+            Log.fine(LOGGER, ConsoleLogger.DB_QUERY, sqlQueryString);
             PreparedStatement pStatement = conn.prepareStatement(sqlQueryString);
             pStatement.setInt(1, actor.getActorId());
 
@@ -167,7 +337,7 @@ public class ActorDao implements Dao<Actor> {
             // with the passed object. If they are not differ there is no need for a query.
             ResultSet queryResult = pStatement.executeQuery();
             Actor actorFromTheDb = null;
-            if (!queryResult.first()) {
+            if (!queryResult.next()) {
                 LOGGER.info(ConsoleLogger.DB_QUERY_EMPTY);
                 return false;
             } else {
@@ -182,7 +352,7 @@ public class ActorDao implements Dao<Actor> {
 
             // Now we can start the update process.
             sqlQueryString = "UPDATE actors SET actors.actor_id=?, actors.name=? WHERE actors.actor_id=?;";
-            LOGGER.fine(ConsoleLogger.DB_QUERY + sqlQueryString);
+            Log.fine(LOGGER, ConsoleLogger.DB_QUERY, sqlQueryString);
             conn.setAutoCommit(false);
             pStatement = conn.prepareStatement(sqlQueryString);
             pStatement.setInt(1, actor.getActorId());
@@ -198,7 +368,11 @@ public class ActorDao implements Dao<Actor> {
             }
 
             conn.commit();
-            LOGGER.fine(ConsoleLogger.DB_UPDATE_OK + actor.toString());
+            NAME_INDEX.remove(actorFromTheDb.getName(), actorFromTheDb.getActorId());
+            NAME_INDEX.put(actor.getName(), actor.getActorId());
+            SearchIndex.sharedPut(EntityType.ACTOR, actor.getActorId(), actor.getName());
+            TrigramIndex.sharedPut(EntityType.ACTOR, actor.getActorId(), actor.getName());
+            Log.fine(LOGGER, ConsoleLogger.DB_UPDATE_OK, actor);
             return true;
 
         } catch (SQLException ex) {
@@ -226,7 +400,8 @@ public class ActorDao implements Dao<Actor> {
 
             // If the the result is empty we return false
             ResultSet queryResult = pStatement.executeQuery();
-            if (!queryResult.first()) return false;
+            if (!queryResult.next()) return false;
+            Actor actorFromTheDb = deserializeActor(queryResult);
 
             // Now we can delete the object
             sqlQueryString = "DELETE FROM actors WHERE actors.actor_id=?;";
@@ -239,6 +414,9 @@ public class ActorDao implements Dao<Actor> {
             if (affectedRows != 1) return false;
 
             conn.commit();
+            NAME_INDEX.remove(actorFromTheDb.getName(), actorFromTheDb.getActorId());
+            SearchIndex.sharedRemove(EntityType.ACTOR, actorFromTheDb.getActorId());
+            TrigramIndex.sharedRemove(EntityType.ACTOR, actorFromTheDb.getActorId());
             return true;
 
         } catch (SQLException ex) {
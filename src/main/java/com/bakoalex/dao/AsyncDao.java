@@ -0,0 +1,87 @@
+package com.bakoalex.dao;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Asynchronous facade of a Dao.
+ * Every call runs on a bounded executor and returns a CompletableFuture, so several lookups
+ * (e.g. a movie, its rental state and an actor) can run in parallel and be combined.
+ * The results are the same as the ones of the blocking Dao methods.
+ * If the executor is saturated and rejects a call, the returned future fails with a RejectedExecutionException.
+ */
+public class AsyncDao<T> {
+
+    private final Dao<T> delegate;
+    private final Executor executor;
+
+    /**
+     * Runs the calls on the shared DAO executor, whose concurrency is the connection pool size.
+     */
+    public AsyncDao(Dao<T> delegate) {
+        this(delegate, DaoExecutor.shared());
+    }
+
+    public AsyncDao(Dao<T> delegate, Executor executor) {
+        this.delegate = delegate;
+        this.executor = executor;
+    }
+
+    /**
+     * @return the blocking Dao behind this facade
+     */
+    public Dao<T> getDao() {
+        return delegate;
+    }
+
+    public CompletableFuture<T> get(int id) {
+        return submit(() -> delegate.get(id));
+    }
+
+    public CompletableFuture<List<T>> getAll() {
+        return submit(delegate::getAll);
+    }
+
+    public CompletableFuture<Map<Integer, T>> getMany(Collection<Integer> ids) {
+        return submit(() -> delegate.getMany(ids));
+    }
+
+    public CompletableFuture<List<T>> page(int afterId, int limit) {
+        return submit(() -> delegate.page(afterId, limit));
+    }
+
+    public CompletableFuture<Integer> insert(T t) {
+        return submit(() -> delegate.insert(t));
+    }
+
+    public CompletableFuture<int[]> insertAll(Collection<T> items, int chunkSize) {
+        return submit(() -> delegate.insertAll(items, chunkSize));
+    }
+
+    public CompletableFuture<Boolean> update(T t) {
+        return submit(() -> delegate.update(t));
+    }
+
+    public CompletableFuture<Boolean> delete(T t) {
+        return submit(() -> delegate.delete(t));
+    }
+
+    /**
+     * Runs the call on the executor. supplyAsync() throws the executor's rejection to the caller,
+     * here it fails the future instead, like any other error of the call.
+     */
+    private <R> CompletableFuture<R> submit(Supplier<R> call) {
+        try {
+            return CompletableFuture.supplyAsync(call, executor);
+        } catch (RejectedExecutionException ex) {
+            CompletableFuture<R> rejected = new CompletableFuture<>();
+            rejected.completeExceptionally(ex);
+            return rejected;
+        }
+    }
+}
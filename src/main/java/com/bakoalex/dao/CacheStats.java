@@ -0,0 +1,47 @@
+package com.bakoalex.dao;
+
+/**
+ * Snapshot of the CachingDao counters.
+ */
+public class CacheStats {
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final int size;
+
+    public CacheStats(long hits, long misses, long evictions, int size) {
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.size = size;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return the ratio of the get() calls served from the cache, between 0 and 1
+     */
+    public double getHitRatio() {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStats(hits=" + hits + ", misses=" + misses + ", evictions=" + evictions + ", size=" + size + ")";
+    }
+}
@@ -0,0 +1,232 @@
+package com.bakoalex.dao;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToIntFunction;
+import java.util.stream.Stream;
+
+/**
+ * Read-through cache in front of another Dao.
+ *
+ * get() results are kept in a size-bounded LRU cache with an optional time-to-live.
+ * The cache is split into segments with their own lock, so concurrent readers of different ids
+ * rarely wait for each other. update() and delete() invalidate the cached record after they reach the database.
+ * The other methods are passed to the underlying Dao without caching.
+ * Note: the cached objects are shared between the callers, so they should not be modified.
+ */
+public class CachingDao<T> implements Dao<T> {
+
+    private static final int SEGMENTS = 16;
+
+    private final Dao<T> delegate;
+    private final ToIntFunction<T> idOf;
+    private final long ttlNanos;
+    private final List<Segment> segments;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param delegate the Dao which reads and writes the database
+     * @param idOf returns the id of a record, the same id get() is called with
+     * @param maxSize maximum number of cached records
+     * @param ttlMillis how long a record is kept in the cache, 0 keeps it until it is evicted
+     */
+    public CachingDao(Dao<T> delegate, ToIntFunction<T> idOf, int maxSize, long ttlMillis) {
+        if (maxSize < 1) throw new IllegalArgumentException("maxSize must be at least 1");
+        this.delegate = delegate;
+        this.idOf = idOf;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.segments = new ArrayList<>(SEGMENTS);
+        int segmentSize = (maxSize + SEGMENTS - 1) / SEGMENTS;
+        for (int i = 0; i < SEGMENTS; i++) segments.add(new Segment(segmentSize));
+    }
+
+    /**
+     * Returns the record from the cache, or loads it with the underlying Dao if it is not cached.
+     */
+    @Override
+    public T get(int id) {
+        Segment segment = segmentFor(id);
+        long version;
+        synchronized (segment) {
+            CacheEntry<T> entry = segment.entries.get(id);
+            if (entry != null && (ttlNanos == 0 || System.nanoTime() < entry.expiresAtNanos)) {
+                hits.increment();
+                return entry.value;
+            }
+            if (entry != null) segment.entries.remove(id);
+            version = segment.version;
+        }
+
+        misses.increment();
+        T value = delegate.get(id);
+        if (value == null) return null;
+
+        synchronized (segment) {
+            // If the record was invalidated while we were loading it, the loaded value may be stale
+            if (segment.version == version) {
+                segment.entries.put(id, new CacheEntry<>(value, ttlNanos == 0 ? 0 : System.nanoTime() + ttlNanos));
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Returns the cached records, and loads the missing ones with one getMany() call of the underlying Dao.
+     */
+    @Override
+    public Map<Integer, T> getMany(Collection<Integer> ids) {
+        Map<Integer, T> result = new HashMap<>();
+        List<Integer> missing = new ArrayList<>();
+        Map<Integer, Long> versions = new HashMap<>();
+
+        for (Integer id : ids) {
+            if (id == null || result.containsKey(id) || versions.containsKey(id)) continue;
+            Segment segment = segmentFor(id);
+            synchronized (segment) {
+                CacheEntry<T> entry = segment.entries.get(id);
+                if (entry != null && (ttlNanos == 0 || System.nanoTime() < entry.expiresAtNanos)) {
+                    hits.increment();
+                    result.put(id, entry.value);
+                    continue;
+                }
+                if (entry != null) segment.entries.remove(id);
+                versions.put(id, segment.version);
+            }
+            missing.add(id);
+        }
+        if (missing.isEmpty()) return result;
+
+        misses.add(missing.size());
+        for (Map.Entry<Integer, T> loaded : delegate.getMany(missing).entrySet()) {
+            int id = loaded.getKey();
+            result.put(id, loaded.getValue());
+            Segment segment = segmentFor(id);
+            synchronized (segment) {
+                if (segment.version == versions.get(id)) {
+                    segment.entries.put(id, new CacheEntry<>(loaded.getValue(), ttlNanos == 0 ? 0 : System.nanoTime() + ttlNanos));
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public List<T> getAll() {
+        return delegate.getAll();
+    }
+
+    @Override
+    public Stream<T> stream() {
+        return delegate.stream();
+    }
+
+    @Override
+    public List<T> page(int afterId, int limit) {
+        return delegate.page(afterId, limit);
+    }
+
+    @Override
+    public int insert(T t) {
+        return delegate.insert(t);
+    }
+
+    @Override
+    public int[] insertAll(Collection<T> items, int chunkSize) {
+        return delegate.insertAll(items, chunkSize);
+    }
+
+    @Override
+    public boolean update(T t) {
+        try {
+            return delegate.update(t);
+        } finally {
+            invalidate(idOf.applyAsInt(t));
+        }
+    }
+
+    @Override
+    public boolean delete(T t) {
+        try {
+            return delegate.delete(t);
+        } finally {
+            invalidate(idOf.applyAsInt(t));
+        }
+    }
+
+    /**
+     * Removes the record from the cache, the next get() reads it from the database.
+     */
+    public void invalidate(int id) {
+        Segment segment = segmentFor(id);
+        synchronized (segment) {
+            segment.version++;
+            segment.entries.remove(id);
+        }
+    }
+
+    /**
+     * Removes every record from the cache.
+     */
+    public void invalidateAll() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.version++;
+                segment.entries.clear();
+            }
+        }
+    }
+
+    public CacheStats getStats() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.entries.size();
+            }
+        }
+        return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), size);
+    }
+
+    private Segment segmentFor(int id) {
+        // Spread the ids, so sequential ids land in different segments
+        int hash = id * 0x9E3779B9;
+        return segments.get((hash >>> 16) & (SEGMENTS - 1));
+    }
+
+    private static final class CacheEntry<T> {
+        private final T value;
+        private final long expiresAtNanos;
+
+        private CacheEntry(T value, long expiresAtNanos) {
+            this.value = value;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+    }
+
+    /**
+     * One LRU segment of the cache, guarded by its own monitor.
+     */
+    private final class Segment {
+        private final Map<Integer, CacheEntry<T>> entries;
+        private long version;
+
+        private Segment(int maxSize) {
+            this.entries = new LinkedHashMap<Integer, CacheEntry<T>>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(java.util.Map.Entry<Integer, CacheEntry<T>> eldest) {
+                    if (size() <= maxSize) return false;
+                    evictions.increment();
+                    return true;
+                }
+            };
+        }
+    }
+}
@@ -1,11 +1,40 @@
 package com.bakoalex.dao;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
 public interface Dao<T> {
+    /** Number of rows inserted and committed together by insertAll(), if not specified. */
+    int DEFAULT_CHUNK_SIZE = 500;
+
     T get(int id);
     List<T> getAll();
+    /**
+     * Returns the records with the given ids, keyed by their id. Missing ids are not in the map.
+     * The ids are loaded in chunks with "WHERE id IN (...)" queries instead of one query per id.
+     */
+    Map<Integer, T> getMany(Collection<Integer> ids);
+    /**
+     * Streams all records row by row, so memory use does not depend on the table size.
+     * The returned Stream holds a database connection and must be closed after use.
+     */
+    Stream<T> stream();
+    /**
+     * Returns at most limit records with an id greater than afterId, ordered by id.
+     * Use 0 for the first page, and the id of the last returned record for the next one.
+     */
+    List<T> page(int afterId, int limit);
     int insert(T t);
+    /**
+     * Inserts all items with batched statements, committing after every chunkSize items.
+     * The returned array has the generated id of each item, or 0 if it was a duplicate or could not be inserted.
+     */
+    int[] insertAll(Collection<T> items, int chunkSize);
+    default int[] insertAll(Collection<T> items) {
+        return insertAll(items, DEFAULT_CHUNK_SIZE);
+    }
     boolean update(T t);
     boolean delete(T t);
 }
\ No newline at end of file
@@ -0,0 +1,70 @@
+package com.bakoalex.dao;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Java Flight Recorder events of the DAO operations, in the PirateMovies / DAO category of a recording.
+ *
+ * The events are used as begin() before the operation and commit(entityType, id, rows) after it.
+ * While no recording is running, or the event is disabled in it, both calls do nothing and
+ * the JIT removes the event allocation, so they can stay in the hot paths.
+ */
+@Category({ "PirateMovies", "DAO" })
+abstract class DaoEvent extends Event {
+
+    static final String MOVIE = "Movie";
+    static final String ACTOR = "Actor";
+    static final String DIRECTOR = "Director";
+
+    @Label("Entity Type")
+    String entityType;
+
+    @Label("Id")
+    @Description("Id of the record, 0 if the operation was not about a single record")
+    int id;
+
+    @Label("Rows")
+    @Description("Number of records returned, inserted or updated")
+    int rows;
+
+    /**
+     * Ends the event, and commits it with the given fields if it is enabled and longer than its threshold.
+     */
+    final void commit(String entityType, int id, int rows) {
+        end();
+        if (!shouldCommit()) return;
+        this.entityType = entityType;
+        this.id = id;
+        this.rows = rows;
+        commit();
+    }
+
+    @Name("com.bakoalex.piratemovies.DaoGet")
+    @Label("DAO Get")
+    static final class Get extends DaoEvent {}
+
+    @Name("com.bakoalex.piratemovies.DaoGetAll")
+    @Label("DAO Get All")
+    static final class GetAll extends DaoEvent {}
+
+    @Name("com.bakoalex.piratemovies.DaoInsert")
+    @Label("DAO Insert")
+    static final class Insert extends DaoEvent {}
+
+    @Name("com.bakoalex.piratemovies.DaoUpdate")
+    @Label("DAO Update")
+    static final class Update extends DaoEvent {}
+
+    /**
+     * @return the number of non-zero ids, i.e. the inserted records
+     */
+    static int countInserted(int[] ids) {
+        int inserted = 0;
+        for (int id : ids) if (id != 0) inserted++;
+        return inserted;
+    }
+}
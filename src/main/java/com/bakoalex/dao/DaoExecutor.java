@@ -0,0 +1,94 @@
+package com.bakoalex.dao;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import com.bakoalex.database.ConnectionFactory;
+import com.bakoalex.logger.ConsoleLogger;
+import com.bakoalex.logger.Log;
+
+/**
+ * Executors for running blocking DAO calls in the background.
+ *
+ * On runtimes with virtual threads every task gets its own virtual thread, otherwise a fixed pool
+ * of daemon threads with a bounded queue is used. Either way, at most maxConcurrency tasks run at
+ * the same time, since every running task holds a pooled database connection.
+ */
+public class DaoExecutor {
+
+    private static final Logger LOGGER = ConsoleLogger.attach();
+
+    /** Number of queued tasks per thread of the platform thread pool. */
+    private static final int QUEUE_PER_THREAD = 64;
+
+    private static volatile Executor shared;
+
+    private DaoExecutor() {}
+
+    /**
+     * Returns the executor shared by the AsyncDao instances, its concurrency is the connection pool size.
+     */
+    public static Executor shared() {
+        Executor current = shared;
+        if (current != null) return current;
+
+        synchronized (DaoExecutor.class) {
+            if (shared == null) shared = create(ConnectionFactory.getPoolMaxSize());
+            return shared;
+        }
+    }
+
+    /**
+     * Creates a new executor which runs at most maxConcurrency tasks at the same time.
+     * On the thread pool, a task submitted while the queue is full is rejected with a RejectedExecutionException,
+     * it never runs on the submitting thread.
+     */
+    public static Executor create(int maxConcurrency) {
+        if (maxConcurrency < 1) throw new IllegalArgumentException("maxConcurrency must be at least 1");
+
+        ExecutorService virtualThreads = newVirtualThreadExecutor();
+        if (virtualThreads != null) {
+            Log.fine(LOGGER, "Running DAO calls on virtual threads, max concurrency: ", maxConcurrency);
+            Semaphore permits = new Semaphore(maxConcurrency);
+            return task -> virtualThreads.execute(() -> {
+                permits.acquireUninterruptibly();
+                try {
+                    task.run();
+                } finally {
+                    permits.release();
+                }
+            });
+        }
+
+        Log.fine(LOGGER, "Running DAO calls on a thread pool of ", maxConcurrency, " threads.");
+        AtomicInteger threadCount = new AtomicInteger();
+        // Running rejected tasks on the caller would exceed the concurrency, and block whatever thread submitted them
+        return new ThreadPoolExecutor(maxConcurrency, maxConcurrency, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(maxConcurrency * QUEUE_PER_THREAD), runnable -> {
+                Thread thread = new Thread(runnable, "piratemovies-dao-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Creates a virtual thread per task executor with reflection, since the project targets Java 11.
+     * @return the executor, or null if the runtime has no virtual threads
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            return null;
+        }
+    }
+}
@@ -4,25 +4,59 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Logger;
+import java.util.stream.Stream;
 
 import com.bakoalex.database.ConnectionFactory;
 import com.bakoalex.dto.Director;
 import com.bakoalex.logger.ConsoleLogger;
+import com.bakoalex.logger.Log;
+import com.bakoalex.search.SearchIndex;
+import com.bakoalex.search.TrigramIndex;
+import com.bakoalex.search.EntityType;
 
 public class DirectorDao implements Dao<Director> {
 
     private static final Logger LOGGER = ConsoleLogger.attach();
 
+    private static final NameIndex NAME_INDEX = new NameIndex("SELECT director_id, name FROM directors;");
+
+    private static final NameBatchInserter BATCH_INSERTER = new NameBatchInserter("directors", "director_id", NAME_INDEX);
+
+    /**
+     * Loads the name index of the directors table, so the first inserts do not have to wait for it.
+     */
+    public static void warmNameIndex() {
+        try (Connection conn = ConnectionFactory.getConnection()) {
+            NAME_INDEX.warm(conn);
+        } catch (SQLException ex) {
+            LOGGER.info(ConsoleLogger.SQL_EXC + ex.getMessage());
+        }
+    }
+
+    /**
+     * Drops the name index of the directors table, it is loaded again on the next insert.
+     * Needed when the table was changed behind the Dao, e.g. when the database was switched.
+     */
+    public static void invalidateNameIndex() {
+        NAME_INDEX.invalidate();
+    }
+
     /**
      * Check if the given Director object exists in the directors table
      */
     private Director isDirectorExistsInTable(Connection conn, Director director) throws SQLException {
-        String queryString = "SELECT * FROM directors WHERE directors.director_id=? OR directors.director_name=?;";
+        String queryString = "SELECT * FROM directors WHERE directors.director_id=? OR directors.name=?;";
         PreparedStatement pStatement = conn.prepareStatement(queryString);
+        pStatement.setInt(1, director.getDirectorId());
+        pStatement.setString(2, director.getName());
         ResultSet queryResult = pStatement.executeQuery();
         if (queryResult.next()) return deserializeDirector(queryResult);
         else return null;
@@ -45,6 +79,14 @@ public class DirectorDao implements Dao<Director> {
      */
     @Override
     public Director get(int id) {
+        DaoEvent.Get event = new DaoEvent.Get();
+        event.begin();
+        Director director = queryById(id);
+        event.commit(DaoEvent.DIRECTOR, id, director == null ? 0 : 1);
+        return director;
+    }
+
+    private Director queryById(int id) {
         Director director = null;
 
         // Connecting to the database.
@@ -55,14 +97,15 @@ public class DirectorDao implements Dao<Director> {
             String sqlQueryString = "SELECT * FROM directors WHERE directors.director_id=?;";
             PreparedStatement pStatement = conn.prepareStatement(sqlQueryString);
             pStatement.setInt(1, id);
-            ResultSet sqlQuery = pStatement.executeQuery(sqlQueryString);
+            ResultSet sqlQuery = pStatement.executeQuery();
             
             // If there is no response, then something went wrong during the query.
             // Only one row should be in the result, so we check only the first row.
-            if (sqlQuery.first()) director = deserializeDirector(sqlQuery);
+            if (sqlQuery.next()) director = deserializeDirector(sqlQuery);
             else return null;
 
         } catch (SQLException ex) {
+            LOGGER.info(ConsoleLogger.SQL_EXC + ex.getMessage());
             return null;
         }
         return director;
@@ -73,6 +116,14 @@ public class DirectorDao implements Dao<Director> {
      */
     @Override
     public List<Director> getAll() {
+        DaoEvent.GetAll event = new DaoEvent.GetAll();
+        event.begin();
+        List<Director> directors = queryAll();
+        event.commit(DaoEvent.DIRECTOR, 0, directors.size());
+        return directors;
+    }
+
+    private List<Director> queryAll() {
         List<Director> directors = new ArrayList<>();
 
         // Connecting to the database.
@@ -94,6 +145,69 @@ public class DirectorDao implements Dao<Director> {
         return directors;
     }
 
+    /**
+     * Returns one page of the directors table ordered by director_id, using keyset pagination:
+     * the page starts right after afterId, so every page costs the same regardless of its depth.
+     * In case of an error, we return an empty list.
+     */
+    @Override
+    public List<Director> page(int afterId, int limit) {
+        List<Director> directors = new ArrayList<>();
+
+        try (Connection conn = ConnectionFactory.getConnection()) {
+
+            String sqlQueryString = "SELECT * FROM directors WHERE directors.director_id>? ORDER BY directors.director_id LIMIT ?;";
+            Log.fine(LOGGER, ConsoleLogger.DB_QUERY, sqlQueryString);
+            PreparedStatement pStatement = conn.prepareStatement(sqlQueryString);
+            pStatement.setInt(1, afterId);
+            pStatement.setInt(2, limit);
+
+            ResultSet queryResult = pStatement.executeQuery();
+            while (queryResult.next()) directors.add(deserializeDirector(queryResult));
+
+        } catch (SQLException ex) {
+            LOGGER.info(ConsoleLogger.SQL_EXC + ex.getMessage());
+        }
+        return directors;
+    }
+
+    /**
+     * Returns the directors with the given ids, keyed by director_id, using chunked IN-list queries.
+     * In case of an error, we return the records loaded so far.
+     */
+    @Override
+    public Map<Integer, Director> getMany(Collection<Integer> ids) {
+        Map<Integer, Director> directors = new HashMap<>();
+        if (ids.isEmpty()) return directors;
+
+        try (Connection conn = ConnectionFactory.getConnection()) {
+            for (int[] chunk : IdChunks.split(ids)) {
+                String sqlQueryString = "SELECT * FROM directors WHERE directors.director_id IN (" + IdChunks.placeholders(chunk.length) + ");";
+                Log.fine(LOGGER, ConsoleLogger.DB_QUERY, sqlQueryString);
+                PreparedStatement pStatement = conn.prepareStatement(sqlQueryString);
+                for (int i = 0; i < chunk.length; i++) pStatement.setInt(i + 1, chunk[i]);
+
+                ResultSet queryResult = pStatement.executeQuery();
+                while (queryResult.next()) {
+                    Director director = deserializeDirector(queryResult);
+                    directors.put(director.getDirectorId(), director);
+                }
+                pStatement.close();
+            }
+        } catch (SQLException ex) {
+            LOGGER.info(ConsoleLogger.SQL_EXC + ex.getMessage());
+        }
+        return directors;
+    }
+
+    /**
+     * Streams all records from the directors table. The Stream must be closed after use.
+     */
+    @Override
+    public Stream<Director> stream() {
+        return JdbcStreams.stream("SELECT * FROM directors;", this::deserializeDirector);
+    }
+
     /**
      * Insert a new Dierctor record into the directors table.
      * The method returns the ID of the newly created record.
@@ -102,24 +216,42 @@ public class DirectorDao implements Dao<Director> {
      */
     @Override
     public int insert(Director director) {
+        DaoEvent.Insert event = new DaoEvent.Insert();
+        event.begin();
+        int directorId = insertRow(director);
+        event.commit(DaoEvent.DIRECTOR, directorId, directorId == 0 ? 0 : 1);
+        return directorId;
+    }
+
+    private int insertRow(Director director) {
         // Return 0 instantly if the input is null
         if (director == null) return 0;
 
         // Connecting to database
         try (Connection conn = ConnectionFactory.getConnection()) {
 
-            // First we check if it is a duplicate
-            if (isDirectorExistsInTable(conn, director) != null) return 0;
+            // First we check if it is a duplicate, using the in-memory name index
+            String name = NameIndex.clean(director.getName());
+            NAME_INDEX.warm(conn);
+            if (NAME_INDEX.find(name) != null) return 0;
             
             // Now we can start adding the passed object to the database
             String queryString = "INSERT INTO directors (name) VALUES (?);";
             conn.setAutoCommit(false);
             PreparedStatement pStatement = conn.prepareStatement(queryString, PreparedStatement.RETURN_GENERATED_KEYS);
-            pStatement.setString(1, director.getName());
+            pStatement.setString(1, name);
 
             // If not 1 row was effected furing the query, then something went wrong.
             // We roll back our changes, and return 0.
-            int affectedRows = pStatement.executeUpdate();
+            // A duplicate inserted by another process is caught by the unique index on the name.
+            int affectedRows;
+            try {
+                affectedRows = pStatement.executeUpdate();
+            } catch (SQLIntegrityConstraintViolationException ex) {
+                LOGGER.info(ConsoleLogger.DB_QUERY_DUPL + director.getName());
+                conn.rollback();
+                return 0;
+            }
             if (affectedRows != 1) {
                 conn.rollback();
                 return 0;
@@ -128,8 +260,12 @@ public class DirectorDao implements Dao<Director> {
             // Getting the generated keys for the newly created record.
             ResultSet generatedKeys = pStatement.getGeneratedKeys();
             if (generatedKeys.next()) {
+                int directorId = generatedKeys.getInt(1);
                 conn.commit();
-                return generatedKeys.getInt(1);
+                NAME_INDEX.put(name, directorId);
+                SearchIndex.sharedPut(EntityType.DIRECTOR, directorId, name);
+                TrigramIndex.sharedPut(EntityType.DIRECTOR, directorId, name);
+                return directorId;
             }
             else return 0;
 
@@ -139,8 +275,53 @@ public class DirectorDao implements Dao<Director> {
         }
     }
 
+    /**
+     * Inserts directors in batches, committing after every chunkSize rows.
+     * Names which already exist in the table are not inserted again, the same as in insert().
+     * The id of every Director object is set to the id of its row, whether it was inserted or it already existed.
+     * Returns the generated director_id for each inserted director, and 0 for duplicates or in case of an error.
+     */
+    @Override
+    public int[] insertAll(Collection<Director> directors, int chunkSize) {
+        DaoEvent.Insert event = new DaoEvent.Insert();
+        event.begin();
+        int[] generatedIds = insertBatches(directors, chunkSize);
+        event.commit(DaoEvent.DIRECTOR, generatedIds.length == 1 ? generatedIds[0] : 0, DaoEvent.countInserted(generatedIds));
+        return generatedIds;
+    }
+
+    private int[] insertBatches(Collection<Director> directors, int chunkSize) {
+        List<Director> directorList = new ArrayList<>(directors);
+        int[] generatedIds = new int[directorList.size()];
+
+        List<String> names = new ArrayList<>(directorList.size());
+        for (Director director : directorList) names.add(director == null ? null : NameIndex.clean(director.getName()));
+
+        try (Connection conn = ConnectionFactory.getConnection()) {
+            BATCH_INSERTER.insertAll(conn, names, chunkSize, (index, id, inserted) -> {
+                if (id != 0) directorList.get(index).setDirectorId(id);
+                if (inserted) {
+                    generatedIds[index] = id;
+                    SearchIndex.sharedPut(EntityType.DIRECTOR, id, names.get(index));
+                    TrigramIndex.sharedPut(EntityType.DIRECTOR, id, names.get(index));
+                }
+            });
+        } catch (SQLException ex) {
+            LOGGER.info(ConsoleLogger.SQL_EXC + ex.getMessage());
+        }
+        return generatedIds;
+    }
+
     @Override
     public boolean update(Director director) {
+        DaoEvent.Update event = new DaoEvent.Update();
+        event.begin();
+        boolean updated = updateRow(director);
+        event.commit(DaoEvent.DIRECTOR, director == null ? 0 : director.getDirectorId(), updated ? 1 : 0);
+        return updated;
+    }
+
+    private boolean updateRow(Director director) {
         // Return false if the input is null
         if (director == null) return false;
 
@@ -159,7 +340,7 @@ public class DirectorDao implements Dao<Director> {
             }
 
             // Now we can run the update query
-            String queryString = "UPDATE directors SET directors.director_name=? WHERE directors.director_id=?;";
+            String queryString = "UPDATE directors SET directors.name=? WHERE directors.director_id=?;";
             conn.setAutoCommit(false);
             PreparedStatement pStatement = conn.prepareStatement(queryString);
             pStatement.setString(1, director.getName());
@@ -175,6 +356,10 @@ public class DirectorDao implements Dao<Director> {
             }
 
             conn.commit();
+            NAME_INDEX.remove(originalDirector.getName(), originalDirector.getDirectorId());
+            NAME_INDEX.put(director.getName(), director.getDirectorId());
+            SearchIndex.sharedPut(EntityType.DIRECTOR, director.getDirectorId(), director.getName());
+            TrigramIndex.sharedPut(EntityType.DIRECTOR, director.getDirectorId(), director.getName());
             return true;
 
         } catch (SQLException ex) {
@@ -191,7 +376,8 @@ public class DirectorDao implements Dao<Director> {
         try (Connection conn = ConnectionFactory.getConnection()) {
             // Now we check if the Director object exists in the database.
             // If it is not exists, we have nothing to do, we return false.
-            if (isDirectorExistsInTable(conn, director) == null) return false;
+            Director originalDirector = isDirectorExistsInTable(conn, director);
+            if (originalDirector == null) return false;
 
             // Now we can delete the requested record from the table
             String queryString = "DELETE FROM directors WHERE directors.director_id=? OR directors.name=?;";
@@ -210,6 +396,9 @@ public class DirectorDao implements Dao<Director> {
             }
 
             conn.commit();
+            NAME_INDEX.remove(originalDirector.getName(), originalDirector.getDirectorId());
+            SearchIndex.sharedRemove(EntityType.DIRECTOR, originalDirector.getDirectorId());
+            TrigramIndex.sharedRemove(EntityType.DIRECTOR, originalDirector.getDirectorId());
             return true;
 
         } catch (SQLException ex) {
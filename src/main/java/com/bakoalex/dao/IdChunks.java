@@ -0,0 +1,62 @@
+package com.bakoalex.dao;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Splits id lists into chunks for "WHERE id IN (...)" queries.
+ *
+ * The chunks are padded to a few fixed sizes by repeating their last id, so only a handful of
+ * different statement shapes are ever prepared, and the driver's prepared statement cache can reuse them.
+ */
+class IdChunks {
+
+    /** The possible chunk sizes, in increasing order. */
+    static final int[] SHAPES = { 1, 4, 16, 64, 256 };
+
+    private IdChunks() {}
+
+    /**
+     * Splits the distinct ids into padded chunks. Null ids are ignored.
+     * @return the chunks, each has one of the SHAPES sizes
+     */
+    static List<int[]> split(Collection<Integer> ids) {
+        Set<Integer> distinct = new LinkedHashSet<>(ids);
+        distinct.remove(null);
+
+        List<int[]> chunks = new ArrayList<>();
+        int[] values = new int[distinct.size()];
+        int count = 0;
+        for (int id : distinct) values[count++] = id;
+
+        int largest = SHAPES[SHAPES.length - 1];
+        for (int from = 0; from < count; from += largest) {
+            int size = Math.min(largest, count - from);
+            int[] chunk = new int[shapeFor(size)];
+            System.arraycopy(values, from, chunk, 0, size);
+            for (int i = size; i < chunk.length; i++) chunk[i] = chunk[size - 1];
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+
+    /**
+     * @return the smallest shape which can hold size ids
+     */
+    static int shapeFor(int size) {
+        for (int shape : SHAPES) if (shape >= size) return shape;
+        return SHAPES[SHAPES.length - 1];
+    }
+
+    /**
+     * @return "?,?,...,?" with count placeholders
+     */
+    static String placeholders(int count) {
+        StringBuilder placeholders = new StringBuilder(count * 2);
+        for (int i = 0; i < count; i++) placeholders.append(i == 0 ? "?" : ",?");
+        return placeholders.toString();
+    }
+}
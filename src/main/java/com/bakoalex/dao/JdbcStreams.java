@@ -0,0 +1,123 @@
+package com.bakoalex.dao;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.bakoalex.database.ConnectionFactory;
+import com.bakoalex.logger.ConsoleLogger;
+import com.bakoalex.logger.Log;
+
+/**
+ * Helpers for streaming query results row by row.
+ * The streams own their connection, so they must be closed (e.g. with try-with-resources),
+ * which gives the connection back to the pool.
+ */
+class JdbcStreams {
+
+    private static final Logger LOGGER = ConsoleLogger.attach();
+
+    private static final String MYSQL = "MySQL";
+
+    /** Rows fetched at a time by the drivers which stream with a positive fetch size. */
+    private static final int FETCH_SIZE = 1000;
+
+    private JdbcStreams() {}
+
+    /**
+     * Reads rows one by one from an open ResultSet.
+     * A SQLException while reading ends the stream, like the other DAO methods it is only logged.
+     */
+    static abstract class RowSpliterator<T> extends Spliterators.AbstractSpliterator<T> {
+        protected RowSpliterator() {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+        }
+
+        /**
+         * @return the next element, or null if there are no more rows
+         */
+        protected abstract T next() throws SQLException;
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            try {
+                T element = next();
+                if (element == null) return false;
+                action.accept(element);
+                return true;
+            } catch (SQLException ex) {
+                LOGGER.info(ConsoleLogger.SQL_EXC + ex.getMessage());
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Runs the query on a new pooled connection with a streaming result set.
+     * @param sqlQueryString the query to run
+     * @param mapper creates one element from each row
+     * @return a Stream which has to be closed, or an empty Stream if the query could not be run
+     */
+    static <T> Stream<T> stream(String sqlQueryString, RowMapper<T> mapper) {
+        return streamGrouped(sqlQueryString, result -> new RowSpliterator<T>() {
+            @Override
+            protected T next() throws SQLException {
+                return result.next() ? mapper.map(result) : null;
+            }
+        });
+    }
+
+    /**
+     * Runs the query on a new pooled connection with a streaming result set,
+     * and builds the elements with a custom spliterator which can consume several rows per element.
+     */
+    static <T> Stream<T> streamGrouped(String sqlQueryString, SpliteratorFactory<T> factory) {
+        Connection conn = null;
+        try {
+            conn = ConnectionFactory.getConnection();
+            Log.fine(LOGGER, ConsoleLogger.DB_QUERY, sqlQueryString);
+            Statement statement = createStreamingStatement(conn);
+            ResultSet result = statement.executeQuery(sqlQueryString);
+
+            Connection owner = conn;
+            return StreamSupport.stream(factory.create(result), false).onClose(() -> close(owner));
+
+        } catch (SQLException ex) {
+            LOGGER.info(ConsoleLogger.SQL_EXC + ex.getMessage());
+            if (conn != null) close(conn);
+            return Stream.empty();
+        }
+    }
+
+    /**
+     * Creates a statement whose result set is streamed from the server row by row,
+     * instead of reading the whole result into memory first.
+     */
+    static Statement createStreamingStatement(Connection conn) throws SQLException {
+        Statement statement = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        // MySQL Connector/J only streams the result set with this fetch size, other drivers reject it
+        if (MYSQL.equals(conn.getMetaData().getDatabaseProductName())) statement.setFetchSize(Integer.MIN_VALUE);
+        else statement.setFetchSize(FETCH_SIZE);
+        return statement;
+    }
+
+    private static void close(Connection conn) {
+        try {
+            conn.close();
+        } catch (SQLException ex) {
+            LOGGER.info(ConsoleLogger.SQL_EXC + ex.getMessage());
+        }
+    }
+
+    @FunctionalInterface
+    interface SpliteratorFactory<T> {
+        Spliterator<T> create(ResultSet result) throws SQLException;
+    }
+}
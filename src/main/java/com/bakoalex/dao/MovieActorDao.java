@@ -4,13 +4,20 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
 
 import com.bakoalex.database.ConnectionFactory;
 import com.bakoalex.dto.MovieActor;
+import com.bakoalex.logger.ConsoleLogger;
+import com.bakoalex.logger.Log;
 
 public class MovieActorDao {
 
+    private static final Logger LOGGER = ConsoleLogger.attach();
+
     private MovieActor deserializeMovieActor(ResultSet result) throws SQLException {
         return new MovieActor(result.getInt(1), result.getInt(2));
     }
@@ -42,8 +49,42 @@ public class MovieActorDao {
         }
     }
 
-    public MovieActor getByActorId(int id) {
-        return null;
+    /**
+     * Returns all rows of the movies_actors table with the given actor_id, i.e. every movie featuring the actor,
+     * ordered by movie_id. It returns an empty list if there are no such rows or in case of an error.
+     * @param id actor_id of the MovieActor objects
+     * @return List of MovieActor objects created from the query result
+     */
+    public List<MovieActor> getByActorId(int id) {
+        List<MovieActor> movieActors = new ArrayList<>();
+
+        // Connecting to the database
+        try (Connection conn = ConnectionFactory.getConnection()) {
+
+            // SQL Query String
+            String sqlQueryString = "SELECT movie_id, actor_id FROM movies_actors ma WHERE ma.actor_id=? ORDER BY ma.movie_id;";
+            Log.fine(LOGGER, ConsoleLogger.DB_QUERY, sqlQueryString);
+
+            // Create statement
+            PreparedStatement pStatement = conn.prepareStatement(sqlQueryString);
+            pStatement.setInt(1, id);
+
+            // Run the query
+            ResultSet queryResult = pStatement.executeQuery();
+            while (queryResult.next()) movieActors.add(deserializeMovieActor(queryResult));
+
+        } catch (SQLException ex) {
+            LOGGER.info(ConsoleLogger.SQL_EXC + ex.getMessage());
+        }
+        return movieActors;
+    }
+
+    /**
+     * Streams every row of the movies_actors table from a streaming result set, in no particular order.
+     * The Stream must be closed after use.
+     */
+    public Stream<MovieActor> stream() {
+        return JdbcStreams.stream("SELECT movie_id, actor_id FROM movies_actors;", this::deserializeMovieActor);
     }
 
     /**
@@ -1,18 +1,33 @@
 package com.bakoalex.dao;
 
+import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 import java.util.logging.Logger;
+import java.util.stream.Stream;
 
 import com.bakoalex.database.ConnectionFactory;
 import com.bakoalex.dto.Actor;
 import com.bakoalex.dto.Director;
 import com.bakoalex.dto.Movie;
 import com.bakoalex.logger.ConsoleLogger;
+import com.bakoalex.logger.Log;
+import com.bakoalex.search.SearchIndex;
+import com.bakoalex.search.EntityType;
 import com.mysql.cj.xdevapi.Statement;
 
 public class MovieDao implements Dao<Movie> {
@@ -20,20 +35,65 @@ public class MovieDao implements Dao<Movie> {
     private static final Logger LOGGER = ConsoleLogger.attach();
 
     /**
-     * Check if given Movie object is exists in the movies table
-     * @param conn Connection object to the database
-     * @param movie Movie object, which we want to check
-     * @return An empty object if the movie doesnt exists, otherwise it returns a deserialized Movie object
-     * @throws SQLException
+     * How get() loads a movie together with its actors and directors.
+     * JOINED needs a single round trip, SEPARATE_QUERIES runs one query per table.
      */
-    private Movie isMovieExistsInTalbe(Connection conn, Movie movie) throws SQLException {
-        String queryString = "SELECT * FROM movies WHERE movies.movies_id=? OR movies.title=?;";
-        PreparedStatement pStatement = conn.prepareStatement(queryString);
-        pStatement.setInt(1, movie.getMovieId());
-        pStatement.setString(2, movie.getTitle());
-        ResultSet queryResult = pStatement.executeQuery();
-        if (queryResult.next()) return deserializeMovie(queryResult);
-        else return null;
+    public enum FetchMode { JOINED, SEPARATE_QUERIES }
+
+    /**
+     * Order of the movies in the paginated listing. Ties are broken by movie_id, so the order is stable.
+     */
+    public enum SortOrder {
+        ID("", "ORDER BY m.movie_id"),
+        TITLE("(m.title>? OR (m.title=? AND m.movie_id>?))", "ORDER BY m.title, m.movie_id"),
+        YEAR("(m.year>? OR (m.year=? AND m.movie_id>?))", "ORDER BY m.year, m.movie_id");
+
+        private final String keysetCondition;
+        private final String orderBy;
+
+        SortOrder(String keysetCondition, String orderBy) {
+            this.keysetCondition = keysetCondition;
+            this.orderBy = orderBy;
+        }
+    }
+
+    private static final String JOINED_SELECT_STRING =
+        "SELECT m.*, a.actor_id, a.name AS actor_name, d.director_id, d.name AS director_name FROM movies m " +
+        "LEFT JOIN movies_actors ma ON ma.movie_id=m.movie_id LEFT JOIN actors a ON a.actor_id=ma.actor_id " +
+        "LEFT JOIN movies_directors md ON md.movie_id=m.movie_id LEFT JOIN directors d ON d.director_id=md.director_id ";
+
+    private static final String JOINED_QUERY_STRING = JOINED_SELECT_STRING + "WHERE m.movie_id=?;";
+
+    private static final String JOINED_STREAM_QUERY_STRING = JOINED_SELECT_STRING + "ORDER BY m.movie_id;";
+
+    private static final String ALL_MOVIES_QUERY_STRING = "SELECT * FROM movies ORDER BY movie_id;";
+
+    private static final String ACTORS_SELECT_STRING =
+        "SELECT ma.movie_id, a.actor_id, a.name FROM movies_actors ma INNER JOIN actors a ON a.actor_id=ma.actor_id";
+
+    private static final String DIRECTORS_SELECT_STRING =
+        "SELECT md.movie_id, d.director_id, d.name FROM movies_directors md INNER JOIN directors d ON d.director_id=md.director_id";
+
+    private static final String ALL_ACTORS_QUERY_STRING = ACTORS_SELECT_STRING + ";";
+
+    private static final String ALL_DIRECTORS_QUERY_STRING = DIRECTORS_SELECT_STRING + ";";
+
+    private static final String INSERT_MOVIE_STRING =
+        "INSERT INTO movies (title, year, length, media_type, media_cover, media_origin, num_of_rents, is_rented) " +
+        "VALUES (?, ?, ?, ?, ?, ?, ?, ?);";
+
+    private static final String INSERT_MOVIE_ACTOR_STRING = "INSERT INTO movies_actors (movie_id, actor_id) VALUES (?, ?);";
+
+    private static final String INSERT_MOVIE_DIRECTOR_STRING = "INSERT INTO movies_directors (movie_id, director_id) VALUES (?, ?);";
+
+    private final FetchMode fetchMode;
+
+    public MovieDao() {
+        this(FetchMode.JOINED);
+    }
+
+    public MovieDao(FetchMode fetchMode) {
+        this.fetchMode = fetchMode;
     }
 
     /**
@@ -51,7 +111,8 @@ public class MovieDao implements Dao<Movie> {
         movie.setMediaType(result.getString("media_type"));
         movie.setMediaCover(result.getString("media_cover"));
         movie.setMediaOrigin(result.getString("media_origin"));
-        movie.setNumOfRents(result.getInt("num_of_rents"));
+        // Rents which are counted but not written to the table yet
+        movie.setNumOfRents(result.getInt("num_of_rents") + RentCounter.sharedPending(movie.getMovieId()));
         movie.setRented(result.getBoolean("is_rented"));
         return movie;
         
@@ -63,6 +124,82 @@ public class MovieDao implements Dao<Movie> {
      * Otherwise, we return a de-serialized Movie object
      */
     public Movie get(int id) {
+        DaoEvent.Get event = new DaoEvent.Get();
+        event.begin();
+        Movie movie = fetchMode == FetchMode.SEPARATE_QUERIES ? getWithSeparateQueries(id) : getJoined(id);
+        event.commit(DaoEvent.MOVIE, id, movie == null ? 0 : 1);
+        return movie;
+    }
+
+    /**
+     * Loads the movie with its actors and directors in a single round trip.
+     * The joined result set contains one row for every actor-director pair of the movie,
+     * so the actors and directors are de-duplicated by their id, keeping their first-seen order.
+     * Like the separate queries, it returns null if the movie has no actors or no directors.
+     */
+    private Movie getJoined(int id) {
+
+        // Connect to database
+        try (Connection conn = ConnectionFactory.getConnection()) {
+            PreparedStatement pStatement = conn.prepareStatement(JOINED_QUERY_STRING);
+            pStatement.setInt(1, id);
+
+            // Only one movie is in the result, but it can be spread over several rows
+            Movie movie = new JoinedMovieCursor(pStatement.executeQuery()).next();
+            if (movie == null || movie.getActors().isEmpty() || movie.getDirectors().isEmpty()) return null;
+            return movie;
+
+        } catch (SQLException ex) {
+            LOGGER.info("SQL Exception: " + ex.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Reads movies from the joined movies-actors-directors result set.
+     * Every movie spans one or more consecutive rows (one for every actor-director pair),
+     * so the rows have to be ordered by movie_id. The actors and directors are de-duplicated
+     * by their id, keeping their first-seen order.
+     */
+    private class JoinedMovieCursor {
+        private final ResultSet result;
+        private boolean onRow;
+
+        private JoinedMovieCursor(ResultSet result) throws SQLException {
+            this.result = result;
+            this.onRow = result.next();
+        }
+
+        /**
+         * Consumes the rows of the next movie.
+         * @return the next Movie object with its actor and director lists (possibly empty), or null at the end
+         */
+        private Movie next() throws SQLException {
+            if (!onRow) return null;
+
+            Movie movie = deserializeMovie(result);
+            Map<Integer, Actor> actors = new LinkedHashMap<>();
+            Map<Integer, Director> directors = new LinkedHashMap<>();
+            do {
+                int actorId = result.getInt("actor_id");
+                if (!result.wasNull() && !actors.containsKey(actorId)) 
+                    actors.put(actorId, new Actor(actorId, result.getString("actor_name")));
+
+                int directorId = result.getInt("director_id");
+                if (!result.wasNull() && !directors.containsKey(directorId)) 
+                    directors.put(directorId, new Director(directorId, result.getString("director_name")));
+            } while ((onRow = result.next()) && result.getInt("movie_id") == movie.getMovieId());
+
+            movie.setActors(new ArrayList<>(actors.values()));
+            movie.setDirectors(new ArrayList<>(directors.values()));
+            return movie;
+        }
+    }
+
+    /**
+     * Loads the movie, its actors and its directors with three separate queries.
+     */
+    private Movie getWithSeparateQueries(int id) {
 
         // Connect to database
         try (Connection conn = ConnectionFactory.getConnection()) {
@@ -120,30 +257,35 @@ public class MovieDao implements Dao<Movie> {
     /**
      * Return all Movie object from the database.
      * If no object was found, we return an empty list instead.
+     * The whole catalog is loaded with three set-based queries (movies, actors, directors)
+     * on one connection, and the actors and directors are attached to their movies in memory.
+     * Like get(), movies without actors or directors are left out.
      * @return
      */
     public List<Movie> getAll() {
-        //*******************NOTE**********************
-        // This is not the optimal solution, since we
-        // run 3 query for each Movie object which will
-        // be very slow in case of lots of records.
-        //*********************************************
+        DaoEvent.GetAll event = new DaoEvent.GetAll();
+        event.begin();
+        List<Movie> movies = queryAll();
+        event.commit(DaoEvent.MOVIE, 0, movies == null ? 0 : movies.size());
+        return movies;
+    }
+
+    private List<Movie> queryAll() {
         List<Movie> movies = new ArrayList<>();
 
         // Connecting to database
         try (Connection conn = ConnectionFactory.getConnection()) {
 
-            // Run the query
-            String queryString = "SELECT * FROM movies;";
-            ResultSet queryResult = conn.createStatement().executeQuery(queryString);
+            // Run the queries
+            ResultSet queryResult = conn.createStatement().executeQuery(ALL_MOVIES_QUERY_STRING);
+            while (queryResult.next()) movies.add(deserializeMovie(queryResult));
 
-            Movie movie = null;
-            while (queryResult.next()) {
-                movie = get(queryResult.getInt(1));
-                if (movie != null) movies.add(movie);
-            }
+            Map<Integer, List<Actor>> actors = readActorsByMovie(
+                conn.createStatement().executeQuery(ALL_ACTORS_QUERY_STRING));
+            Map<Integer, List<Director>> directors = readDirectorsByMovie(
+                conn.createStatement().executeQuery(ALL_DIRECTORS_QUERY_STRING));
 
-            return movies;
+            return attachPeople(movies, actors, directors);
 
         } catch (SQLException ex) {
             LOGGER.info("SQL Exception: " + ex.getMessage());
@@ -151,40 +293,378 @@ public class MovieDao implements Dao<Movie> {
         }
     }
 
+    /**
+     * Streams the id, title and year of every movie, without their actors and directors.
+     * Used to build indexes of the whole catalog. The Stream must be closed after use.
+     */
+    public Stream<Movie> streamTitles() {
+        return JdbcStreams.stream("SELECT movie_id, title, year FROM movies;", result -> {
+            Movie movie = new Movie();
+            movie.setMovieId(result.getInt(1));
+            movie.setTitle(result.getString(2));
+            movie.setYear(result.getInt(3));
+            return movie;
+        });
+    }
+
+    /**
+     * Streams all movies with their actors and directors from a single joined, streaming result set.
+     * Each movie is built as soon as its rows have been read, so only one movie is held in memory at a time.
+     * Like getAll(), movies without actors or directors are left out. The Stream must be closed after use.
+     */
+    @Override
+    public Stream<Movie> stream() {
+        return JdbcStreams.streamGrouped(JOINED_STREAM_QUERY_STRING, result -> {
+            JoinedMovieCursor cursor = new JoinedMovieCursor(result);
+            return new JdbcStreams.RowSpliterator<Movie>() {
+                @Override
+                protected Movie next() throws SQLException {
+                    Movie movie;
+                    while ((movie = cursor.next()) != null) {
+                        if (!movie.getActors().isEmpty() && !movie.getDirectors().isEmpty()) return movie;
+                    }
+                    return null;
+                }
+            };
+        });
+    }
+
+    /**
+     * Returns the movies with a movie_id greater than afterId, ordered by movie_id.
+     * Movies without actors or directors are skipped, so the page still contains limit movies if there are enough.
+     */
+    @Override
+    public List<Movie> page(int afterId, int limit) {
+        PageCursor position = afterId > 0 ? new PageCursor(SortOrder.ID, afterId, null) : null;
+        return page(SortOrder.ID, position, limit).getItems();
+    }
+
+    /**
+     * Returns one page of movies in the given order, using keyset pagination instead of OFFSET,
+     * so a deep page costs the same as the first one.
+     * @param order sort order of the listing
+     * @param cursor the next cursor of the previous page, or null for the first page
+     * @param limit maximum number of movies on the page
+     * @return the page of movies with the cursor of the next page. If a query fails, the page holds the movies
+     * read until then, and its cursor continues right after them, so a failure is not taken for the last page.
+     */
+    public Page<Movie> page(SortOrder order, String cursor, int limit) {
+        return page(order, cursor == null ? null : PageCursor.decode(order, cursor), limit);
+    }
+
+    private Page<Movie> page(SortOrder order, PageCursor position, int limit) {
+        List<Movie> movies = new ArrayList<>();
+        boolean exhausted = false;
+
+        try (Connection conn = ConnectionFactory.getConnection()) {
+
+            // Skipped (incomplete) movies leave holes in the page, so we keep reading until it is full
+            while (!exhausted && movies.size() < limit) {
+                int wanted = limit - movies.size();
+                List<Movie> scanned = selectPage(conn, order, position, wanted);
+                exhausted = scanned.size() < wanted;
+                if (scanned.isEmpty()) break;
+
+                Movie last = scanned.get(scanned.size() - 1);
+                PageCursor next = new PageCursor(order, last.getMovieId(), 
+                    order == SortOrder.TITLE ? last.getTitle() : String.valueOf(last.getYear()));
+                movies.addAll(loadPeople(conn, scanned));
+                // Only moved once the scanned movies are on the page, so it is always the last good position
+                position = next;
+            }
+
+        } catch (SQLException ex) {
+            LOGGER.info("SQL Exception: " + ex.getMessage());
+            return new Page<>(movies, (position != null ? position : PageCursor.first(order)).encode());
+        }
+        return new Page<>(movies, exhausted || position == null ? null : position.encode());
+    }
+
+    /**
+     * Selects the next rows of the movies table after the given position, without actors and directors.
+     */
+    private List<Movie> selectPage(Connection conn, SortOrder order, PageCursor position, int limit) throws SQLException {
+        String sqlQueryString = "SELECT * FROM movies m ";
+        if (position != null) {
+            sqlQueryString += order == SortOrder.ID ? "WHERE m.movie_id>? " : "WHERE " + order.keysetCondition + " ";
+        }
+        sqlQueryString += order.orderBy + " LIMIT ?;";
+        Log.fine(LOGGER, ConsoleLogger.DB_QUERY, sqlQueryString);
+
+        PreparedStatement pStatement = conn.prepareStatement(sqlQueryString);
+        int index = 1;
+        if (position != null && order == SortOrder.ID) {
+            pStatement.setInt(index++, position.movieId);
+        } else if (position != null && order == SortOrder.YEAR) {
+            pStatement.setInt(index++, Integer.parseInt(position.value));
+            pStatement.setInt(index++, Integer.parseInt(position.value));
+            pStatement.setInt(index++, position.movieId);
+        } else if (position != null) {
+            pStatement.setString(index++, position.value);
+            pStatement.setString(index++, position.value);
+            pStatement.setInt(index++, position.movieId);
+        }
+        pStatement.setInt(index, limit);
+
+        List<Movie> movies = new ArrayList<>();
+        ResultSet queryResult = pStatement.executeQuery();
+        while (queryResult.next()) movies.add(deserializeMovie(queryResult));
+        return movies;
+    }
+
+    /**
+     * Loads the actors and directors of the given movies with one query each per IdChunks chunk
+     * (a single query each for up to 256 movies), and returns the movies which have both.
+     */
+    private List<Movie> loadPeople(Connection conn, List<Movie> movies) throws SQLException {
+        if (movies.isEmpty()) return movies;
+
+        List<Integer> movieIds = new ArrayList<>(movies.size());
+        for (Movie movie : movies) movieIds.add(movie.getMovieId());
+
+        Map<Integer, List<Actor>> actors = new HashMap<>();
+        Map<Integer, List<Director>> directors = new HashMap<>();
+        for (int[] chunk : IdChunks.split(movieIds)) {
+            String placeholders = IdChunks.placeholders(chunk.length);
+            PreparedStatement aPreparedStatement = conn.prepareStatement(
+                ACTORS_SELECT_STRING + " WHERE ma.movie_id IN (" + placeholders + ");");
+            PreparedStatement dPreparedStatement = conn.prepareStatement(
+                DIRECTORS_SELECT_STRING + " WHERE md.movie_id IN (" + placeholders + ");");
+            for (int i = 0; i < chunk.length; i++) {
+                aPreparedStatement.setInt(i + 1, chunk[i]);
+                dPreparedStatement.setInt(i + 1, chunk[i]);
+            }
+
+            actors.putAll(readActorsByMovie(aPreparedStatement.executeQuery()));
+            directors.putAll(readDirectorsByMovie(dPreparedStatement.executeQuery()));
+            aPreparedStatement.close();
+            dPreparedStatement.close();
+        }
+        return attachPeople(movies, actors, directors);
+    }
+
+    /**
+     * Returns the movies with the given ids, keyed by movie_id.
+     * The movies are loaded with chunked IN-list queries, then the actors and directors of the
+     * whole chunk with one query each. Like get(), movies without actors or directors are left out.
+     */
+    @Override
+    public Map<Integer, Movie> getMany(Collection<Integer> ids) {
+        Map<Integer, Movie> movies = new HashMap<>();
+        if (ids.isEmpty()) return movies;
+
+        try (Connection conn = ConnectionFactory.getConnection()) {
+            for (int[] chunk : IdChunks.split(ids)) {
+                String sqlQueryString = "SELECT * FROM movies m WHERE m.movie_id IN (" + IdChunks.placeholders(chunk.length) + ");";
+                Log.fine(LOGGER, ConsoleLogger.DB_QUERY, sqlQueryString);
+                PreparedStatement pStatement = conn.prepareStatement(sqlQueryString);
+                for (int i = 0; i < chunk.length; i++) pStatement.setInt(i + 1, chunk[i]);
+
+                List<Movie> chunkMovies = new ArrayList<>();
+                ResultSet queryResult = pStatement.executeQuery();
+                while (queryResult.next()) chunkMovies.add(deserializeMovie(queryResult));
+                pStatement.close();
+
+                for (Movie movie : loadPeople(conn, chunkMovies)) movies.put(movie.getMovieId(), movie);
+            }
+        } catch (SQLException ex) {
+            LOGGER.info("SQL Exception: " + ex.getMessage());
+        }
+        return movies;
+    }
+
+    /**
+     * Position of a paginated listing: the sort value and the movie_id of the last movie on the page.
+     * It is handed out as an opaque URL-safe Base64 token.
+     */
+    private static class PageCursor {
+        private final SortOrder order;
+        private final int movieId;
+        private final String value;
+
+        private PageCursor(SortOrder order, int movieId, String value) {
+            this.order = order;
+            this.movieId = movieId;
+            this.value = value;
+        }
+
+        /**
+         * @return the position before the first movie, which lets a failed first page be retried with a cursor
+         */
+        private static PageCursor first(SortOrder order) {
+            // Titles and years are NOT NULL, so every movie sorts after these values
+            if (order == SortOrder.TITLE) return new PageCursor(order, 0, "");
+            if (order == SortOrder.YEAR) return new PageCursor(order, 0, String.valueOf(Integer.MIN_VALUE));
+            return new PageCursor(order, 0, null);
+        }
+
+        private String encode() {
+            String token = order.name() + ":" + movieId + ":" + (value == null ? "" : value);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(token.getBytes(StandardCharsets.UTF_8));
+        }
+
+        private static PageCursor decode(SortOrder order, String cursor) {
+            String token;
+            try {
+                token = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            } catch (IllegalArgumentException ex) {
+                throw new IllegalArgumentException("Invalid page cursor: " + cursor, ex);
+            }
+
+            String[] parts = token.split(":", 3);
+            if (parts.length != 3 || !parts[0].equals(order.name())) 
+                throw new IllegalArgumentException("Page cursor does not belong to sort order " + order + ": " + cursor);
+            try {
+                if (order == SortOrder.YEAR) Integer.parseInt(parts[2]);
+                return new PageCursor(order, Integer.parseInt(parts[1]), parts[2]);
+            } catch (NumberFormatException ex) {
+                throw new IllegalArgumentException("Invalid page cursor: " + cursor, ex);
+            }
+        }
+    }
+
+    /**
+     * Groups (movie_id, actor_id, name) rows by movie_id.
+     */
+    private Map<Integer, List<Actor>> readActorsByMovie(ResultSet result) throws SQLException {
+        Map<Integer, List<Actor>> actors = new HashMap<>();
+        while (result.next()) {
+            actors.computeIfAbsent(result.getInt(1), k -> new ArrayList<>())
+                .add(new Actor(result.getInt(2), result.getString(3)));
+        }
+        return actors;
+    }
+
+    /**
+     * Groups (movie_id, director_id, name) rows by movie_id.
+     */
+    private Map<Integer, List<Director>> readDirectorsByMovie(ResultSet result) throws SQLException {
+        Map<Integer, List<Director>> directors = new HashMap<>();
+        while (result.next()) {
+            directors.computeIfAbsent(result.getInt(1), k -> new ArrayList<>())
+                .add(new Director(result.getInt(2), result.getString(3)));
+        }
+        return directors;
+    }
+
+    /**
+     * Sets the actors and directors of each movie, and returns the movies which have both.
+     */
+    private List<Movie> attachPeople(List<Movie> movies, Map<Integer, List<Actor>> actors, 
+                                     Map<Integer, List<Director>> directors) {
+        List<Movie> complete = new ArrayList<>(movies.size());
+        for (Movie movie : movies) {
+            List<Actor> movieActors = actors.get(movie.getMovieId());
+            List<Director> movieDirectors = directors.get(movie.getMovieId());
+            if (movieActors == null || movieDirectors == null) continue;
+            movie.setActors(movieActors);
+            movie.setDirectors(movieDirectors);
+            complete.add(movie);
+        }
+        return complete;
+    }
+
     /**
      * Creates a new record in the database which represenets a Movie object.
      * In case of any error we return 0.
      * If the insert was successful, we return the id of the inserted movie record.
      */
+    @Override
     public int insert(Movie movie) {
         // If provided Movie object is null, we return 0
         if (movie == null) return 0;
+        return insertAll(Collections.singletonList(movie))[0];
+    }
 
-        try (Connection conn = ConnectionFactory.getConnection()) {
-            //Check if there is a movie with the same title and same director(s)
-            // NOTE: This should be changed, to check not only the title and the id, but also the directors.
-            if (isMovieExistsInTalbe(conn, movie) == null) return 0;
-
-            int movieGeneratedKeys = 0;
-            int actorGeneratedKeys = 0;
-            int directorGeneratedKeys = 0;
-
-            // Prepare SQL statements
-            String movieSqlQuery =      "INSERT INTO movies (title, year, length, media_type, media_cover, media_origin, num_of_rents, is_rented) " +
-                                        "VALUES (?, ?, ?, ?, ?, ?, ?, ?);";
-            String directorSqlQuery =   "INSERT INTO directors d " +
-                                        "INNER JOIN movies_directors md ON d.director_id=md.director_id " +
-                                        "INNER JOIN movies m ON m.movie_id=md.movie_id " +
-                                        "";
-            String actorSqlQuery =      "INSERT INTO actors (name) VALUES (?);";
+    /**
+     * Inserts movies in batches, together with their movies_actors and movies_directors links,
+     * committing after every chunkSize movies.
+     * Actors and directors without an id are inserted (or resolved by name) first with batched statements.
+     * A movie is skipped if a movie with the same title and year already exists.
+     * Returns the generated movie_id for each inserted movie, and 0 for skipped movies or in case of an error.
+     */
+    @Override
+    public int[] insertAll(Collection<Movie> movies, int chunkSize) {
+        if (chunkSize < 1) throw new IllegalArgumentException("chunkSize must be at least 1");
+        DaoEvent.Insert event = new DaoEvent.Insert();
+        event.begin();
+        int[] generatedIds = insertBatches(movies, chunkSize);
+        event.commit(DaoEvent.MOVIE, generatedIds.length == 1 ? generatedIds[0] : 0, DaoEvent.countInserted(generatedIds));
+        return generatedIds;
+    }
 
+    private int[] insertBatches(Collection<Movie> movies, int chunkSize) {
+        List<Movie> movieList = new ArrayList<>(movies);
+        int[] generatedIds = new int[movieList.size()];
+
+        // First take care about the actors and directors, so every link has an id to point to
+        List<Actor> newActors = new ArrayList<>();
+        List<Director> newDirectors = new ArrayList<>();
+        for (Movie movie : movieList) {
+            if (movie == null) continue;
+            if (movie.getActors() != null) 
+                for (Actor a : movie.getActors()) if (a.getActorId() == 0) newActors.add(a);
+            if (movie.getDirectors() != null) 
+                for (Director d : movie.getDirectors()) if (d.getDirectorId() == 0) newDirectors.add(d);
+        }
+        if (!newActors.isEmpty()) new ActorDao().insertAll(newActors, chunkSize);
+        if (!newDirectors.isEmpty()) new DirectorDao().insertAll(newDirectors, chunkSize);
+
+        try (Connection conn = ConnectionFactory.getConnection()) {
             conn.setAutoCommit(false);
+            Set<String> seenKeys = new HashSet<>();
+
+            for (int from = 0; from < movieList.size(); from += chunkSize) {
+                int to = Math.min(from + chunkSize, movieList.size());
+                try {
+                    insertChunk(conn, movieList, from, to, seenKeys, generatedIds);
+                    conn.commit();
+                    for (int i = from; i < to; i++) {
+                        if (generatedIds[i] != 0) SearchIndex.sharedPut(EntityType.MOVIE, generatedIds[i], movieList.get(i).getTitle());
+                    }
+                } catch (SQLException ex) {
+                    conn.rollback();
+                    for (int i = from; i < to; i++) generatedIds[i] = 0;
+                    throw ex;
+                }
+            }
 
-            PreparedStatement mPreparedStatement = conn.prepareStatement(movieSqlQuery, PreparedStatement.RETURN_GENERATED_KEYS);
-            PreparedStatement dPreparedStatement = conn.prepareStatement(directorSqlQuery, PreparedStatement.RETURN_GENERATED_KEYS);
-            PreparedStatement aPreparedStatement = conn.prepareStatement(actorSqlQuery, PreparedStatement.RETURN_GENERATED_KEYS);
+        } catch (SQLException ex) {
+            LOGGER.info("SQL Exception: " + ex.getMessage());
+        }
+        return generatedIds;
+    }
+
+    /**
+     * Inserts one chunk of movies and their links, without committing.
+     */
+    private void insertChunk(Connection conn, List<Movie> movies, int from, int to, Set<String> seenKeys, 
+                             int[] generatedIds) throws SQLException {
+        List<Integer> insertable = new ArrayList<>();
+        for (int i = from; i < to; i++) if (movies.get(i) != null && isInsertable(movies.get(i))) insertable.add(i);
+        if (insertable.isEmpty()) return;
+
+        // Check which movies already exist, with one query for the whole chunk
+        Set<String> titles = new LinkedHashSet<>();
+        for (int i : insertable) titles.add(movies.get(i).getTitle());
+
+        PreparedStatement existsStatement = conn.prepareStatement(
+            "SELECT m.title, m.year FROM movies m WHERE m.title IN (" + IdChunks.placeholders(titles.size()) + ");");
+        int index = 1;
+        for (String title : titles) existsStatement.setString(index++, title);
+        ResultSet queryResult = existsStatement.executeQuery();
+        while (queryResult.next()) seenKeys.add(movieKey(queryResult.getString(1), queryResult.getInt(2)));
+
+        // Now we can add the new movies to the movies table
+        List<Integer> batch = new ArrayList<>();
+        PreparedStatement mPreparedStatement = conn.prepareStatement(INSERT_MOVIE_STRING, PreparedStatement.RETURN_GENERATED_KEYS);
+        for (int i : insertable) {
+            Movie movie = movies.get(i);
+            if (!seenKeys.add(movieKey(movie.getTitle(), movie.getYear()))) {
+                LOGGER.info(ConsoleLogger.DB_QUERY_DUPL + movie.getTitle());
+                continue;
+            }
 
-            // First add the Movie object to the Movies table
             mPreparedStatement.setString(       1, movie.getTitle());
             mPreparedStatement.setInt(          2, movie.getYear());
             mPreparedStatement.setInt(          3, movie.getLength());
@@ -193,50 +673,79 @@ public class MovieDao implements Dao<Movie> {
             mPreparedStatement.setString(       6, movie.getMediaOrigin());
             mPreparedStatement.setInt(          7, movie.getNumOfRents());
             mPreparedStatement.setInt(          8, movie.isRented() ? 1 : 0);
+            mPreparedStatement.addBatch();
+            batch.add(i);
+        }
+        if (batch.isEmpty()) return;
+        mPreparedStatement.executeBatch();
+
+        // Gather generated keys for the Movie objects, they come back in the order of the batch
+        ResultSet mGeneratedKeys = mPreparedStatement.getGeneratedKeys();
+        for (int i : batch) {
+            if (!mGeneratedKeys.next()) throw new SQLException("Missing generated key for movies batch insert.");
+            generatedIds[i] = mGeneratedKeys.getInt(1);
+            movies.get(i).setMovieId(generatedIds[i]);
+        }
 
-            // Executing query for inserting new Movie
-            if (!mPreparedStatement.execute()) {
-                conn.rollback();
-                return 0;
-            }
-
-            // Gather generated keys for Movie object
-            ResultSet mGeneratedKeys = mPreparedStatement.getGeneratedKeys();
-            if (mGeneratedKeys.next()) movieGeneratedKeys = mGeneratedKeys.getInt(1);
-            else {
-                conn.rollback();
-                return 0;
+        // Now take care about the movies_actors and movies_directors links
+        PreparedStatement aPreparedStatement = conn.prepareStatement(INSERT_MOVIE_ACTOR_STRING);
+        PreparedStatement dPreparedStatement = conn.prepareStatement(INSERT_MOVIE_DIRECTOR_STRING);
+        for (int i : batch) {
+            Movie movie = movies.get(i);
+            Set<Integer> actorIds = new LinkedHashSet<>();
+            for (Actor a : movie.getActors()) actorIds.add(a.getActorId());
+            for (int actorId : actorIds) {
+                aPreparedStatement.setInt(1, movie.getMovieId());
+                aPreparedStatement.setInt(2, actorId);
+                aPreparedStatement.addBatch();
             }
 
-            // Now take car of actor(s)
-            ActorDao actorDao = new ActorDao();
-            for (Actor a : movie.getActors()) {
-                // Check if the actor exists in the actors table
-                if ((actorGeneratedKeys = actorDao.insert(a)) == 0) actorGeneratedKeys = a.getActorId();
-                if (actorGeneratedKeys == 0) {
-                    conn.rollback();
-                    return 0;
-                }
-                // NOTE: Here we need DAO class for the movies_actors table!!!
-                // Implement it ASAP!!!!
+            Set<Integer> directorIds = new LinkedHashSet<>();
+            for (Director d : movie.getDirectors()) directorIds.add(d.getDirectorId());
+            for (int directorId : directorIds) {
+                dPreparedStatement.setInt(1, movie.getMovieId());
+                dPreparedStatement.setInt(2, directorId);
+                dPreparedStatement.addBatch();
             }
+        }
+        aPreparedStatement.executeBatch();
+        dPreparedStatement.executeBatch();
+    }
 
-            PreparedStatement sql = conn.prepareStatement("ASD");
-            LOGGER.finest("Executing SQL Query: " + sql.toString());
-            sql.execute();
-            conn.commit();
-            LOGGER.finest("SQL query completed successfully.");
+    /**
+     * A movie can only be inserted if it has a title and all of its actors and directors have an id.
+     * Otherwise it is logged with the reason, and skipped.
+     */
+    private boolean isInsertable(Movie movie) {
+        String reason = null;
+        if (movie.getTitle() == null || movie.getTitle().trim().isEmpty()) reason = "it has no title";
+        else if (movie.getActors() == null || movie.getDirectors() == null) reason = "it has no actors or directors";
+        else if (!hasResolvedPeople(movie)) reason = "some of its actors or directors could not be inserted";
+        if (reason == null) return true;
+
+        LOGGER.info(ConsoleLogger.DB_INSERT_FAIL + movie.getTitle() + ", because " + reason + ".");
+        return false;
+    }
 
-            return 1;
+    private boolean hasResolvedPeople(Movie movie) {
+        for (Actor a : movie.getActors()) if (a.getActorId() == 0) return false;
+        for (Director d : movie.getDirectors()) if (d.getDirectorId() == 0) return false;
+        return true;
+    }
 
-        } catch (SQLException ex) {
-            LOGGER.info("SQL Exception: " + ex.getMessage());
-            return 0;
-        }
+    private static String movieKey(String title, int year) {
+        return title.trim().toLowerCase(Locale.ROOT) + "|" + year;
     }
 
     public boolean update(Movie movie) {
-        
+        DaoEvent.Update event = new DaoEvent.Update();
+        event.begin();
+        boolean updated = updateRow(movie);
+        event.commit(DaoEvent.MOVIE, movie.getMovieId(), updated ? 1 : 0);
+        return updated;
+    }
+
+    private boolean updateRow(Movie movie) {
         // Get the original record from the table
         Movie originalMovie = get(movie.getMovieId());
 
@@ -272,7 +781,7 @@ public class MovieDao implements Dao<Movie> {
                                                 " SET d.director_name=? " + 
                                                 " WHERE d.director_id=? AND m.movie_id=?;";
 
-            LOGGER.fine("SQL update string is: " + updateSQlString);
+            Log.fine(LOGGER, "SQL update string is: ", updateSQlString);
 
             PreparedStatement sql = conn.prepareStatement(updateSQlString);
             sql.setString(1, movie.getTitle());
@@ -281,20 +790,22 @@ public class MovieDao implements Dao<Movie> {
             sql.setString(4, movie.getMediaType());
             sql.setString(5, movie.getMediaCover());
             sql.setString(6, movie.getMediaOrigin());
-            sql.setInt(7, movie.getNumOfRents());
+            // The pending rents are added by the next RentCounter flush
+            sql.setInt(7, movie.getNumOfRents() - RentCounter.sharedPending(movie.getMovieId()));
             sql.setInt(8, movie.isRented() ? 1 : 0);
             sql.setInt(9, movie.getMovieId());
 
-            LOGGER.finest("Running sql query: " + sql.toString());
+            Log.finest(LOGGER, "Running sql query: ", sql);
             sql.execute();
             conn.commit();
+            SearchIndex.sharedPut(EntityType.MOVIE, movie.getMovieId(), movie.getTitle());
             LOGGER.finest("SQL query completed.");
             
         } catch (SQLException ex) {
             LOGGER.info("Could not update the movie: " + movie.toString() + ", exception message: " + ex.getMessage());
             return false;
         }
-        return false;
+        return true;
     }
 
     public boolean delete(Movie movie) {
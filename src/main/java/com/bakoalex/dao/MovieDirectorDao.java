@@ -0,0 +1,17 @@
+package com.bakoalex.dao;
+
+import java.util.stream.Stream;
+
+import com.bakoalex.dto.MovieDirector;
+
+public class MovieDirectorDao {
+
+    /**
+     * Streams every row of the movies_directors table from a streaming result set, in no particular order.
+     * The Stream must be closed after use.
+     */
+    public Stream<MovieDirector> stream() {
+        return JdbcStreams.stream("SELECT movie_id, director_id FROM movies_directors;",
+            result -> new MovieDirector(result.getInt(1), result.getInt(2)));
+    }
+}
@@ -0,0 +1,164 @@
+package com.bakoalex.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+
+import com.bakoalex.logger.ConsoleLogger;
+import com.bakoalex.logger.Log;
+
+/**
+ * Batch insert for the tables which are made of an id and a unique name (actors, directors).
+ * Names which already exist in the table are not inserted again, their id is resolved instead.
+ * Names found in the NameIndex are resolved without touching the database. Every chunk runs in its own
+ * transaction: one SELECT for the names missing from the index and one batched INSERT for the new ones.
+ */
+class NameBatchInserter {
+
+    private static final Logger LOGGER = ConsoleLogger.attach();
+
+    /**
+     * Receives the outcome of every input name.
+     */
+    @FunctionalInterface
+    interface Result {
+        /**
+         * @param index position of the name in the input list
+         * @param id id of the row with this name, 0 if the name is missing
+         * @param inserted true if the row was inserted by this call, false if it already existed
+         */
+        void accept(int index, int id, boolean inserted);
+    }
+
+    private final String table;
+    private final String idColumn;
+    private final NameIndex nameIndex;
+
+    NameBatchInserter(String table, String idColumn, NameIndex nameIndex) {
+        this.table = table;
+        this.idColumn = idColumn;
+        this.nameIndex = nameIndex;
+    }
+
+    /**
+     * Inserts the names in chunks, committing after every chunk.
+     * If a chunk fails, it is rolled back and the exception is thrown, the previous chunks stay committed.
+     */
+    void insertAll(Connection conn, List<String> names, int chunkSize, Result result) throws SQLException {
+        if (chunkSize < 1) throw new IllegalArgumentException("chunkSize must be at least 1");
+
+        Map<String, Integer> knownIds = new HashMap<>();
+        Set<String> insertedKeys = new HashSet<>();
+        nameIndex.warm(conn);
+        conn.setAutoCommit(false);
+
+        for (int from = 0; from < names.size(); from += chunkSize) {
+            int to = Math.min(from + chunkSize, names.size());
+            try {
+                // Distinct names of this chunk which were not seen in the previous chunks
+                Set<String> unknownKeys = new LinkedHashSet<>();
+                Map<String, String> namesByKey = new HashMap<>();
+                for (int i = from; i < to; i++) {
+                    String name = names.get(i);
+                    if (name == null) continue;
+                    String key = key(name);
+                    if (knownIds.containsKey(key)) continue;
+
+                    Integer indexedId = nameIndex.find(name);
+                    if (indexedId != null) knownIds.put(key, indexedId);
+                    else if (unknownKeys.add(key)) namesByKey.put(key, NameIndex.clean(name));
+                }
+
+                if (!unknownKeys.isEmpty()) {
+                    selectExisting(conn, namesByKey, unknownKeys, knownIds);
+                    insertNew(conn, namesByKey, unknownKeys, knownIds, insertedKeys);
+                }
+                conn.commit();
+                for (String key : insertedKeys) nameIndex.put(namesByKey.get(key), knownIds.get(key));
+
+            } catch (SQLException ex) {
+                conn.rollback();
+                throw ex;
+            }
+
+            for (int i = from; i < to; i++) {
+                String name = names.get(i);
+                if (name == null) {
+                    result.accept(i, 0, false);
+                    continue;
+                }
+                String key = key(name);
+                Integer id = knownIds.get(key);
+                // Only the first occurrence of a new name counts as inserted, the others are duplicates
+                result.accept(i, id == null ? 0 : id, insertedKeys.remove(key));
+            }
+        }
+    }
+
+    /**
+     * Looks up the ids of the names which are already in the table, and removes them from the unknown keys.
+     */
+    private void selectExisting(Connection conn, Map<String, String> namesByKey, Set<String> unknownKeys,
+                                Map<String, Integer> knownIds) throws SQLException {
+        String sqlQueryString = "SELECT " + idColumn + ", name FROM " + table + " WHERE name IN ("
+            + IdChunks.placeholders(unknownKeys.size()) + ");";
+        Log.fine(LOGGER, ConsoleLogger.DB_QUERY, sqlQueryString);
+
+        PreparedStatement pStatement = conn.prepareStatement(sqlQueryString);
+        int index = 1;
+        for (String key : unknownKeys) pStatement.setString(index++, namesByKey.get(key));
+
+        ResultSet queryResult = pStatement.executeQuery();
+        while (queryResult.next()) {
+            String key = key(queryResult.getString(2));
+            if (unknownKeys.remove(key)) {
+                knownIds.put(key, queryResult.getInt(1));
+                nameIndex.put(queryResult.getString(2), queryResult.getInt(1));
+            }
+        }
+    }
+
+    /**
+     * Inserts the remaining unknown names with one batched statement, and reads back their generated ids.
+     */
+    private void insertNew(Connection conn, Map<String, String> namesByKey, Set<String> unknownKeys,
+                           Map<String, Integer> knownIds, Set<String> insertedKeys) throws SQLException {
+        if (unknownKeys.isEmpty()) return;
+
+        String sqlQueryString = "INSERT INTO " + table + " (name) VALUES (?);";
+        Log.fine(LOGGER, ConsoleLogger.DB_QUERY, sqlQueryString, " x", unknownKeys.size());
+
+        PreparedStatement pStatement = conn.prepareStatement(sqlQueryString, Statement.RETURN_GENERATED_KEYS);
+        List<String> keys = new ArrayList<>(unknownKeys);
+        for (String key : keys) {
+            pStatement.setString(1, namesByKey.get(key));
+            pStatement.addBatch();
+        }
+        pStatement.executeBatch();
+
+        // The generated keys come back in the order of the batch
+        ResultSet generatedKeys = pStatement.getGeneratedKeys();
+        for (String key : keys) {
+            if (!generatedKeys.next()) throw new SQLException("Missing generated key for " + table + " batch insert.");
+            knownIds.put(key, generatedKeys.getInt(1));
+            insertedKeys.add(key);
+        }
+    }
+
+    /**
+     * Key used to match names, the same normalization as the NameIndex.
+     */
+    private static String key(String name) {
+        return NameIndex.normalize(name);
+    }
+}
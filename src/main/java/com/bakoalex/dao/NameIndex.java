@@ -0,0 +1,113 @@
+package com.bakoalex.dao;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+import com.bakoalex.logger.ConsoleLogger;
+import com.bakoalex.logger.Log;
+
+/**
+ * In-process name to id index of a table with unique names (actors, directors).
+ *
+ * It is loaded from the table once and kept up to date by the insert, update and delete methods
+ * of the Dao, so most duplicate checks never have to query the database.
+ * Names are compared after normalization: trimmed, whitespace collapsed and lower-cased.
+ * Rows written by other processes are not seen, the unique index on the name column catches those.
+ */
+public class NameIndex {
+
+    private static final Logger LOGGER = ConsoleLogger.attach();
+
+    private final String loadQueryString;
+    private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+    private volatile boolean warm;
+
+    /**
+     * @param loadQueryString query returning the (id, name) pairs of the whole table
+     */
+    NameIndex(String loadQueryString) {
+        this.loadQueryString = loadQueryString;
+    }
+
+    /**
+     * Loads the index from the table, if it has not been loaded yet.
+     */
+    void warm(Connection conn) throws SQLException {
+        if (warm) return;
+        synchronized (this) {
+            if (warm) return;
+
+            Log.fine(LOGGER, ConsoleLogger.DB_QUERY, loadQueryString);
+            ResultSet queryResult = JdbcStreams.createStreamingStatement(conn).executeQuery(loadQueryString);
+            while (queryResult.next()) ids.putIfAbsent(normalize(queryResult.getString(2)), queryResult.getInt(1));
+            queryResult.close();
+
+            warm = true;
+            Log.fine(LOGGER, "Name index loaded with ", ids.size(), " names.");
+        }
+    }
+
+    /**
+     * Forgets the loaded names, the next warm() loads them from the table again.
+     */
+    synchronized void invalidate() {
+        warm = false;
+        ids.clear();
+    }
+
+    boolean isWarm() {
+        return warm;
+    }
+
+    /**
+     * @return the id of the row with the given name, or null if there is no such row
+     */
+    Integer find(String name) {
+        return name == null ? null : ids.get(normalize(name));
+    }
+
+    void put(String name, int id) {
+        if (name != null && id != 0) ids.put(normalize(name), id);
+    }
+
+    /**
+     * Removes the name, but only if it still belongs to the given id.
+     */
+    void remove(String name, int id) {
+        if (name != null) ids.remove(normalize(name), id);
+    }
+
+    /**
+     * Normalizes the name for comparison: trims it, collapses the whitespace and converts it to lower case.
+     * The CatalogImporter uses the same keys, so it de-duplicates the names the same way as the DAOs.
+     */
+    public static String normalize(String name) {
+        return clean(name).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Returns the name in the form it is stored in the table: trimmed and the whitespace collapsed,
+     * keeping its case. Both the single and the batch insert store this form.
+     * @return the cleaned name, or null if name is null
+     */
+    static String clean(String name) {
+        if (name == null) return null;
+        StringBuilder cleaned = new StringBuilder(name.length());
+        boolean space = false;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = cleaned.length() > 0;
+            } else {
+                if (space) cleaned.append(' ');
+                cleaned.append(c);
+                space = false;
+            }
+        }
+        return cleaned.toString();
+    }
+}
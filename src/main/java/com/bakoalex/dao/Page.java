@@ -0,0 +1,36 @@
+package com.bakoalex.dao;
+
+import java.util.List;
+
+/**
+ * One page of a keyset-paginated listing.
+ * The cursor is an opaque token which has to be passed back to get the next page,
+ * it is null when there are no more pages.
+ */
+public class Page<T> {
+    private final List<T> items;
+    private final String nextCursor;
+
+    public Page(List<T> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * @return the items of the page
+     */
+    public List<T> getItems() {
+        return items;
+    }
+
+    /**
+     * @return the cursor of the next page, or null if this is the last page
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+}
@@ -0,0 +1,146 @@
+package com.bakoalex.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+import com.bakoalex.database.ConnectionFactory;
+import com.bakoalex.logger.ConsoleLogger;
+import com.bakoalex.logger.Log;
+
+/**
+ * Write-behind counter of movies.num_of_rents.
+ *
+ * Rentals increment a striped LongAdder per movie instead of updating the movies row, so a popular
+ * movie does not become a hot row in MySQL. A background thread writes the collected deltas with one
+ * batched "num_of_rents = num_of_rents + ?" UPDATE per interval. MovieDao adds the not yet written
+ * delta to the value read from the table. The remaining deltas are written on close() and on JVM shutdown.
+ * While a flush is in progress, the deltas it writes are neither pending nor committed, so a read can
+ * briefly miss them, but a rent is never counted twice.
+ */
+public class RentCounter implements AutoCloseable {
+
+    private static final Logger LOGGER = ConsoleLogger.attach();
+
+    private static final long FLUSH_INTERVAL_MILLIS = Long.getLong("piratemovies.rents.flushIntervalMillis", 1_000);
+
+    private static final String FLUSH_STRING = "UPDATE movies SET movies.num_of_rents=movies.num_of_rents+? WHERE movies.movie_id=?;";
+
+    private static volatile RentCounter shared;
+
+    private final Map<Integer, LongAdder> deltas = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flusher;
+
+    /**
+     * Returns the counter used by RentalService and MovieDao, it is started on first use.
+     */
+    public static RentCounter shared() {
+        RentCounter current = shared;
+        if (current != null) return current;
+
+        synchronized (RentCounter.class) {
+            if (shared == null) {
+                RentCounter counter = new RentCounter(FLUSH_INTERVAL_MILLIS);
+                Runtime.getRuntime().addShutdownHook(new Thread(counter::close, "piratemovies-rent-counter-shutdown"));
+                shared = counter;
+            }
+            return shared;
+        }
+    }
+
+    /**
+     * Returns the delta of the movie which is not written to the table yet, without starting the shared counter.
+     */
+    static int sharedPending(int movieId) {
+        RentCounter current = shared;
+        return current == null ? 0 : (int) current.pending(movieId);
+    }
+
+    public RentCounter(long flushIntervalMillis) {
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "piratemovies-rent-counter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Counts one more rent of the movie.
+     */
+    public void increment(int movieId) {
+        LongAdder adder = deltas.get(movieId);
+        if (adder == null) adder = deltas.computeIfAbsent(movieId, id -> new LongAdder());
+        adder.increment();
+    }
+
+    /**
+     * @return the number of rents of the movie which are not written to the table yet
+     */
+    public long pending(int movieId) {
+        LongAdder adder = deltas.get(movieId);
+        return adder == null ? 0 : adder.sum();
+    }
+
+    /**
+     * Writes the collected deltas to the movies table with one batched UPDATE.
+     * The written deltas are subtracted from the counters before the UPDATE, since once it is committed
+     * MovieDao reads them from the table. Increments which arrive during the flush are kept for the next one,
+     * and if the UPDATE fails the deltas are added back, so nothing is lost.
+     * @return true if there was nothing to write or the write succeeded
+     */
+    public synchronized boolean flush() {
+        List<Integer> movieIds = new ArrayList<>();
+        List<Long> flushed = new ArrayList<>();
+        for (Map.Entry<Integer, LongAdder> entry : deltas.entrySet()) {
+            long delta = entry.getValue().sum();
+            if (delta == 0) continue;
+            entry.getValue().add(-delta);
+            movieIds.add(entry.getKey());
+            flushed.add(delta);
+        }
+        if (movieIds.isEmpty()) return true;
+
+        try (Connection conn = ConnectionFactory.getConnection()) {
+            conn.setAutoCommit(false);
+            Log.fine(LOGGER, ConsoleLogger.DB_QUERY, FLUSH_STRING, " x", movieIds.size());
+            PreparedStatement pStatement = conn.prepareStatement(FLUSH_STRING);
+            for (int i = 0; i < movieIds.size(); i++) {
+                pStatement.setLong(1, flushed.get(i));
+                pStatement.setInt(2, movieIds.get(i));
+                pStatement.addBatch();
+            }
+            pStatement.executeBatch();
+            conn.commit();
+
+        } catch (SQLException ex) {
+            LOGGER.info("Could not write the rent counters, retrying later: " + ex.getMessage());
+            for (int i = 0; i < movieIds.size(); i++) deltas.get(movieIds.get(i)).add(flushed.get(i));
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Stops the background flushes and writes the remaining deltas.
+     */
+    @Override
+    public void close() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        if (!flush()) LOGGER.severe("Rent counters could not be written on shutdown: " + deltas);
+    }
+}
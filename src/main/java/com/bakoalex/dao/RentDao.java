@@ -0,0 +1,103 @@
+package com.bakoalex.dao;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+import com.bakoalex.database.ConnectionFactory;
+import com.bakoalex.dto.Rent;
+import com.bakoalex.logger.ConsoleLogger;
+import com.bakoalex.logger.Log;
+
+/**
+ * DAO of the rents table.
+ * The write methods take the Connection of the caller, so they can run in the same transaction
+ * as the update of the movies table (see RentalService).
+ */
+public class RentDao {
+
+    private static final Logger LOGGER = ConsoleLogger.attach();
+
+    /**
+     * Deserialize Rent object from an SQL ResultSet
+     */
+    private Rent deserializeRent(ResultSet result) throws SQLException {
+        Date endDate = result.getDate("rent_end_date");
+        return new Rent(result.getInt("movie_id"), result.getInt("renter_id"), 
+            result.getDate("rent_start_date").toLocalDate(), endDate == null ? null : endDate.toLocalDate());
+    }
+
+    /**
+     * Returns the rent of the movie which has not been closed yet, or null if the movie is not rented.
+     */
+    public Rent getOpenRent(int movieId) {
+        List<Rent> rents = query("SELECT * FROM rents r WHERE r.movie_id=? AND r.rent_end_date IS NULL;", movieId);
+        return rents.isEmpty() ? null : rents.get(0);
+    }
+
+    /**
+     * Returns every rent of the movie, the latest first. In case of an error, we return an empty list.
+     */
+    public List<Rent> getByMovieId(int movieId) {
+        return query("SELECT * FROM rents r WHERE r.movie_id=? ORDER BY r.rent_start_date DESC;", movieId);
+    }
+
+    /**
+     * Returns every rent of the renter, the latest first. In case of an error, we return an empty list.
+     */
+    public List<Rent> getByRenterId(int renterId) {
+        return query("SELECT * FROM rents r WHERE r.renter_id=? ORDER BY r.rent_start_date DESC;", renterId);
+    }
+
+    private List<Rent> query(String sqlQueryString, int id) {
+        List<Rent> rents = new ArrayList<>();
+        try (Connection conn = ConnectionFactory.getConnection()) {
+            Log.fine(LOGGER, ConsoleLogger.DB_QUERY, sqlQueryString);
+            PreparedStatement pStatement = conn.prepareStatement(sqlQueryString);
+            pStatement.setInt(1, id);
+
+            ResultSet queryResult = pStatement.executeQuery();
+            while (queryResult.next()) rents.add(deserializeRent(queryResult));
+
+        } catch (SQLException ex) {
+            LOGGER.info(ConsoleLogger.SQL_EXC + ex.getMessage());
+        }
+        return rents;
+    }
+
+    /**
+     * Inserts a new rents row, using the transaction of the given connection.
+     * @return true if the row was inserted
+     */
+    public boolean insert(Connection conn, Rent rent) throws SQLException {
+        String sqlQueryString = "INSERT INTO rents (movie_id, renter_id, rent_start_date, rent_end_date) VALUES (?, ?, ?, ?);";
+        Log.fine(LOGGER, ConsoleLogger.DB_QUERY, sqlQueryString);
+
+        PreparedStatement pStatement = conn.prepareStatement(sqlQueryString);
+        pStatement.setInt(1, rent.getMovieId());
+        pStatement.setInt(2, rent.getRenterId());
+        pStatement.setDate(3, Date.valueOf(rent.getRentStartDate()));
+        pStatement.setDate(4, rent.getRentEndDate() == null ? null : Date.valueOf(rent.getRentEndDate()));
+        return pStatement.executeUpdate() == 1;
+    }
+
+    /**
+     * Closes the open rent of the movie by setting its end date, using the transaction of the given connection.
+     * @return the number of closed rents, 0 if the movie had no open rent
+     */
+    public int closeOpenRent(Connection conn, int movieId, LocalDate endDate) throws SQLException {
+        String sqlQueryString = "UPDATE rents SET rents.rent_end_date=? WHERE rents.movie_id=? AND rents.rent_end_date IS NULL;";
+        Log.fine(LOGGER, ConsoleLogger.DB_QUERY, sqlQueryString);
+
+        PreparedStatement pStatement = conn.prepareStatement(sqlQueryString);
+        pStatement.setDate(1, Date.valueOf(endDate));
+        pStatement.setInt(2, movieId);
+        return pStatement.executeUpdate();
+    }
+}
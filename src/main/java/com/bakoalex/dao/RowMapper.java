@@ -0,0 +1,12 @@
+package com.bakoalex.dao;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Creates an object from the current row of a ResultSet.
+ */
+@FunctionalInterface
+public interface RowMapper<T> {
+    T map(ResultSet result) throws SQLException;
+}
@@ -0,0 +1,44 @@
+package com.bakoalex.database;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Java Flight Recorder event of borrowing a connection from the pool, its duration is the time spent waiting.
+ * It costs nothing while no recording is running, see com.bakoalex.dao.DaoEvent.
+ */
+@Name("com.bakoalex.piratemovies.ConnectionAcquire")
+@Label("Connection Acquire")
+@Category({ "PirateMovies", "Database" })
+class ConnectionAcquireEvent extends Event {
+
+    @Label("Acquired")
+    @Description("False if the borrow timed out or failed")
+    boolean acquired;
+
+    @Label("Active Connections")
+    int active;
+
+    @Label("Idle Connections")
+    int idle;
+
+    @Label("Waiters")
+    @Description("Threads waiting for a connection when this one was acquired")
+    int waiters;
+
+    void commit(boolean acquired, ConnectionPool pool) {
+        end();
+        if (!shouldCommit()) return;
+        this.acquired = acquired;
+        if (pool != null) {
+            PoolStats stats = pool.getStats();
+            this.active = stats.getActive();
+            this.idle = stats.getIdle();
+            this.waiters = stats.getWaiters();
+        }
+        commit();
+    }
+}
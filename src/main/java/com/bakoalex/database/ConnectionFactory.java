@@ -1,22 +1,20 @@
 package com.bakoalex.database;
 
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.IOException;
 import java.sql.Connection;
-import java.sql.PreparedStatement;
 import java.sql.SQLException;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Scanner;
 import java.util.logging.Logger;
 
+import javax.sql.DataSource;
+
+import com.bakoalex.database.metrics.SqlMetrics;
 import com.bakoalex.logger.ConsoleLogger;
-import com.mysql.cj.jdbc.MysqlConnectionPoolDataSource;
+import com.bakoalex.logger.Log;
+import com.mysql.cj.jdbc.MysqlDataSource;
 
 public class ConnectionFactory {
 
-    private static MysqlConnectionPoolDataSource conn;
+    private static volatile ConnectionPool pool;
+    private static volatile DataSource dataSource;
 
     private static final String DRIVER      = "com.mysql.cj.jdbc.Driver";
     private static final String HOST        = "localhost"; 
@@ -25,127 +23,140 @@ public class ConnectionFactory {
     private static final String USER        = "alexbako";
     private static final String PASS        = "asdQWE123";
 
-    private static Map<String, String> tables;
-    static {
-        tables = new HashMap<>();
-        tables.put("movies", "./resources/sql/tbl_movies.sql");
-        tables.put("actors", "./resources/sql/tbl_actors.sql");
-        tables.put("directors", "./resources/sql/tbl_directors.sql");
-        tables.put("movies_actors", "./resources/sql/tbl_movies_actors.sql");
-        tables.put("movies_directors", "./resources/sql/tbl_movies_directors.sql");
-        tables.put("rents", "./resources/sql/tbl_rents.sql");
-        tables.put("renter_persons", "./resources/sql/tbl_renter_persons.sql");
-    }
+    // Pool sizing, can be overridden with system properties (e.g. -Dpiratemovies.pool.maxSize=20)
+    private static final int    POOL_MAX_SIZE           = Integer.getInteger("piratemovies.pool.maxSize", 10);
+    private static final int    POOL_MIN_IDLE           = Integer.getInteger("piratemovies.pool.minIdle", 2);
+    private static final long   POOL_BORROW_TIMEOUT     = Long.getLong("piratemovies.pool.borrowTimeoutMillis", 5_000);
+    private static final long   POOL_VALIDATION_IDLE    = Long.getLong("piratemovies.pool.validationIdleMillis", 500);
+    private static final long   POOL_LEAK_THRESHOLD     = Long.getLong("piratemovies.pool.leakThresholdMillis", 60_000);
+    // Records the stack trace of every borrow for the leak reports, only meant for debugging
+    private static final boolean POOL_LEAK_TRACES       = Boolean.getBoolean("piratemovies.pool.leakTraces");
+
+    // Per-statement metrics, see SqlMetrics (e.g. -Dpiratemovies.metrics.enabled=false)
+    private static final boolean METRICS_ENABLED        = Boolean.parseBoolean(System.getProperty("piratemovies.metrics.enabled", "true"));
 
     private static final Logger LOGGER = ConsoleLogger.attach();
 
     private ConnectionFactory() {}
 
-    public static Connection getConnection() {
-        if (conn == null) {
-            try {
-                Class.forName(DRIVER);
-                LOGGER.fine("Using database driver: " + DRIVER);
-                conn = new MysqlConnectionPoolDataSource();
-                LOGGER.fine("Creating database connection using: ServerName=" 
-                    + HOST + ":" + PORT + ", DatabaseName=" + DBNAME + ", UserName=" + USER + ", Password=*******"
-                );
-
-                conn.setServerName(HOST);
-                conn.setPort(PORT);
-                conn.setDatabaseName(DBNAME);
-                conn.setUser(USER);
-                conn.setPassword(PASS);
-
-            } catch (ClassNotFoundException ex) {
-                LOGGER.severe("Database driver couldn't be found. Please install the proper dirver! Message: " + ex.getMessage());
-                LOGGER.severe("Aborting...");
-                System.exit(1);
-            }
+    /**
+     * Borrows a connection from the connection pool. Closing the returned connection gives it back to the pool.
+     * Unless the metrics are disabled, the wait for the connection and the statements run on it are recorded in SqlMetrics.
+     * The wait is also a ConnectionAcquire event in Flight Recorder recordings.
+     * @return pooled Connection object
+     * @throws SQLException if no connection becomes available within the borrow timeout
+     */
+    public static Connection getConnection() throws SQLException {
+        ConnectionAcquireEvent event = new ConnectionAcquireEvent();
+        event.begin();
+        long start = System.nanoTime();
+        Connection conn = null;
+        try {
+            conn = getPool().borrow();
+        } finally {
+            event.commit(conn != null, pool);
         }
+        if (!METRICS_ENABLED) return conn;
 
-        try {
-            Connection dbConnection = conn.getPooledConnection().getConnection();
-            LOGGER.fine("Database connection successfull.");
-            return dbConnection;
-        } catch (SQLException ex) {
-            LOGGER.severe("Cannot connect to the database. Reason: " + ex.getMessage());
-            LOGGER.severe("Aborting...");
-            System.exit(1);
+        SqlMetrics metrics = SqlMetrics.get();
+        metrics.recordPoolWait(System.nanoTime() - start);
+        return metrics.instrument(conn);
+    }
+
+    /**
+     * Returns a snapshot of the connection pool statistics.
+     */
+    public static PoolStats getPoolStats() {
+        return getPool().getStats();
+    }
+
+    /**
+     * Returns the maximum number of connections of the pool.
+     */
+    public static int getPoolMaxSize() {
+        return POOL_MAX_SIZE;
+    }
+
+    /**
+     * Returns true if the connections are instrumented for SqlMetrics, read once from piratemovies.metrics.enabled.
+     */
+    public static boolean isMetricsEnabled() {
+        return METRICS_ENABLED;
+    }
+
+    /**
+     * Makes the connection pool use the given DataSource instead of the MySQL server configured here,
+     * e.g. an embedded database. The current pool is closed, the next getConnection() call creates a new one.
+     * @param dataSource the DataSource, or null to go back to the configured MySQL server
+     */
+    public static synchronized void useDataSource(DataSource dataSource) {
+        shutdown();
+        ConnectionFactory.dataSource = dataSource;
+    }
+
+    /**
+     * Closes the connection pool. The next getConnection() call creates a new one.
+     */
+    public static synchronized void shutdown() {
+        if (pool != null) {
+            pool.close();
+            pool = null;
         }
-        return null;
     }
 
-    public static void initializeTable(String table_name) {
-        if (!tables.containsKey(table_name)) {
-            LOGGER.severe("Table not found, could not initialize: " + table_name);
-            return;
+    private static ConnectionPool getPool() {
+        ConnectionPool current = pool;
+        if (current != null) return current;
+
+        synchronized (ConnectionFactory.class) {
+            if (pool == null) pool = createPool();
+            return pool;
         }
+    }
 
-        FileInputStream inputStream = null; 
-        Scanner sc = null;
-        StringBuilder sqlQuery = null;
+    private static ConnectionPool createPool() {
+        DataSource current = dataSource;
+        if (current == null) current = createMysqlDataSource();
+        else Log.fine(LOGGER, "Creating database connection pool using: ", current.getClass().getName());
 
-        try {
-            inputStream = new FileInputStream(tables.get(table_name));
-            sc = new Scanner(inputStream, "UTF-8");
-            sc.useDelimiter("(;(\r)?\n)|(--\n)");
-            sqlQuery = new StringBuilder();
-            
-            while (sc.hasNextLine()) sqlQuery.append(sc.nextLine());
-
-            if (sc.ioException() != null) {
-                LOGGER.severe("Could not read file: " + tables.get(table_name));
-                LOGGER.severe(sc.ioException().getMessage());
-                sc.close();
-                inputStream.close();
-                return;
-            }
-
-            inputStream.close();
-            sc.close();
-
-        } catch (FileNotFoundException ex) {
-            LOGGER.severe("Configuration file could not be found: " + tables.get(table_name));
-            LOGGER.severe(ex.getMessage());
-            sc.close();
-            return;
-
-        } catch (IOException ex) {
-            LOGGER.severe("Could not read file: " + tables.get(table_name));
-            LOGGER.severe(ex.getMessage());
-            sc.close();
-            return;
+        return new ConnectionPool(current, POOL_MAX_SIZE, POOL_MIN_IDLE, POOL_BORROW_TIMEOUT,
+            POOL_VALIDATION_IDLE, POOL_LEAK_THRESHOLD, POOL_LEAK_TRACES);
+    }
 
+    private static DataSource createMysqlDataSource() {
+        try {
+            Class.forName(DRIVER);
+            Log.fine(LOGGER, "Using database driver: ", DRIVER);
+        } catch (ClassNotFoundException ex) {
+            LOGGER.severe("Database driver couldn't be found. Please install the proper dirver! Message: " + ex.getMessage());
+            LOGGER.severe("Aborting...");
+            System.exit(1);
         }
 
-        try (Connection db = getConnection()) {
-            LOGGER.info("Preparing to drop table: " + table_name);
-            
-            PreparedStatement dropTable = db.prepareStatement("DROP TABLE ?;");
-            dropTable.setString(1, table_name);
-            LOGGER.finest("SQLQuery is: " + dropTable.toString());
-
-            LOGGER.info("SQL Insturctions: " + sqlQuery.toString());
-
-            if (! dropTable.execute()) {
-                LOGGER.severe("Could not perform SQL Query. Dropping table '" + table_name + "' failed. Aborting operation.");
-                LOGGER.severe(dropTable.getResultSet().toString());
-                return;
-            }
-            LOGGER.info("Successfully dropped table: " + table_name);
-
-            PreparedStatement createTable = db.prepareStatement(sqlQuery.toString());
-            if (! createTable.execute()) {
-                LOGGER.severe("Could not perform SQL Query. Creating table '" + table_name + "' failed. Aborting operation.");
-                return;
-            }
-            LOGGER.info("Successfully created table: " + table_name);
+        MysqlDataSource mysqlDataSource = new MysqlDataSource();
+        LOGGER.fine("Creating database connection pool using: ServerName=" 
+            + HOST + ":" + PORT + ", DatabaseName=" + DBNAME + ", UserName=" + USER + ", Password=*******"
+            + ", MaxSize=" + POOL_MAX_SIZE + ", MinIdle=" + POOL_MIN_IDLE
+        );
+
+        mysqlDataSource.setServerName(HOST);
+        mysqlDataSource.setPort(PORT);
+        mysqlDataSource.setDatabaseName(DBNAME);
+        mysqlDataSource.setUser(USER);
+        mysqlDataSource.setPassword(PASS);
 
+        try {
+            // Lets the driver send a JDBC batch as one multi-row statement
+            mysqlDataSource.setRewriteBatchedStatements(true);
+            // Keep the prepared statements of the pooled connections, so the same SQL is only parsed once
+            mysqlDataSource.setUseServerPrepStmts(true);
+            mysqlDataSource.setCachePrepStmts(true);
+            mysqlDataSource.setPrepStmtCacheSize(256);
+            mysqlDataSource.setPrepStmtCacheSqlLimit(4096);
         } catch (SQLException ex) {
-            LOGGER.severe("SQLException: " + ex.getMessage());
-            return;
+            LOGGER.info("Could not configure the database driver: " + ex.getMessage());
         }
 
+        return mysqlDataSource;
     }
-}
\ No newline at end of file
+}
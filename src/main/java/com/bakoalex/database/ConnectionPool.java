@@ -0,0 +1,350 @@
+package com.bakoalex.database;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.sql.DataSource;
+
+import com.bakoalex.logger.ConsoleLogger;
+import com.bakoalex.logger.Log;
+
+/**
+ * Bounded pool of physical database connections.
+ *
+ * A fixed number of connections is kept open and warm, borrowers queue up on a fair semaphore
+ * with a timeout, idle connections are validated before they are handed out again, and
+ * connections held for too long are reported as possible leaks.
+ * The connections handed out are proxies, calling close() on them returns the physical
+ * connection to the pool instead of closing it.
+ */
+public class ConnectionPool implements AutoCloseable {
+
+    private static final Logger LOGGER = ConsoleLogger.attach();
+
+    /** Number of power-of-two microsecond buckets in the wait-time histogram. */
+    static final int WAIT_BUCKETS = 26;
+
+    private final DataSource dataSource;
+    private final int maxSize;
+    private final int minIdle;
+    private final long borrowTimeoutMillis;
+    private final long validationIntervalNanos;
+    private final int validationTimeoutSeconds;
+    private final long leakThresholdMillis;
+    private final boolean captureLeakTraces;
+
+    // Idle connections are used LIFO, so the most recently returned (warmest) one is reused first.
+    private final LinkedBlockingDeque<IdleConnection> idle = new LinkedBlockingDeque<>();
+    private final Set<PooledConnection> borrowed = ConcurrentHashMap.newKeySet();
+    private final Semaphore permits;
+    private final AtomicInteger totalConnections = new AtomicInteger();
+
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong timeoutCount = new AtomicLong();
+    private final AtomicLong leakCount = new AtomicLong();
+    private final AtomicLongArray waitHistogram = new AtomicLongArray(WAIT_BUCKETS);
+
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean closed;
+
+    /**
+     * Creates a new pool on top of the given DataSource and opens the minimum idle connections.
+     * @param dataSource DataSource used to open the physical connections
+     * @param maxSize maximum number of physical connections
+     * @param minIdle number of connections kept open even when nobody uses them
+     * @param borrowTimeoutMillis how long a caller waits for a free connection
+     * @param validationIntervalMillis connections idle for longer than this are validated on borrow
+     * @param leakThresholdMillis connections borrowed for longer than this are reported, 0 disables it
+     */
+    public ConnectionPool(DataSource dataSource, int maxSize, int minIdle, long borrowTimeoutMillis,
+                          long validationIntervalMillis, long leakThresholdMillis) {
+        this(dataSource, maxSize, minIdle, borrowTimeoutMillis, validationIntervalMillis, leakThresholdMillis, false);
+    }
+
+    /**
+     * Creates a new pool on top of the given DataSource and opens the minimum idle connections.
+     * Leaks are always reported with the borrowing thread and the time the connection was held.
+     * @param captureLeakTraces whether every borrow records its stack trace, so a leak report shows where the
+     * connection was borrowed. It makes every borrow allocate and fill in a Throwable, so it is meant for debugging.
+     * @see #ConnectionPool(DataSource, int, int, long, long, long)
+     */
+    public ConnectionPool(DataSource dataSource, int maxSize, int minIdle, long borrowTimeoutMillis,
+                          long validationIntervalMillis, long leakThresholdMillis, boolean captureLeakTraces) {
+        if (maxSize < 1) throw new IllegalArgumentException("maxSize must be at least 1");
+        this.dataSource = dataSource;
+        this.maxSize = maxSize;
+        this.minIdle = Math.min(Math.max(minIdle, 0), maxSize);
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.validationIntervalNanos = TimeUnit.MILLISECONDS.toNanos(validationIntervalMillis);
+        this.validationTimeoutSeconds = 2;
+        this.leakThresholdMillis = leakThresholdMillis;
+        this.captureLeakTraces = captureLeakTraces && leakThresholdMillis > 0;
+        this.permits = new Semaphore(maxSize, true);
+
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "piratemovies-pool-housekeeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        fillIdle();
+        long period = leakThresholdMillis > 0 ? Math.max(leakThresholdMillis / 2, 100) : 30_000;
+        housekeeper.scheduleWithFixedDelay(this::housekeeping, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrows a connection from the pool, waiting at most the configured borrow timeout.
+     * The returned connection must be closed to give it back to the pool.
+     * @return Connection proxy backed by a pooled physical connection
+     * @throws SQLException if the pool is exhausted or a new connection cannot be opened
+     */
+    public Connection borrow() throws SQLException {
+        if (closed) throw new SQLException("Connection pool is closed.");
+
+        long start = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection.", ex);
+        }
+        recordWait(System.nanoTime() - start);
+
+        if (!acquired) {
+            timeoutCount.incrementAndGet();
+            throw new SQLTransientConnectionException("Timed out after " + borrowTimeoutMillis
+                + "ms waiting for a database connection. " + getStats());
+        }
+
+        try {
+            Connection physical = takeIdle();
+            if (physical == null) physical = open();
+            PooledConnection pooled = new PooledConnection(physical);
+            borrowed.add(pooled);
+            borrowCount.incrementAndGet();
+            return pooled.proxy;
+        } catch (SQLException | RuntimeException ex) {
+            permits.release();
+            throw ex;
+        }
+    }
+
+    /**
+     * Returns a snapshot of the pool's current state and its wait-time histogram.
+     */
+    public PoolStats getStats() {
+        long[] histogram = new long[WAIT_BUCKETS];
+        for (int i = 0; i < WAIT_BUCKETS; i++) histogram[i] = waitHistogram.get(i);
+        return new PoolStats(maxSize, borrowed.size(), idle.size(), permits.getQueueLength(),
+            borrowCount.get(), timeoutCount.get(), leakCount.get(), histogram);
+    }
+
+    /**
+     * Closes every idle connection and stops the housekeeping thread.
+     * Borrowed connections are closed when they are given back.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        housekeeper.shutdownNow();
+        IdleConnection entry;
+        while ((entry = idle.pollFirst()) != null) discard(entry.connection);
+    }
+
+    /**
+     * Takes the warmest idle connection, validating it if it was unused for a while.
+     * Broken connections are discarded. Returns null if there is no usable idle connection.
+     */
+    private Connection takeIdle() {
+        IdleConnection entry;
+        while ((entry = idle.pollFirst()) != null) {
+            if (System.nanoTime() - entry.lastUsedNanos < validationIntervalNanos) return entry.connection;
+            try {
+                if (entry.connection.isValid(validationTimeoutSeconds)) return entry.connection;
+            } catch (SQLException ex) {
+                Log.fine(LOGGER, "Idle connection failed validation: ", ex.getMessage());
+            }
+            discard(entry.connection);
+        }
+        return null;
+    }
+
+    private Connection open() throws SQLException {
+        Connection connection = dataSource.getConnection();
+        totalConnections.incrementAndGet();
+        Log.fine(LOGGER, "Opened new database connection, pool size is now ", totalConnections.get());
+        return connection;
+    }
+
+    private void discard(Connection connection) {
+        totalConnections.decrementAndGet();
+        try {
+            connection.close();
+        } catch (SQLException ex) {
+            Log.fine(LOGGER, "Error while closing database connection: ", ex.getMessage());
+        }
+    }
+
+    /**
+     * Gives a physical connection back to the pool.
+     * Open statements are closed and the transaction state is reset, so the next borrower
+     * gets a clean auto-commit connection.
+     */
+    private void release(PooledConnection pooled) {
+        borrowed.remove(pooled);
+        Connection physical = pooled.physical;
+        try {
+            pooled.closeStatements();
+            if (!physical.getAutoCommit()) {
+                physical.rollback();
+                physical.setAutoCommit(true);
+            }
+            if (closed) discard(physical);
+            else idle.offerFirst(new IdleConnection(physical, System.nanoTime()));
+        } catch (SQLException ex) {
+            LOGGER.info("Discarding database connection which could not be reset: " + ex.getMessage());
+            discard(physical);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void recordWait(long nanos) {
+        long micros = nanos / 1000;
+        int bucket = 64 - Long.numberOfLeadingZeros(micros);
+        waitHistogram.incrementAndGet(Math.min(bucket, WAIT_BUCKETS - 1));
+    }
+
+    /**
+     * Keeps the minimum number of idle connections open.
+     */
+    private void fillIdle() {
+        while (!closed && idle.size() < minIdle && totalConnections.get() < maxSize) {
+            if (!permits.tryAcquire()) return;
+            try {
+                idle.offerLast(new IdleConnection(open(), System.nanoTime()));
+            } catch (SQLException ex) {
+                LOGGER.info("Could not open idle database connection: " + ex.getMessage());
+                return;
+            } finally {
+                permits.release();
+            }
+        }
+    }
+
+    private void housekeeping() {
+        try {
+            fillIdle();
+            if (leakThresholdMillis <= 0) return;
+
+            long now = System.nanoTime();
+            long threshold = TimeUnit.MILLISECONDS.toNanos(leakThresholdMillis);
+            for (PooledConnection pooled : borrowed) {
+                if (!pooled.leakReported && now - pooled.borrowedNanos > threshold) {
+                    pooled.leakReported = true;
+                    leakCount.incrementAndGet();
+                    long heldMillis = TimeUnit.NANOSECONDS.toMillis(now - pooled.borrowedNanos);
+                    LOGGER.log(Level.WARNING, "Possible connection leak, connection borrowed " + heldMillis
+                        + "ms ago by thread " + pooled.borrowerThread + ", threshold is " + leakThresholdMillis + "ms", pooled.borrowTrace);
+                }
+            }
+        } catch (RuntimeException ex) {
+            LOGGER.info("Connection pool housekeeping failed: " + ex.getMessage());
+        }
+    }
+
+    private static final class IdleConnection {
+        private final Connection connection;
+        private final long lastUsedNanos;
+
+        private IdleConnection(Connection connection, long lastUsedNanos) {
+            this.connection = connection;
+            this.lastUsedNanos = lastUsedNanos;
+        }
+    }
+
+    /**
+     * A borrowed connection. Hands out a proxy which tracks the created statements,
+     * and returns the physical connection to the pool on close().
+     */
+    private final class PooledConnection implements InvocationHandler {
+        private final Connection physical;
+        private final Connection proxy;
+        private final List<Statement> statements = new ArrayList<>();
+        private final long borrowedNanos = System.nanoTime();
+        private final String borrowerThread = Thread.currentThread().getName();
+        private final Throwable borrowTrace;
+        private volatile boolean leakReported;
+        private boolean returned;
+
+        private PooledConnection(Connection physical) {
+            this.physical = physical;
+            this.borrowTrace = captureLeakTraces ? new Throwable("Connection borrowed here") : null;
+            this.proxy = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[] { Connection.class }, this);
+        }
+
+        @Override
+        public Object invoke(Object target, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!returned) {
+                        returned = true;
+                        release(this);
+                    }
+                    return null;
+                case "isClosed":
+                    return returned || physical.isClosed();
+                case "equals":
+                    return target == args[0];
+                case "hashCode":
+                    return System.identityHashCode(target);
+                case "toString":
+                    return "PooledConnection(" + physical + ")";
+                default:
+                    break;
+            }
+            if (returned) throw new SQLException("Connection has already been returned to the pool.");
+
+            try {
+                Object result = method.invoke(physical, args);
+                if (result instanceof Statement) statements.add((Statement) result);
+                return result;
+            } catch (InvocationTargetException ex) {
+                throw ex.getCause();
+            }
+        }
+
+        private void closeStatements() {
+            for (Statement statement : statements) {
+                try {
+                    statement.close();
+                } catch (SQLException ex) {
+                    Log.fine(LOGGER, "Error while closing statement: ", ex.getMessage());
+                }
+            }
+            statements.clear();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.bakoalex.database;
+
+/**
+ * Immutable snapshot of the ConnectionPool state.
+ * The wait-time histogram has power-of-two microsecond buckets: bucket 0 counts waits below 1us,
+ * bucket i counts waits between 2^(i-1) and 2^i microseconds, the last bucket holds everything above.
+ */
+public class PoolStats {
+    private final int maxSize;
+    private final int active;
+    private final int idle;
+    private final int waiters;
+    private final long borrowCount;
+    private final long timeoutCount;
+    private final long leakCount;
+    private final long[] waitHistogram;
+
+    public PoolStats(int maxSize, int active, int idle, int waiters, long borrowCount, long timeoutCount,
+                     long leakCount, long[] waitHistogram) {
+        this.maxSize = maxSize;
+        this.active = active;
+        this.idle = idle;
+        this.waiters = waiters;
+        this.borrowCount = borrowCount;
+        this.timeoutCount = timeoutCount;
+        this.leakCount = leakCount;
+        this.waitHistogram = waitHistogram.clone();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public int getActive() {
+        return active;
+    }
+
+    public int getIdle() {
+        return idle;
+    }
+
+    public int getWaiters() {
+        return waiters;
+    }
+
+    public long getBorrowCount() {
+        return borrowCount;
+    }
+
+    public long getTimeoutCount() {
+        return timeoutCount;
+    }
+
+    public long getLeakCount() {
+        return leakCount;
+    }
+
+    /**
+     * @return a copy of the wait-time histogram bucket counts
+     */
+    public long[] getWaitHistogram() {
+        return waitHistogram.clone();
+    }
+
+    /**
+     * @param bucket index of the histogram bucket
+     * @return the exclusive upper bound of the bucket in microseconds
+     */
+    public static long bucketUpperBoundMicros(int bucket) {
+        return 1L << bucket;
+    }
+
+    /**
+     * Estimates the wait time percentile from the histogram, in microseconds.
+     * @param percentile value between 0 and 100
+     * @return upper bound of the bucket containing the percentile
+     */
+    public long waitPercentileMicros(double percentile) {
+        long total = 0;
+        for (long count : waitHistogram) total += count;
+        if (total == 0) return 0;
+
+        long rank = (long) Math.ceil(total * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < waitHistogram.length; i++) {
+            seen += waitHistogram[i];
+            if (seen >= rank) return bucketUpperBoundMicros(i);
+        }
+        return bucketUpperBoundMicros(waitHistogram.length - 1);
+    }
+
+    @Override
+    public String toString() {
+        return "PoolStats(max=" + maxSize + ", active=" + active + ", idle=" + idle + ", waiters=" + waiters
+            + ", borrows=" + borrowCount + ", timeouts=" + timeoutCount + ", leaks=" + leakCount
+            + ", waitP50=" + waitPercentileMicros(50) + "us, waitP99=" + waitPercentileMicros(99) + "us)";
+    }
+}
@@ -0,0 +1,155 @@
+package com.bakoalex.database.metrics;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Arrays;
+
+/**
+ * JDBC proxies which record the executions of the statements into SqlMetrics.
+ *
+ * The metrics of a prepared statement are looked up once, when it is prepared. The execution time is
+ * measured around the execute calls, so for queries it is the time until the result set is available.
+ * The returned rows are counted as the result set is read (see CountingResultSet), the changed rows from the update counts.
+ * While the slow query log captures bind values, the ones of the prepared statements are kept as well,
+ * so the executions over the threshold can be recorded with them. The capture is off by default.
+ */
+final class InstrumentedJdbc {
+
+    private InstrumentedJdbc() {}
+
+    static Connection connection(Connection conn, SqlMetrics metrics) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+            new Class<?>[] { Connection.class }, new ConnectionHandler(conn, metrics));
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    private static final class ConnectionHandler implements InvocationHandler {
+        private final Connection conn;
+        private final SqlMetrics metrics;
+
+        private ConnectionHandler(Connection conn, SqlMetrics metrics) {
+            this.conn = conn;
+            this.metrics = metrics;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = InstrumentedJdbc.invoke(conn, method, args);
+            if (!(result instanceof Statement)) return result;
+
+            String name = method.getName();
+            boolean prepared = name.equals("prepareStatement") || name.equals("prepareCall");
+            Class<?> type = result instanceof CallableStatement ? CallableStatement.class
+                : result instanceof PreparedStatement ? PreparedStatement.class : Statement.class;
+
+            return Proxy.newProxyInstance(Statement.class.getClassLoader(), new Class<?>[] { type },
+                new StatementHandler((Statement) result, metrics, prepared ? (String) args[0] : null));
+        }
+    }
+
+    private static final class StatementHandler implements InvocationHandler {
+        private final Statement statement;
+        private final SqlMetrics metrics;
+        private final String preparedSql;
+        private final StatementMetrics preparedMetrics;
+        private final SlowQueryLog slowQueries;
+        private final boolean captureBinds;
+        private String batchSql;
+        private Object[] binds;
+
+        private StatementHandler(Statement statement, SqlMetrics metrics, String preparedSql) {
+            this.statement = statement;
+            this.metrics = metrics;
+            this.preparedSql = preparedSql;
+            this.preparedMetrics = preparedSql != null ? metrics.forSql(preparedSql) : null;
+            this.slowQueries = metrics.getSlowQueryLog().isEnabled() ? metrics.getSlowQueryLog() : null;
+            this.captureBinds = preparedSql != null && metrics.getSlowQueryLog().isCapturingBinds();
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (!name.startsWith("execute")) {
+                if (preparedMetrics == null && name.equals("addBatch") && batchSql == null) batchSql = (String) args[0];
+                else if (captureBinds) captureBind(name, args);
+                return InstrumentedJdbc.invoke(statement, method, args);
+            }
+
+            StatementMetrics statementMetrics = preparedMetrics;
+            String sql = preparedSql;
+            if (statementMetrics == null) {
+                boolean hasSql = args != null && args.length > 0 && args[0] instanceof String;
+                sql = hasSql ? (String) args[0] : batchSql;
+                statementMetrics = metrics.forSql(sql);
+                if (name.equals("executeBatch")) batchSql = null;
+            }
+
+            long start = System.nanoTime();
+            boolean failed = true;
+            Object result = null;
+            SlowQuery slowQuery = null;
+            try {
+                result = InstrumentedJdbc.invoke(statement, method, args);
+                failed = false;
+            } finally {
+                long elapsed = System.nanoTime() - start;
+                statementMetrics.recordExecution(elapsed, failed);
+                if (slowQueries != null && slowQueries.isSlow(elapsed)) {
+                    long rows = result instanceof ResultSet ? -1 : countRows(result);
+                    slowQuery = slowQueries.record(statementMetrics.getShape(), sql, binds, elapsed, failed, rows);
+                }
+            }
+
+            if (result instanceof ResultSet) return new CountingResultSet((ResultSet) result, statementMetrics, slowQuery);
+            long rows = countRows(result);
+            if (rows > 0) statementMetrics.recordRows(rows);
+            return result;
+        }
+
+        /**
+         * Keeps the values of the setXxx(index, value, ...) calls, so a slow statement can be logged with them.
+         */
+        private void captureBind(String name, Object[] args) {
+            if (name.equals("clearParameters")) {
+                binds = null;
+                return;
+            }
+            if (!name.startsWith("set") || args == null || args.length < 2 || !(args[0] instanceof Integer)) return;
+
+            int index = (Integer) args[0] - 1;
+            if (index < 0) return;
+            if (binds == null) binds = new Object[index + 1];
+            else if (binds.length <= index) binds = Arrays.copyOf(binds, index + 1);
+            binds[index] = name.equals("setNull") ? null : args[1];
+        }
+
+        /**
+         * @return the changed rows of an update or a batch, 0 for anything else
+         */
+        private static long countRows(Object result) {
+            long rows = 0;
+            if (result instanceof Integer || result instanceof Long) {
+                rows = Math.max(0, ((Number) result).longValue());
+            } else if (result instanceof int[]) {
+                for (int count : (int[]) result) if (count > 0) rows += count;
+            } else if (result instanceof long[]) {
+                for (long count : (long[]) result) if (count > 0) rows += count;
+            }
+            return rows;
+        }
+    }
+}
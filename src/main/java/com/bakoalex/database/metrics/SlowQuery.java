@@ -0,0 +1,89 @@
+package com.bakoalex.database.metrics;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * One statement execution which took longer than the slow query threshold.
+ *
+ * The row count of a query is only known after its result set was read, and the plan after
+ * the asynchronous EXPLAIN finished, so both can change after the entry was recorded.
+ */
+public final class SlowQuery {
+
+    private final long timestampMillis;
+    private final String shape;
+    private final List<String> binds;
+    private final long elapsedNanos;
+    private final boolean failed;
+    private final String caller;
+    private volatile long rows;
+    private volatile String plan;
+
+    SlowQuery(long timestampMillis, String shape, String[] binds, long elapsedNanos, boolean failed, String caller, long rows) {
+        this.timestampMillis = timestampMillis;
+        this.shape = shape;
+        this.binds = Arrays.asList(binds);
+        this.elapsedNanos = elapsedNanos;
+        this.failed = failed;
+        this.caller = caller;
+        this.rows = rows;
+    }
+
+    public long getTimestampMillis() {
+        return timestampMillis;
+    }
+
+    /** The SQL shape, with the literals replaced by '?'. */
+    public String getShape() {
+        return shape;
+    }
+
+    /** The bind values of a prepared statement, in parameter order. */
+    public List<String> getBinds() {
+        return binds;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public boolean isFailed() {
+        return failed;
+    }
+
+    /** The DAO method which ran the statement, e.g. MovieDao.get, or null if it was not run by a DAO. */
+    public String getCaller() {
+        return caller;
+    }
+
+    /** The changed rows, or the rows read from the result set so far. -1 if unknown. */
+    public long getRows() {
+        return rows;
+    }
+
+    /** The EXPLAIN output, or null if it was not run (yet). */
+    public String getPlan() {
+        return plan;
+    }
+
+    void setRows(long rows) {
+        this.rows = rows;
+    }
+
+    void setPlan(String plan) {
+        this.plan = plan;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder().append(Instant.ofEpochMilli(timestampMillis)).append(' ')
+            .append(elapsedNanos / 1000).append("us rows=").append(rows);
+        if (failed) text.append(" FAILED");
+        text.append(" by ").append(caller).append(" | ").append(shape);
+        if (!binds.isEmpty()) text.append(" | binds=").append(binds);
+        if (plan != null) text.append(" | plan: ").append(plan);
+        return text.toString();
+    }
+}
@@ -0,0 +1,206 @@
+package com.bakoalex.database.metrics;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.logging.Logger;
+
+import com.bakoalex.database.ConnectionFactory;
+import com.bakoalex.logger.ConsoleLogger;
+
+/**
+ * Bounded in-memory ring of the statements which ran longer than a threshold.
+ *
+ * Every entry has the SQL shape, the elapsed time, the row count and the DAO method which ran the statement.
+ * The bind values are only captured with piratemovies.slowlog.captureBinds=true, since they contain personal data
+ * like renter names, and capturing them intercepts every setXxx call. With piratemovies.slowlog.explain=true the slow
+ * SELECT statements are also explained on a background thread, with the same bind values, so statements with
+ * parameters are only explained while the binds are captured. The ring keeps the last piratemovies.slowlog.size
+ * entries (100 by default), the threshold is piratemovies.slowlog.thresholdMillis (200 by default,
+ * a negative value disables the log).
+ */
+public final class SlowQueryLog {
+
+    private static final Logger LOGGER = ConsoleLogger.attach();
+
+    private static final int MAX_BIND_LENGTH = 64;
+    private static final int EXPLAIN_QUEUE_SIZE = 16;
+    private static final String DAO_PACKAGE = "com.bakoalex.dao.";
+    private static final String EXPLAIN = "EXPLAIN ";
+
+    private final long thresholdNanos;
+    private final boolean captureBinds;
+    private final AtomicReferenceArray<SlowQuery> ring;
+    private final AtomicLong recorded = new AtomicLong();
+    private final ThreadPoolExecutor explainer;
+
+    SlowQueryLog() {
+        this(Long.getLong("piratemovies.slowlog.thresholdMillis", 200), Integer.getInteger("piratemovies.slowlog.size", 100),
+            Boolean.getBoolean("piratemovies.slowlog.explain"), Boolean.getBoolean("piratemovies.slowlog.captureBinds"));
+    }
+
+    SlowQueryLog(long thresholdMillis, int size, boolean explain, boolean captureBinds) {
+        this.captureBinds = captureBinds;
+        this.thresholdNanos = thresholdMillis < 0 ? -1 : TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+        this.ring = new AtomicReferenceArray<>(Math.max(size, 1));
+        this.explainer = explain ? createExplainer() : null;
+    }
+
+    /**
+     * @return true if the statements are checked against the threshold
+     */
+    public boolean isEnabled() {
+        return thresholdNanos >= 0;
+    }
+
+    /**
+     * @return true if the bind values of the prepared statements have to be captured for the entries
+     */
+    public boolean isCapturingBinds() {
+        return captureBinds && isEnabled();
+    }
+
+    boolean isSlow(long nanos) {
+        return thresholdNanos >= 0 && nanos >= thresholdNanos;
+    }
+
+    /**
+     * Adds an entry to the ring, overwriting the oldest one if it is full.
+     * @param sql the SQL as it was run, used for the EXPLAIN
+     * @param binds the bind values by parameter index - 1, or null for a plain statement
+     * @param rows the changed rows, or -1 if it is a query whose result set was not read yet
+     * @return the entry, or null for the EXPLAINs run by the log itself
+     */
+    SlowQuery record(String shape, String sql, Object[] binds, long elapsedNanos, boolean failed, long rows) {
+        if (sql != null && sql.startsWith(EXPLAIN)) return null;
+
+        String[] bindTexts = new String[binds == null ? 0 : binds.length];
+        for (int i = 0; i < bindTexts.length; i++) bindTexts[i] = format(binds[i]);
+
+        SlowQuery entry = new SlowQuery(System.currentTimeMillis(), shape, bindTexts, elapsedNanos, failed, findCaller(), rows);
+        ring.set((int) (recorded.getAndIncrement() % ring.length()), entry);
+
+        if (explainer != null && !failed && isExplainable(sql, binds)) {
+            Object[] values = binds == null ? new Object[0] : binds.clone();
+            explainer.execute(() -> explain(entry, sql, values));
+        }
+        return entry;
+    }
+
+    /**
+     * @return the entries in the ring, the most recent first
+     */
+    public List<SlowQuery> getEntries() {
+        List<SlowQuery> entries = new ArrayList<>();
+        long last = recorded.get();
+        for (long i = last - 1; i >= Math.max(0, last - ring.length()); i--) {
+            SlowQuery entry = ring.get((int) (i % ring.length()));
+            if (entry != null) entries.add(entry);
+        }
+        return entries;
+    }
+
+    public void clear() {
+        for (int i = 0; i < ring.length(); i++) ring.set(i, null);
+    }
+
+    /**
+     * Writes the entries in the ring to the log, the most recent first.
+     */
+    public void dump() {
+        List<SlowQuery> entries = getEntries();
+        StringBuilder text = new StringBuilder("Slow queries: ").append(entries.size()).append(" of ")
+            .append(recorded.get()).append(" recorded");
+        for (SlowQuery entry : entries) text.append("\n  ").append(entry);
+        LOGGER.info(text.toString());
+    }
+
+    /**
+     * Finds the first method of a DAO on the stack, the methods of the helpers in the dao package are skipped.
+     */
+    private static String findCaller() {
+        String helper = null;
+        for (StackTraceElement frame : new Throwable().getStackTrace()) {
+            String className = frame.getClassName();
+            if (!className.startsWith(DAO_PACKAGE)) continue;
+
+            String method = className.substring(DAO_PACKAGE.length()) + "." + frame.getMethodName();
+            if (className.endsWith("Dao")) return method;
+            if (helper == null) helper = method;
+        }
+        return helper;
+    }
+
+    private static String format(Object value) {
+        if (value == null) return "NULL";
+        if (value instanceof Number || value instanceof Boolean) return value.toString();
+        if (!isPlainValue(value)) return "<" + value.getClass().getSimpleName() + ">";
+
+        String text = value.toString();
+        if (text.length() > MAX_BIND_LENGTH) text = text.substring(0, MAX_BIND_LENGTH) + "...";
+        return "'" + text + "'";
+    }
+
+    private static boolean isPlainValue(Object value) {
+        return value == null || value instanceof String || value instanceof Number || value instanceof Boolean
+            || value instanceof java.util.Date || value instanceof BigDecimal;
+    }
+
+    /**
+     * Only queries are explained, and only when the bind values are known and can be set again, e.g. not streams.
+     */
+    private static boolean isExplainable(String sql, Object[] binds) {
+        if (sql == null || !sql.trim().regionMatches(true, 0, "SELECT", 0, 6)) return false;
+        if (binds == null && sql.indexOf('?') >= 0) return false;
+        if (binds != null) for (Object value : binds) if (!isPlainValue(value)) return false;
+        return true;
+    }
+
+    private static void explain(SlowQuery entry, String sql, Object[] binds) {
+        String query = sql.trim();
+        if (query.endsWith(";")) query = query.substring(0, query.length() - 1);
+
+        try (Connection conn = ConnectionFactory.getConnection()) {
+            PreparedStatement pStatement = conn.prepareStatement(EXPLAIN + query);
+            for (int i = 0; i < binds.length; i++) pStatement.setObject(i + 1, binds[i]);
+
+            ResultSet result = pStatement.executeQuery();
+            ResultSetMetaData meta = result.getMetaData();
+            StringBuilder plan = new StringBuilder();
+            while (result.next()) {
+                if (plan.length() > 0) plan.append(" / ");
+                int start = plan.length();
+                for (int column = 1; column <= meta.getColumnCount(); column++) {
+                    Object value = result.getObject(column);
+                    if (value == null) continue;
+                    if (plan.length() > start) plan.append(", ");
+                    plan.append(meta.getColumnLabel(column)).append('=').append(value);
+                }
+            }
+            entry.setPlan(plan.toString());
+        } catch (SQLException ex) {
+            entry.setPlan("EXPLAIN failed: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * A single thread with a short queue, the EXPLAINs which do not fit are skipped instead of piling up behind a slow database.
+     */
+    private static ThreadPoolExecutor createExplainer() {
+        return new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(EXPLAIN_QUEUE_SIZE), runnable -> {
+            Thread thread = new Thread(runnable, "piratemovies-slowlog-explain");
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.DiscardPolicy());
+    }
+}
@@ -0,0 +1,226 @@
+package com.bakoalex.database.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import com.bakoalex.database.ConnectionFactory;
+import com.bakoalex.database.PoolStats;
+import com.bakoalex.logger.ConsoleLogger;
+
+/**
+ * Per-statement latency, row count and pool wait metrics of the connections handed out by ConnectionFactory.
+ *
+ * Statements are grouped by their shape: the SQL with whitespace collapsed, literals replaced by '?' and
+ * IN lists of any length merged. The metrics are exported as the com.bakoalex.piratemovies:type=SqlMetrics
+ * MXBean, and written to the log every piratemovies.metrics.dumpIntervalSeconds seconds (300 by default, 0 disables it).
+ */
+public final class SqlMetrics implements SqlMetricsMXBean {
+
+    private static final Logger LOGGER = ConsoleLogger.attach();
+
+    public static final String OBJECT_NAME = "com.bakoalex.piratemovies:type=SqlMetrics";
+
+    private static final long DUMP_INTERVAL_SECONDS = Long.getLong("piratemovies.metrics.dumpIntervalSeconds", 300);
+
+    /** Distinct SQL strings remembered, the ones beyond are recorded under OTHER_SHAPE. */
+    private static final int MAX_SQL_STRINGS = 4096;
+    private static final String OTHER_SHAPE = "(other)";
+    private static final int DUMP_TOP = 20;
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^'\\\\]|\\\\.|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("(?<![\\w.])-?\\d+(?:\\.\\d+)?(?![\\w.])");
+    private static final Pattern IN_LIST = Pattern.compile("\\(\\s*\\?(?:\\s*,\\s*\\?)+\\s*\\)");
+
+    private static volatile SqlMetrics shared;
+
+    private final ConcurrentHashMap<String, StatementMetrics> bySql = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, StatementMetrics> byShape = new ConcurrentHashMap<>();
+    private final LatencyHistogram poolWait = new LatencyHistogram();
+    private final SlowQueryLog slowQueries = new SlowQueryLog();
+
+    private SqlMetrics() {}
+
+    /**
+     * Returns the metrics of ConnectionFactory. The first call registers the MXBean and starts the periodic dump.
+     */
+    public static SqlMetrics get() {
+        SqlMetrics current = shared;
+        if (current != null) return current;
+
+        synchronized (SqlMetrics.class) {
+            if (shared == null) {
+                SqlMetrics metrics = new SqlMetrics();
+                metrics.register();
+                metrics.scheduleDump();
+                shared = metrics;
+            }
+            return shared;
+        }
+    }
+
+    /**
+     * Wraps the connection, so the executions of its statements are recorded.
+     */
+    public Connection instrument(Connection conn) {
+        return InstrumentedJdbc.connection(conn, this);
+    }
+
+    /**
+     * @return the statements which ran longer than the slow query threshold
+     */
+    public SlowQueryLog getSlowQueryLog() {
+        return slowQueries;
+    }
+
+    public void recordPoolWait(long nanos) {
+        poolWait.record(nanos);
+    }
+
+    /**
+     * Replaces the literals of the SQL by '?', and merges the IN lists, so the same statement
+     * with different values has the same shape.
+     */
+    static String shapeOf(String sql) {
+        String shape = WHITESPACE.matcher(sql.trim()).replaceAll(" ");
+        if (shape.endsWith(";")) shape = shape.substring(0, shape.length() - 1).trim();
+        shape = STRING_LITERAL.matcher(shape).replaceAll("?");
+        shape = NUMBER_LITERAL.matcher(shape).replaceAll("?");
+        return IN_LIST.matcher(shape).replaceAll("(?...)");
+    }
+
+    StatementMetrics forSql(String sql) {
+        if (sql == null) return byShape.computeIfAbsent(OTHER_SHAPE, StatementMetrics::new);
+
+        StatementMetrics metrics = bySql.get(sql);
+        if (metrics != null) return metrics;
+
+        String shape = bySql.size() < MAX_SQL_STRINGS ? shapeOf(sql) : OTHER_SHAPE;
+        metrics = byShape.computeIfAbsent(shape, StatementMetrics::new);
+        if (shape != OTHER_SHAPE) bySql.putIfAbsent(sql, metrics);
+        return metrics;
+    }
+
+    @Override
+    public List<StatementStats> getStatements() {
+        List<StatementStats> statements = new ArrayList<>();
+        for (StatementMetrics metrics : byShape.values()) statements.add(metrics.snapshot());
+        statements.sort(Comparator.comparingLong(StatementStats::getTotalMicros).reversed());
+        return statements;
+    }
+
+    @Override
+    public long getPoolWaitCount() {
+        return poolWait.snapshot().getCount();
+    }
+
+    @Override
+    public long getPoolWaitP50Micros() {
+        return poolWait.snapshot().getPercentileNanos(50) / 1000;
+    }
+
+    @Override
+    public long getPoolWaitP99Micros() {
+        return poolWait.snapshot().getPercentileNanos(99) / 1000;
+    }
+
+    @Override
+    public long getPoolWaitMaxMicros() {
+        return poolWait.snapshot().getMaxNanos() / 1000;
+    }
+
+    @Override
+    public int getActiveConnections() {
+        return ConnectionFactory.getPoolStats().getActive();
+    }
+
+    @Override
+    public int getIdleConnections() {
+        return ConnectionFactory.getPoolStats().getIdle();
+    }
+
+    @Override
+    public int getPoolWaiters() {
+        return ConnectionFactory.getPoolStats().getWaiters();
+    }
+
+    @Override
+    public long getPoolTimeouts() {
+        return ConnectionFactory.getPoolStats().getTimeoutCount();
+    }
+
+    @Override
+    public List<String> getSlowQueries() {
+        List<String> entries = new ArrayList<>();
+        for (SlowQuery entry : slowQueries.getEntries()) entries.add(entry.toString());
+        return entries;
+    }
+
+    @Override
+    public void reset() {
+        for (StatementMetrics metrics : byShape.values()) metrics.reset();
+        poolWait.reset();
+        slowQueries.clear();
+    }
+
+    @Override
+    public void dump() {
+        LOGGER.info(format());
+    }
+
+    @Override
+    public void dumpSlowQueries() {
+        slowQueries.dump();
+    }
+
+    /**
+     * @return the pool metrics and the statements with the highest total time, one per line
+     */
+    public String format() {
+        LatencyHistogram.Snapshot wait = poolWait.snapshot();
+        PoolStats pool = ConnectionFactory.getPoolStats();
+        StringBuilder text = new StringBuilder("SQL metrics | pool: active=").append(pool.getActive())
+            .append(" idle=").append(pool.getIdle()).append(" waiters=").append(pool.getWaiters())
+            .append(" timeouts=").append(pool.getTimeoutCount())
+            .append(" | acquire: count=").append(wait.getCount())
+            .append(" p50=").append(wait.getPercentileNanos(50) / 1000)
+            .append("us p99=").append(wait.getPercentileNanos(99) / 1000)
+            .append("us max=").append(wait.getMaxNanos() / 1000).append("us");
+
+        List<StatementStats> statements = getStatements();
+        for (int i = 0; i < Math.min(DUMP_TOP, statements.size()); i++) text.append("\n  ").append(statements.get(i));
+        return text.toString();
+    }
+
+    private void register() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+        } catch (JMException ex) {
+            LOGGER.info("Could not register the SQL metrics MXBean: " + ex.getMessage());
+        }
+    }
+
+    private void scheduleDump() {
+        if (DUMP_INTERVAL_SECONDS <= 0) return;
+        ScheduledExecutorService dumper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "piratemovies-sql-metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        dumper.scheduleAtFixedRate(() -> {
+            if (!byShape.isEmpty()) dump();
+        }, DUMP_INTERVAL_SECONDS, DUMP_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,40 @@
+package com.bakoalex.database.metrics;
+
+import java.util.List;
+
+/**
+ * JMX view of the SQL and connection pool metrics, registered as com.bakoalex.piratemovies:type=SqlMetrics.
+ */
+public interface SqlMetricsMXBean {
+
+    /** The statements, the ones with the highest total time first. */
+    List<StatementStats> getStatements();
+
+    long getPoolWaitCount();
+
+    long getPoolWaitP50Micros();
+
+    long getPoolWaitP99Micros();
+
+    long getPoolWaitMaxMicros();
+
+    int getActiveConnections();
+
+    int getIdleConnections();
+
+    int getPoolWaiters();
+
+    long getPoolTimeouts();
+
+    /** The statements which ran longer than the slow query threshold, the most recent first. */
+    List<String> getSlowQueries();
+
+    /** Clears the statement and pool wait metrics, and the slow queries. */
+    void reset();
+
+    /** Writes the current metrics to the log. */
+    void dump();
+
+    /** Writes the slow queries to the log. */
+    void dumpSlowQueries();
+}
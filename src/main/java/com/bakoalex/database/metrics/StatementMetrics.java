@@ -0,0 +1,40 @@
+package com.bakoalex.database.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Recorder of the executions of one SQL shape.
+ */
+class StatementMetrics {
+    private final String shape;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    StatementMetrics(String shape) {
+        this.shape = shape;
+    }
+
+    String getShape() {
+        return shape;
+    }
+
+    void recordExecution(long nanos, boolean failed) {
+        latency.record(nanos);
+        if (failed) errors.increment();
+    }
+
+    void recordRows(long count) {
+        rows.add(count);
+    }
+
+    StatementStats snapshot() {
+        return new StatementStats(shape, latency.snapshot(), rows.sum(), errors.sum());
+    }
+
+    void reset() {
+        latency.reset();
+        rows.reset();
+        errors.reset();
+    }
+}
@@ -0,0 +1,89 @@
+package com.bakoalex.database.metrics;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * Immutable snapshot of the metrics of one SQL shape. The latencies are in microseconds.
+ */
+public class StatementStats {
+    private final String sql;
+    private final long count;
+    private final long errorCount;
+    private final long rows;
+    private final long totalMicros;
+    private final long meanMicros;
+    private final long p50Micros;
+    private final long p99Micros;
+    private final long p999Micros;
+    private final long maxMicros;
+
+    @ConstructorProperties({ "sql", "count", "errorCount", "rows", "totalMicros", "meanMicros",
+                             "p50Micros", "p99Micros", "p999Micros", "maxMicros" })
+    public StatementStats(String sql, long count, long errorCount, long rows, long totalMicros, long meanMicros,
+                          long p50Micros, long p99Micros, long p999Micros, long maxMicros) {
+        this.sql = sql;
+        this.count = count;
+        this.errorCount = errorCount;
+        this.rows = rows;
+        this.totalMicros = totalMicros;
+        this.meanMicros = meanMicros;
+        this.p50Micros = p50Micros;
+        this.p99Micros = p99Micros;
+        this.p999Micros = p999Micros;
+        this.maxMicros = maxMicros;
+    }
+
+    StatementStats(String sql, LatencyHistogram.Snapshot latency, long rows, long errorCount) {
+        this(sql, latency.getCount(), errorCount, rows, latency.getMeanNanos() * latency.getCount() / 1000,
+            latency.getMeanNanos() / 1000, latency.getPercentileNanos(50) / 1000, latency.getPercentileNanos(99) / 1000,
+            latency.getPercentileNanos(99.9) / 1000, latency.getMaxNanos() / 1000);
+    }
+
+    /** The SQL shape, with the literals replaced by '?'. */
+    public String getSql() {
+        return sql;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getErrorCount() {
+        return errorCount;
+    }
+
+    /** Rows returned by the queries, or changed by the updates. */
+    public long getRows() {
+        return rows;
+    }
+
+    public long getTotalMicros() {
+        return totalMicros;
+    }
+
+    public long getMeanMicros() {
+        return meanMicros;
+    }
+
+    public long getP50Micros() {
+        return p50Micros;
+    }
+
+    public long getP99Micros() {
+        return p99Micros;
+    }
+
+    public long getP999Micros() {
+        return p999Micros;
+    }
+
+    public long getMaxMicros() {
+        return maxMicros;
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + count + " errors=" + errorCount + " rows=" + rows + " mean=" + meanMicros + "us p50=" + p50Micros
+            + "us p99=" + p99Micros + "us p99.9=" + p999Micros + "us max=" + maxMicros + "us | " + sql;
+    }
+}
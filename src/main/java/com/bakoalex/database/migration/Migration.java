@@ -0,0 +1,37 @@
+package com.bakoalex.database.migration;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A versioned schema change, made of SQL statements which are applied together.
+ */
+public class Migration {
+    private final int version;
+    private final String description;
+    private final List<String> statements;
+
+    public Migration(int version, String description, List<String> statements) {
+        this.version = version;
+        this.description = description;
+        this.statements = Collections.unmodifiableList(new ArrayList<>(statements));
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public List<String> getStatements() {
+        return statements;
+    }
+
+    @Override
+    public String toString() {
+        return "V" + version + " " + description + " (" + statements.size() + " statements)";
+    }
+}
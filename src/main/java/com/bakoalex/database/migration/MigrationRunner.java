@@ -0,0 +1,417 @@
+package com.bakoalex.database.migration;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.bakoalex.database.ConnectionFactory;
+import com.bakoalex.logger.ConsoleLogger;
+import com.bakoalex.logger.Log;
+
+/**
+ * Brings the database schema up to date.
+ *
+ * Version 1 is the baseline, made of the resources/sql/tbl_*.sql scripts, ordered so that every table
+ * is created after the tables its foreign keys reference. The later versions are the
+ * resources/sql/migrations/V&lt;version&gt;__&lt;description&gt;.sql scripts. The applied versions are
+ * recorded in the schema_version table, so every migration runs once.
+ *
+ * The DDL statements of a migration are sent as one batch on a single connection. The exceptions are the
+ * "CREATE INDEX ... ON table" statements: they are built afterwards, online (ALGORITHM=INPLACE LOCK=NONE),
+ * and the indexes of different tables are built in parallel on separate connections.
+ * The data changes (INSERT, UPDATE, DELETE) are not part of a batch. MySQL commits implicitly on every DDL statement,
+ * so they are run in their own transaction, after the DDL before them succeeded and before the DDL after them is sent.
+ */
+public class MigrationRunner {
+
+    private static final Logger LOGGER = ConsoleLogger.attach();
+
+    private static final Pattern MIGRATION_FILE = Pattern.compile("V(\\d+)__(\\w+)\\.sql");
+
+    private static final String LOCK_NAME = "piratemovies_schema_migration";
+    private static final int LOCK_TIMEOUT_SECONDS = 60;
+
+    // Errors of statements whose change is already in place, e.g. when a migration re-runs after a failure
+    private static final int ER_DUP_KEYNAME = 1061;
+    private static final int ER_MULTIPLE_PRI_KEY = 1068;
+    private static final int ER_CANT_DROP_FIELD_OR_KEY = 1091;
+
+    private static final String CREATE_VERSION_TABLE_STRING =
+        "CREATE TABLE IF NOT EXISTS schema_version (" +
+        " version INT NOT NULL," +
+        " description VARCHAR(255) NOT NULL," +
+        " installed_on TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP," +
+        " execution_millis INT NOT NULL," +
+        " PRIMARY KEY (version))";
+
+    private final Path baselineDir;
+    private final Path migrationsDir;
+
+    public MigrationRunner() {
+        this(Paths.get("./resources/sql"), Paths.get("./resources/sql/migrations"));
+    }
+
+    public MigrationRunner(Path baselineDir, Path migrationsDir) {
+        this.baselineDir = baselineDir;
+        this.migrationsDir = migrationsDir;
+    }
+
+    /**
+     * Applies the migrations which are not recorded in the schema_version table yet, in version order.
+     * Stops at the first failing migration, which is not recorded, so it is retried by the next run.
+     * @return true if the schema is up to date
+     */
+    public boolean migrate() {
+        List<Migration> migrations;
+        try {
+            migrations = loadMigrations();
+        } catch (IOException | IllegalStateException ex) {
+            LOGGER.severe("Could not read the schema migrations: " + ex.getMessage());
+            return false;
+        }
+
+        try (Connection conn = ConnectionFactory.getConnection()) {
+            // Only one application instance migrates at a time
+            if (!acquireLock(conn)) {
+                LOGGER.severe("Could not acquire the schema migration lock: " + LOCK_NAME);
+                return false;
+            }
+
+            try {
+                Statement statement = conn.createStatement();
+                statement.execute(CREATE_VERSION_TABLE_STRING);
+                Set<Integer> applied = appliedVersions(conn);
+
+                for (Migration migration : migrations) {
+                    if (applied.contains(migration.getVersion())) continue;
+                    if (!apply(conn, migration)) return false;
+                }
+                LOGGER.info("Database schema is up to date.");
+                return true;
+
+            } finally {
+                releaseLock(conn);
+            }
+
+        } catch (SQLException ex) {
+            LOGGER.severe(ConsoleLogger.SQL_EXC + ex.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Reads the baseline and the migration scripts.
+     * @return the migrations in version order
+     * @throws IllegalStateException if two migrations have the same version, or the baseline tables reference each other in a cycle
+     */
+    public List<Migration> loadMigrations() throws IOException {
+        TreeMap<Integer, Migration> migrations = new TreeMap<>();
+        migrations.put(1, loadBaseline());
+
+        if (Files.isDirectory(migrationsDir)) {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(migrationsDir, "V*__*.sql")) {
+                for (Path file : files) {
+                    Matcher matcher = MIGRATION_FILE.matcher(file.getFileName().toString());
+                    if (!matcher.matches()) continue;
+
+                    int version = Integer.parseInt(matcher.group(1));
+                    Migration migration = new Migration(version, matcher.group(2).replace('_', ' '), SqlScript.split(read(file)));
+                    if (migrations.put(version, migration) != null) {
+                        throw new IllegalStateException("Duplicate migration version: " + version);
+                    }
+                }
+            }
+        }
+        return new ArrayList<>(migrations.values());
+    }
+
+    /**
+     * The baseline creates the tables of the tbl_*.sql scripts, every table after the ones it references.
+     */
+    private Migration loadBaseline() throws IOException {
+        // table name -> statements of its script, sorted by name so the order is stable
+        Map<String, List<String>> scripts = new TreeMap<>();
+        Map<String, Set<String>> references = new TreeMap<>();
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(baselineDir, "tbl_*.sql")) {
+            for (Path file : files) {
+                List<String> statements = SqlScript.split(read(file));
+                String table = null;
+                Set<String> referenced = new HashSet<>();
+                for (String statement : statements) {
+                    if (table == null) table = SqlScript.createdTable(statement);
+                    referenced.addAll(SqlScript.referencedTables(statement));
+                }
+                if (table == null) throw new IllegalStateException("No CREATE TABLE statement in " + file);
+
+                scripts.put(table, statements);
+                references.put(table, referenced);
+            }
+        }
+
+        List<String> statements = new ArrayList<>();
+        for (String table : orderByReferences(references)) statements.addAll(scripts.get(table));
+        return new Migration(1, "baseline", statements);
+    }
+
+    /**
+     * Orders the tables so that every table comes after the tables it references.
+     * References to tables outside of the map are ignored.
+     * @param references table name -> names of the referenced tables
+     * @throws IllegalStateException if the references form a cycle
+     */
+    static List<String> orderByReferences(Map<String, Set<String>> references) {
+        List<String> ordered = new ArrayList<>();
+        Map<String, Set<String>> remaining = new LinkedHashMap<>();
+        for (Map.Entry<String, Set<String>> entry : references.entrySet()) {
+            Set<String> known = new HashSet<>(entry.getValue());
+            known.retainAll(references.keySet());
+            known.remove(entry.getKey());
+            remaining.put(entry.getKey(), known);
+        }
+
+        while (!remaining.isEmpty()) {
+            List<String> ready = new ArrayList<>();
+            for (Map.Entry<String, Set<String>> entry : remaining.entrySet()) {
+                if (entry.getValue().isEmpty()) ready.add(entry.getKey());
+            }
+            if (ready.isEmpty()) throw new IllegalStateException("Foreign key cycle between tables: " + remaining.keySet());
+
+            for (String table : ready) {
+                remaining.remove(table);
+                for (Set<String> referenced : remaining.values()) referenced.remove(table);
+            }
+            ordered.addAll(ready);
+        }
+        return ordered;
+    }
+
+    private boolean apply(Connection conn, Migration migration) throws SQLException {
+        LOGGER.info("Applying schema migration " + migration);
+        long start = System.nanoTime();
+
+        List<String> statements = new ArrayList<>();
+        Map<String, List<String>> indexesByTable = new TreeMap<>();
+        for (String statement : migration.getStatements()) {
+            String table = SqlScript.indexedTable(statement);
+            if (table == null) statements.add(statement);
+            else indexesByTable.computeIfAbsent(table, t -> new ArrayList<>()).add(SqlScript.online(statement));
+        }
+
+        for (List<String> step : steps(statements)) {
+            boolean success = SqlScript.changesData(step.get(0)) ? executeTransaction(conn, step) : executeBatch(conn, step);
+            if (!success) return false;
+        }
+        if (!buildIndexes(indexesByTable)) return false;
+
+        int millis = (int) ((System.nanoTime() - start) / 1_000_000);
+        PreparedStatement pStatement = conn.prepareStatement(
+            "INSERT INTO schema_version (version, description, execution_millis) VALUES (?, ?, ?);");
+        pStatement.setInt(1, migration.getVersion());
+        pStatement.setString(2, migration.getDescription());
+        pStatement.setInt(3, millis);
+        pStatement.executeUpdate();
+
+        LOGGER.info("Applied schema migration V" + migration.getVersion() + " in " + millis + " ms");
+        return true;
+    }
+
+    /**
+     * Splits the statements into steps of consecutive DDL statements and of consecutive data changes, in script order.
+     */
+    static List<List<String>> steps(List<String> statements) {
+        List<List<String>> steps = new ArrayList<>();
+        List<String> current = null;
+        boolean currentChangesData = false;
+        for (String statement : statements) {
+            boolean changesData = SqlScript.changesData(statement);
+            if (current == null || changesData != currentChangesData) {
+                current = new ArrayList<>();
+                steps.add(current);
+                currentChangesData = changesData;
+            }
+            current.add(statement);
+        }
+        return steps;
+    }
+
+    /**
+     * Runs the data changes one by one in a single transaction, which is rolled back if one of them fails.
+     */
+    private boolean executeTransaction(Connection conn, List<String> statements) throws SQLException {
+        conn.setAutoCommit(false);
+        try {
+            Statement statement = conn.createStatement();
+            for (String sql : statements) {
+                try {
+                    Log.fine(LOGGER, ConsoleLogger.DB_QUERY, sql);
+                    statement.executeUpdate(sql);
+                } catch (SQLException ex) {
+                    LOGGER.severe("Schema migration statement failed: " + sql);
+                    LOGGER.severe(ConsoleLogger.SQL_EXC + ex.getMessage());
+                    conn.rollback();
+                    return false;
+                }
+            }
+            conn.commit();
+            return true;
+
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Sends the DDL statements as one batch.
+     * If the batch fails, the failed statements are run one by one, so the errors of already applied changes can be ignored.
+     */
+    private boolean executeBatch(Connection conn, List<String> statements) throws SQLException {
+        if (statements.isEmpty()) return true;
+
+        conn.setAutoCommit(false);
+        try {
+            Statement statement = conn.createStatement();
+            for (String sql : statements) statement.addBatch(sql);
+
+            int[] results;
+            try {
+                results = statement.executeBatch();
+            } catch (BatchUpdateException ex) {
+                results = ex.getUpdateCounts();
+                Log.fine(LOGGER, "Schema migration batch failed, retrying the failed statements one by one: ", ex.getMessage());
+            }
+
+            for (int i = 0; i < statements.size(); i++) {
+                if (i < results.length && results[i] != Statement.EXECUTE_FAILED) continue;
+                if (!executeTolerant(statement, statements.get(i))) {
+                    conn.rollback();
+                    return false;
+                }
+            }
+
+            conn.commit();
+            return true;
+
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Builds the indexes of every table on its own connection, the tables in parallel.
+     */
+    private boolean buildIndexes(Map<String, List<String>> indexesByTable) {
+        if (indexesByTable.isEmpty()) return true;
+
+        // Leaves a connection of the pool to the migration itself
+        int threads = Math.max(1, Math.min(indexesByTable.size(), ConnectionFactory.getPoolMaxSize() - 1));
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (Map.Entry<String, List<String>> entry : indexesByTable.entrySet()) {
+                results.add(executor.submit(() -> buildTableIndexes(entry.getKey(), entry.getValue())));
+            }
+
+            boolean success = true;
+            for (Future<Boolean> result : results) success &= result.get();
+            return success;
+
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+
+        } catch (ExecutionException ex) {
+            LOGGER.severe("Could not build the indexes: " + ex.getCause());
+            return false;
+
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private boolean buildTableIndexes(String table, List<String> indexes) {
+        try (Connection conn = ConnectionFactory.getConnection()) {
+            Statement statement = conn.createStatement();
+            for (String sql : indexes) {
+                long start = System.nanoTime();
+                if (!executeTolerant(statement, sql)) return false;
+                Log.fine(LOGGER, () -> "Built index of " + table + " in " + (System.nanoTime() - start) / 1_000_000 + " ms: " + sql);
+            }
+            return true;
+
+        } catch (SQLException ex) {
+            LOGGER.severe(ConsoleLogger.SQL_EXC + ex.getMessage());
+            return false;
+        }
+    }
+
+    private boolean executeTolerant(Statement statement, String sql) {
+        try {
+            Log.fine(LOGGER, ConsoleLogger.DB_QUERY, sql);
+            statement.execute(sql);
+            return true;
+
+        } catch (SQLException ex) {
+            int code = ex.getErrorCode();
+            if (code == ER_DUP_KEYNAME || code == ER_MULTIPLE_PRI_KEY || code == ER_CANT_DROP_FIELD_OR_KEY) {
+                Log.fine(LOGGER, "Change is already in place, skipping: ", ex.getMessage());
+                return true;
+            }
+            LOGGER.severe("Schema migration statement failed: " + sql);
+            LOGGER.severe(ConsoleLogger.SQL_EXC + ex.getMessage());
+            return false;
+        }
+    }
+
+    private Set<Integer> appliedVersions(Connection conn) throws SQLException {
+        Set<Integer> versions = new HashSet<>();
+        ResultSet result = conn.createStatement().executeQuery("SELECT version FROM schema_version;");
+        while (result.next()) versions.add(result.getInt(1));
+        return versions;
+    }
+
+    private boolean acquireLock(Connection conn) throws SQLException {
+        PreparedStatement pStatement = conn.prepareStatement("SELECT GET_LOCK(?, ?);");
+        pStatement.setString(1, LOCK_NAME);
+        pStatement.setInt(2, LOCK_TIMEOUT_SECONDS);
+        ResultSet result = pStatement.executeQuery();
+        return result.next() && result.getInt(1) == 1;
+    }
+
+    private void releaseLock(Connection conn) {
+        try {
+            PreparedStatement pStatement = conn.prepareStatement("SELECT RELEASE_LOCK(?);");
+            pStatement.setString(1, LOCK_NAME);
+            pStatement.executeQuery();
+        } catch (SQLException ex) {
+            LOGGER.info("Could not release the schema migration lock: " + ex.getMessage());
+        }
+    }
+
+    private static String read(Path file) throws IOException {
+        return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,113 @@
+package com.bakoalex.database.migration;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Helpers for reading SQL scripts.
+ */
+class SqlScript {
+
+    private static final Pattern CREATE_TABLE = Pattern.compile(
+        "^CREATE\\s+TABLE\\s+(?:IF\\s+NOT\\s+EXISTS\\s+)?`?(\\w+)`?", Pattern.CASE_INSENSITIVE);
+
+    private static final Pattern REFERENCES = Pattern.compile("\\bREFERENCES\\s+`?(\\w+)`?", Pattern.CASE_INSENSITIVE);
+
+    private static final Pattern CREATE_INDEX = Pattern.compile(
+        "^CREATE\\s+(?:UNIQUE\\s+)?INDEX\\s+`?\\w+`?\\s+ON\\s+`?(\\w+)`?", Pattern.CASE_INSENSITIVE);
+
+    private static final Pattern DATA_CHANGE = Pattern.compile("^(?:INSERT|UPDATE|DELETE|REPLACE)\\b", Pattern.CASE_INSENSITIVE);
+
+    private static final Pattern ALGORITHM = Pattern.compile("\\bALGORITHM\\s*=", Pattern.CASE_INSENSITIVE);
+
+    private SqlScript() {}
+
+    /**
+     * Splits a script into statements at the semicolons which are not inside quotes or comments.
+     * Comments are removed, the statements are trimmed and have no trailing semicolon.
+     */
+    static List<String> split(String script) {
+        List<String> statements = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        int length = script.length();
+
+        for (int i = 0; i < length; i++) {
+            char c = script.charAt(i);
+            char next = i + 1 < length ? script.charAt(i + 1) : 0;
+
+            if (c == '\'' || c == '"' || c == '`') {
+                int end = i + 1;
+                while (end < length && script.charAt(end) != c) {
+                    if (script.charAt(end) == '\\') end++;
+                    end++;
+                }
+                end = Math.min(end, length - 1);
+                current.append(script, i, end + 1);
+                i = end;
+            } else if ((c == '-' && next == '-') || c == '#') {
+                while (i < length && script.charAt(i) != '\n') i++;
+                current.append('\n');
+            } else if (c == '/' && next == '*') {
+                int end = script.indexOf("*/", i + 2);
+                i = end < 0 ? length : end + 1;
+                current.append(' ');
+            } else if (c == ';') {
+                addStatement(statements, current);
+            } else {
+                current.append(c);
+            }
+        }
+        addStatement(statements, current);
+        return statements;
+    }
+
+    /**
+     * @return the table created by the statement, or null if it is not a CREATE TABLE statement
+     */
+    static String createdTable(String statement) {
+        Matcher matcher = CREATE_TABLE.matcher(statement);
+        return matcher.find() ? matcher.group(1).toLowerCase(Locale.ROOT) : null;
+    }
+
+    /**
+     * @return the tables referenced by the foreign keys of the statement
+     */
+    static List<String> referencedTables(String statement) {
+        List<String> tables = new ArrayList<>();
+        Matcher matcher = REFERENCES.matcher(statement);
+        while (matcher.find()) tables.add(matcher.group(1).toLowerCase(Locale.ROOT));
+        return tables;
+    }
+
+    /**
+     * @return the table of a "CREATE [UNIQUE] INDEX ... ON table" statement, or null for other statements
+     */
+    static String indexedTable(String statement) {
+        Matcher matcher = CREATE_INDEX.matcher(statement);
+        return matcher.find() ? matcher.group(1).toLowerCase(Locale.ROOT) : null;
+    }
+
+    /**
+     * @return whether the statement changes rows (INSERT, UPDATE, DELETE or REPLACE) instead of the schema
+     */
+    static boolean changesData(String statement) {
+        return DATA_CHANGE.matcher(statement).find();
+    }
+
+    /**
+     * Asks MySQL to build the index in place without locking the table, unless the statement chooses an algorithm itself.
+     */
+    static String online(String createIndexStatement) {
+        if (ALGORITHM.matcher(createIndexStatement).find()) return createIndexStatement;
+        return createIndexStatement + " ALGORITHM=INPLACE LOCK=NONE";
+    }
+
+    private static void addStatement(List<String> statements, StringBuilder current) {
+        String statement = current.toString().trim();
+        if (!statement.isEmpty()) statements.add(statement);
+        current.setLength(0);
+    }
+}
@@ -1,5 +1,7 @@
 package com.bakoalex.dto;
 
+import java.util.Objects;
+
 public class Director {
     private int directorId;
     private String name;
@@ -40,4 +42,18 @@ public class Director {
     public void setName(String name) {
         this.name = name;
     }
-}
\ No newline at end of file
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == null) return false;
+        if (this == o) return true;
+        if (!(o instanceof Director)) return false;
+        Director director = (Director) o;
+        return directorId == director.directorId && Objects.equals(name, director.name);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(directorId, name);
+    }
+}
@@ -0,0 +1,79 @@
+package com.bakoalex.dto;
+
+import java.time.LocalDate;
+import java.util.Objects;
+
+public class Rent {
+    private int movieId;
+    private int renterId;
+    private LocalDate rentStartDate;
+    private LocalDate rentEndDate;
+
+    public Rent() {}
+    public Rent(int movieId, int renterId, LocalDate rentStartDate, LocalDate rentEndDate) {
+        this.movieId = movieId;
+        this.renterId = renterId;
+        this.rentStartDate = rentStartDate;
+        this.rentEndDate = rentEndDate;
+    }
+
+    public int getMovieId() {
+        return movieId;
+    }
+
+    public void setMovieId(int movieId) {
+        this.movieId = movieId;
+    }
+
+    public int getRenterId() {
+        return renterId;
+    }
+
+    public void setRenterId(int renterId) {
+        this.renterId = renterId;
+    }
+
+    public LocalDate getRentStartDate() {
+        return rentStartDate;
+    }
+
+    public void setRentStartDate(LocalDate rentStartDate) {
+        this.rentStartDate = rentStartDate;
+    }
+
+    /**
+     * @return the end date of the rent, null if the movie has not been brought back yet
+     */
+    public LocalDate getRentEndDate() {
+        return rentEndDate;
+    }
+
+    public void setRentEndDate(LocalDate rentEndDate) {
+        this.rentEndDate = rentEndDate;
+    }
+
+    public boolean isOpen() {
+        return rentEndDate == null;
+    }
+
+    @Override
+    public String toString() {
+        return "Rent(movie_id=" + movieId + ", renter_id=" + renterId + ", rent_start_date=" + rentStartDate 
+            + ", rent_end_date=" + rentEndDate + ")";
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == null) return false;
+        if (this == o) return true;
+        if (!(o instanceof Rent)) return false;
+        Rent rent = (Rent) o;
+        return movieId == rent.movieId && renterId == rent.renterId &&
+                Objects.equals(rentStartDate, rent.rentStartDate) && Objects.equals(rentEndDate, rent.rentEndDate);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(movieId, renterId, rentStartDate, rentEndDate);
+    }
+}
@@ -0,0 +1,156 @@
+package com.bakoalex.graph;
+
+import java.util.Arrays;
+
+/**
+ * One direction of a link table in compressed sparse row form.
+ *
+ * The neighbours of every row are stored back to back in a single targets array, in ascending order,
+ * and offsets[row] to offsets[row + 1] is the range of the row's neighbours. The rows are the ids themselves,
+ * so an id without links just has an empty range. Apart from the offsets, an edge costs 4 bytes.
+ */
+final class Adjacency {
+
+    static final int[] NONE = new int[0];
+
+    private final int[] offsets;
+    private final int[] targets;
+
+    private Adjacency(int[] offsets, int[] targets) {
+        this.offsets = offsets;
+        this.targets = targets;
+    }
+
+    /**
+     * Groups the edges by their row with a counting sort. The neighbours of a row are in the order of the edges.
+     * @param rowOf row of each edge
+     * @param targetOf target of each edge
+     * @param edges number of edges in the two arrays
+     * @param rows number of rows, greater than every row id
+     */
+    static Adjacency group(int[] rowOf, int[] targetOf, int edges, int rows) {
+        int[] offsets = new int[rows + 1];
+        for (int i = 0; i < edges; i++) offsets[rowOf[i] + 1]++;
+        for (int row = 0; row < rows; row++) offsets[row + 1] += offsets[row];
+
+        int[] next = Arrays.copyOf(offsets, rows);
+        int[] targets = new int[edges];
+        for (int i = 0; i < edges; i++) targets[next[rowOf[i]]++] = targetOf[i];
+        return new Adjacency(offsets, targets);
+    }
+
+    /**
+     * Returns the reverse direction, with the targets as rows. As the rows are visited in ascending order,
+     * the neighbours of every row of the result are sorted.
+     * @param rows number of rows of the result, greater than every target
+     */
+    Adjacency transpose(int rows) {
+        int[] reverseOffsets = new int[rows + 1];
+        for (int target : targets) reverseOffsets[target + 1]++;
+        for (int row = 0; row < rows; row++) reverseOffsets[row + 1] += reverseOffsets[row];
+
+        int[] next = Arrays.copyOf(reverseOffsets, rows);
+        int[] reverseTargets = new int[targets.length];
+        for (int row = 0; row < offsets.length - 1; row++) {
+            for (int i = offsets[row]; i < offsets[row + 1]; i++) reverseTargets[next[targets[i]]++] = row;
+        }
+        return new Adjacency(reverseOffsets, reverseTargets);
+    }
+
+    /**
+     * Removes the repeated neighbours of every row in place. The rows must be sorted.
+     */
+    Adjacency dedupe() {
+        int write = 0;
+        int start = 0;
+        for (int row = 0; row < offsets.length - 1; row++) {
+            int end = offsets[row + 1];
+            int rowStart = write;
+            offsets[row] = rowStart;
+            for (int i = start; i < end; i++) {
+                if (write == rowStart || targets[i] != targets[write - 1]) targets[write++] = targets[i];
+            }
+            start = end;
+        }
+        offsets[offsets.length - 1] = write;
+        return write == targets.length ? this : new Adjacency(offsets, Arrays.copyOf(targets, write));
+    }
+
+    int rows() {
+        return offsets.length - 1;
+    }
+
+    int edges() {
+        return targets.length;
+    }
+
+    int start(int row) {
+        return row >= 0 && row < offsets.length - 1 ? offsets[row] : 0;
+    }
+
+    int end(int row) {
+        return row >= 0 && row < offsets.length - 1 ? offsets[row + 1] : 0;
+    }
+
+    int degree(int row) {
+        return end(row) - start(row);
+    }
+
+    int target(int index) {
+        return targets[index];
+    }
+
+    /**
+     * @return a copy of the sorted neighbours of the row, empty for unknown rows
+     */
+    int[] neighbours(int row) {
+        int start = start(row);
+        int end = end(row);
+        return start == end ? NONE : Arrays.copyOfRange(targets, start, end);
+    }
+
+    long sizeInBytes() {
+        return 4L * (offsets.length + targets.length);
+    }
+
+    /**
+     * Returns the neighbours two rows have in common, in ascending order.
+     * The shorter row is walked, and every neighbour is looked up with a galloping search in the longer one,
+     * which only moves forward, so a short row is cheap against a long one.
+     */
+    static int[] intersect(Adjacency a, int rowA, Adjacency b, int rowB) {
+        int fromA = a.start(rowA);
+        int toA = a.end(rowA);
+        int fromB = b.start(rowB);
+        int toB = b.end(rowB);
+        if (toA - fromA > toB - fromB) return intersect(b, rowB, a, rowA);
+        if (fromA == toA || fromB == toB) return NONE;
+
+        int[] common = new int[toA - fromA];
+        int count = 0;
+        int position = fromB;
+        for (int i = fromA; i < toA && position < toB; i++) {
+            int value = a.targets[i];
+            position = b.advance(position, toB, value);
+            if (position < toB && b.targets[position] == value) common[count++] = value;
+        }
+        return count == 0 ? NONE : Arrays.copyOf(common, count);
+    }
+
+    /**
+     * @return the first index from position on, below end, whose target is at least value, or end
+     */
+    private int advance(int position, int end, int value) {
+        int step = 1;
+        int low = position;
+        int high = position;
+        while (high < end && targets[high] < value) {
+            low = high + 1;
+            high += step;
+            step <<= 1;
+        }
+        high = Math.min(high, end);
+        int found = Arrays.binarySearch(targets, low, high, value);
+        return found >= 0 ? found : -found - 1;
+    }
+}
@@ -0,0 +1,216 @@
+package com.bakoalex.graph;
+
+import java.util.Arrays;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+import com.bakoalex.dao.MovieActorDao;
+import com.bakoalex.dao.MovieDirectorDao;
+import com.bakoalex.dto.MovieActor;
+import com.bakoalex.dto.MovieDirector;
+import com.bakoalex.logger.ConsoleLogger;
+import com.bakoalex.logger.Log;
+
+/**
+ * Immutable in-memory snapshot of the movies_actors and movies_directors link tables,
+ * for the traversals which would otherwise be multi-join queries, like the co-stars of an actor.
+ *
+ * Every link table is kept in both directions, movie to person and person to movie, as compressed sparse rows
+ * of plain int arrays, so a link costs 8 bytes and the neighbours of an id are found with two array reads.
+ * All returned id arrays are sorted and are copies, the caller may modify them.
+ *
+ * The snapshot is not updated by the DAOs, it is rebuilt from a streaming scan of the link tables with build().
+ */
+public final class CastGraph {
+
+    private static final Logger LOGGER = ConsoleLogger.attach();
+
+    private static volatile CastGraph shared;
+
+    private final Adjacency movieActors;
+    private final Adjacency actorMovies;
+    private final Adjacency movieDirectors;
+    private final Adjacency directorMovies;
+
+    private CastGraph(Adjacency movieActors, Adjacency actorMovies, Adjacency movieDirectors, Adjacency directorMovies) {
+        this.movieActors = movieActors;
+        this.actorMovies = actorMovies;
+        this.movieDirectors = movieDirectors;
+        this.directorMovies = directorMovies;
+    }
+
+    /**
+     * @return the graph built by the last loadShared() call, or null if it was never called
+     */
+    public static CastGraph getShared() {
+        return shared;
+    }
+
+    /**
+     * Builds a new graph from the database and makes it the shared one.
+     * Unlike the search indexes it only becomes shared when it is complete, readers keep using the previous one until then.
+     */
+    public static CastGraph loadShared() {
+        CastGraph graph = build();
+        shared = graph;
+        return graph;
+    }
+
+    /**
+     * Builds a graph from a streaming scan of the movies_actors and movies_directors tables.
+     */
+    public static CastGraph build() {
+        long start = System.nanoTime();
+        Builder builder = new Builder();
+        try (Stream<MovieActor> links = new MovieActorDao().stream()) {
+            links.forEach(link -> builder.addActor(link.getMovieId(), link.getActorId()));
+        }
+        try (Stream<MovieDirector> links = new MovieDirectorDao().stream()) {
+            links.forEach(link -> builder.addDirector(link.getMovieId(), link.getDirectorId()));
+        }
+        CastGraph graph = builder.build();
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        Log.fine(LOGGER, () -> "Cast graph built with " + graph.getActorLinkCount() + " actor and "
+            + graph.getDirectorLinkCount() + " director links (" + graph.sizeInBytes() / 1024 + " KiB) in " + millis + "ms.");
+        return graph;
+    }
+
+    /**
+     * @return the ids of the movies featuring the actor
+     */
+    public int[] moviesOfActor(int actorId) {
+        return actorMovies.neighbours(actorId);
+    }
+
+    /**
+     * @return the ids of the movies directed by the director
+     */
+    public int[] moviesOfDirector(int directorId) {
+        return directorMovies.neighbours(directorId);
+    }
+
+    /**
+     * @return the ids of the actors of the movie
+     */
+    public int[] actorsOfMovie(int movieId) {
+        return movieActors.neighbours(movieId);
+    }
+
+    /**
+     * @return the ids of the directors of the movie
+     */
+    public int[] directorsOfMovie(int movieId) {
+        return movieDirectors.neighbours(movieId);
+    }
+
+    /**
+     * @return the ids of the actors who played in at least one movie together with the actor, without the actor
+     */
+    public int[] coStars(int actorId) {
+        int from = actorMovies.start(actorId);
+        int to = actorMovies.end(actorId);
+        int total = 0;
+        for (int i = from; i < to; i++) total += movieActors.degree(actorMovies.target(i));
+        if (total == 0) return Adjacency.NONE;
+
+        // The casts are short, so concatenating and sorting them is cheaper than merging them
+        int[] actors = new int[total];
+        int length = 0;
+        for (int i = from; i < to; i++) {
+            int movieId = actorMovies.target(i);
+            for (int j = movieActors.start(movieId); j < movieActors.end(movieId); j++) actors[length++] = movieActors.target(j);
+        }
+        Arrays.sort(actors);
+
+        int count = 0;
+        for (int i = 0; i < length; i++) {
+            int actor = actors[i];
+            if (actor != actorId && (count == 0 || actors[count - 1] != actor)) actors[count++] = actor;
+        }
+        return count == 0 ? Adjacency.NONE : Arrays.copyOf(actors, count);
+    }
+
+    /**
+     * @return the ids of the movies directed by the director in which the actor played
+     */
+    public int[] moviesByDirectorWithActor(int directorId, int actorId) {
+        return Adjacency.intersect(directorMovies, directorId, actorMovies, actorId);
+    }
+
+    public int getActorLinkCount() {
+        return movieActors.edges();
+    }
+
+    public int getDirectorLinkCount() {
+        return movieDirectors.edges();
+    }
+
+    /**
+     * @return the memory taken by the int arrays of the graph
+     */
+    public long sizeInBytes() {
+        return movieActors.sizeInBytes() + actorMovies.sizeInBytes()
+            + movieDirectors.sizeInBytes() + directorMovies.sizeInBytes();
+    }
+
+    /**
+     * Collects links and builds a CastGraph from them.
+     * Links can be added in any order, a link added more than once is kept once.
+     * While building, a link takes 8 more bytes in the builder's buffers.
+     */
+    public static final class Builder {
+        private final Links actors = new Links();
+        private final Links directors = new Links();
+
+        public Builder addActor(int movieId, int actorId) {
+            actors.add(movieId, actorId);
+            return this;
+        }
+
+        public Builder addDirector(int movieId, int directorId) {
+            directors.add(movieId, directorId);
+            return this;
+        }
+
+        public CastGraph build() {
+            int movieRows = Math.max(actors.maxMovie, directors.maxMovie) + 1;
+            Adjacency movieActors = actors.toMovieRows(movieRows);
+            Adjacency movieDirectors = directors.toMovieRows(movieRows);
+            return new CastGraph(movieActors, movieActors.transpose(actors.maxPerson + 1),
+                movieDirectors, movieDirectors.transpose(directors.maxPerson + 1));
+        }
+    }
+
+    /**
+     * Growable buffer of the links of one link table.
+     */
+    private static final class Links {
+        private int[] movies = new int[1024];
+        private int[] persons = new int[1024];
+        private int count;
+        private int maxMovie;
+        private int maxPerson;
+
+        private void add(int movieId, int personId) {
+            if (movieId < 0 || personId < 0) throw new IllegalArgumentException("Ids must not be negative.");
+            if (count == movies.length) {
+                int capacity = count + (count >> 1);
+                movies = Arrays.copyOf(movies, capacity);
+                persons = Arrays.copyOf(persons, capacity);
+            }
+            movies[count] = movieId;
+            persons[count] = personId;
+            count++;
+            maxMovie = Math.max(maxMovie, movieId);
+            maxPerson = Math.max(maxPerson, personId);
+        }
+
+        /**
+         * Groups the links by person first, so grouping those by movie visits the persons in order
+         * and leaves every movie's persons sorted, which the duplicates are then removed from.
+         */
+        private Adjacency toMovieRows(int movieRows) {
+            return Adjacency.group(persons, movies, count, maxPerson + 1).transpose(movieRows).dedupe();
+        }
+    }
+}
@@ -0,0 +1,305 @@
+package com.bakoalex.importer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+import com.bakoalex.dao.ActorDao;
+import com.bakoalex.dao.Dao;
+import com.bakoalex.dao.DirectorDao;
+import com.bakoalex.dao.MovieDao;
+import com.bakoalex.dao.NameIndex;
+import com.bakoalex.dto.Actor;
+import com.bakoalex.dto.Director;
+import com.bakoalex.dto.Movie;
+import com.bakoalex.logger.ConsoleLogger;
+import com.bakoalex.logger.Log;
+import com.bakoalex.search.EntityType;
+import com.bakoalex.search.SearchHit;
+import com.bakoalex.search.TrigramIndex;
+
+/**
+ * Streaming import of catalog dumps (CSV or TSV, see CatalogParser for the format).
+ *
+ * The import runs as a pipeline of three stages, each on its own thread:
+ * 1. parse the lines into batches of movies,
+ * 2. de-duplicate the actors and directors by name in memory and batch-insert the new ones,
+ *    a name similar to an existing one (see TrigramIndex) is taken as that person,
+ * 3. batch-insert the movies with their movies_actors and movies_directors links.
+ * The stages are connected with bounded queues, so a slow stage blocks the previous one
+ * and the number of movies held in memory is limited to (queueCapacity * 2 + 3) * batchSize.
+ */
+public class CatalogImporter {
+
+    private static final Logger LOGGER = ConsoleLogger.attach();
+
+    /** Marks the end of the input in the queues. */
+    private static final List<Movie> END = Collections.emptyList();
+
+    /**
+     * Minimum trigram similarity of an imported name to an existing one to be taken as the same person,
+     * set with -Dpiratemovies.import.fuzzyThreshold. It is 0 by default, which disables the fuzzy matching,
+     * because two distinct people with similar names would be merged.
+     */
+    private static final double FUZZY_THRESHOLD = Double.parseDouble(System.getProperty("piratemovies.import.fuzzyThreshold", "0"));
+
+    private final Dao<Actor> actorDao;
+    private final Dao<Director> directorDao;
+    private final Dao<Movie> movieDao;
+    private final int batchSize;
+    private final int queueCapacity;
+
+    public CatalogImporter() {
+        this(new ActorDao(), new DirectorDao(), new MovieDao(), Dao.DEFAULT_CHUNK_SIZE, 4);
+    }
+
+    public CatalogImporter(Dao<Actor> actorDao, Dao<Director> directorDao, Dao<Movie> movieDao,
+                           int batchSize, int queueCapacity) {
+        if (batchSize < 1 || queueCapacity < 1) throw new IllegalArgumentException("batchSize and queueCapacity must be positive");
+        this.actorDao = actorDao;
+        this.directorDao = directorDao;
+        this.movieDao = movieDao;
+        this.batchSize = batchSize;
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Imports the given file, the delimiter is chosen by its extension.
+     * @param file CSV or TSV catalog dump
+     * @return the statistics of the finished import
+     * @throws IOException if the file cannot be read
+     */
+    public ImportStats importFile(Path file) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return importFrom(reader, CatalogParser.forFileName(file.getFileName().toString()));
+        }
+    }
+
+    /**
+     * Imports all lines of the reader. Blocks until every stage of the pipeline has finished.
+     */
+    public ImportStats importFrom(BufferedReader reader, CatalogParser parser) throws IOException {
+        ImportStats stats = new ImportStats();
+        BlockingQueue<List<Movie>> parsed = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<List<Movie>> resolved = new ArrayBlockingQueue<>(queueCapacity);
+        AtomicBoolean failed = new AtomicBoolean();
+
+        ExecutorService stages = Executors.newFixedThreadPool(3, runnable -> {
+            Thread thread = new Thread(runnable, "piratemovies-import");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            futures.add(stages.submit(stage(failed, () -> parse(reader, parser, parsed, stats, failed))));
+            futures.add(stages.submit(stage(failed, () -> resolvePeople(parsed, resolved, stats, failed))));
+            futures.add(stages.submit(stage(failed, () -> writeMovies(resolved, stats, failed))));
+
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException ex) {
+                    failed.set(true);
+                    if (ex.getCause() instanceof IOException) throw (IOException) ex.getCause();
+                    throw new IllegalStateException("Catalog import failed", ex.getCause());
+                }
+            }
+        } catch (InterruptedException ex) {
+            failed.set(true);
+            Thread.currentThread().interrupt();
+            throw new IOException("Catalog import interrupted", ex);
+        } finally {
+            stages.shutdownNow();
+            stats.finish();
+        }
+
+        LOGGER.info("Catalog import finished: " + stats);
+        return stats;
+    }
+
+    /**
+     * Stage 1: reads and parses the lines, malformed lines are logged and skipped.
+     */
+    private void parse(BufferedReader reader, CatalogParser parser, BlockingQueue<List<Movie>> out,
+                       ImportStats stats, AtomicBoolean failed) throws IOException, InterruptedException {
+        try {
+            List<Movie> batch = new ArrayList<>(batchSize);
+            String line;
+            long lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.trim().isEmpty() || (lineNumber == 1 && parser.isHeader(line))) continue;
+                try {
+                    batch.add(parser.parse(line));
+                    stats.rowParsed();
+                } catch (IllegalArgumentException ex) {
+                    stats.rowRejected();
+                    LOGGER.info("Skipping line " + lineNumber + " of the catalog: " + ex.getMessage());
+                }
+                if (batch.size() == batchSize) {
+                    if (!put(out, batch, failed)) return;
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+            if (!batch.isEmpty()) put(out, batch, failed);
+        } finally {
+            put(out, END, failed);
+        }
+    }
+
+    /**
+     * Stage 2: replaces every actor and director with one shared object per name,
+     * and inserts the ones which were not seen before in a batch, which sets their ids.
+     * The names which were not seen before are first looked up in the shared TrigramIndex, if it is loaded,
+     * so the variant spellings of an existing name are linked to the existing person. Every such match is logged,
+     * so the merges can be audited.
+     */
+    private void resolvePeople(BlockingQueue<List<Movie>> in, BlockingQueue<List<Movie>> out,
+                               ImportStats stats, AtomicBoolean failed) throws InterruptedException {
+        Map<String, Actor> actorsByName = new HashMap<>();
+        Map<String, Director> directorsByName = new HashMap<>();
+        TrigramIndex names = FUZZY_THRESHOLD > 0 ? TrigramIndex.getShared() : null;
+        try {
+            List<Movie> batch;
+            while ((batch = take(in, failed)) != END) {
+                List<Actor> newActors = new ArrayList<>();
+                List<Director> newDirectors = new ArrayList<>();
+
+                for (Movie movie : batch) {
+                    List<Actor> actors = new ArrayList<>(movie.getActors().size());
+                    for (Actor actor : movie.getActors()) {
+                        Actor known = actorsByName.get(key(actor.getName()));
+                        if (known == null) {
+                            SearchHit similar = names == null ? null : names.mostSimilar(actor.getName(), EntityType.ACTOR, FUZZY_THRESHOLD);
+                            if (similar != null) {
+                                known = new Actor(similar.getId(), similar.getText());
+                                logMatch(actor.getName(), similar);
+                                stats.peopleMatched(1);
+                            } else newActors.add(actor);
+                            actorsByName.put(key(actor.getName()), known == null ? actor : known);
+                        }
+                        actors.add(known == null ? actor : known);
+                    }
+                    movie.setActors(actors);
+
+                    List<Director> directors = new ArrayList<>(movie.getDirectors().size());
+                    for (Director director : movie.getDirectors()) {
+                        Director known = directorsByName.get(key(director.getName()));
+                        if (known == null) {
+                            SearchHit similar = names == null ? null : names.mostSimilar(director.getName(), EntityType.DIRECTOR, FUZZY_THRESHOLD);
+                            if (similar != null) {
+                                known = new Director(similar.getId(), similar.getText());
+                                logMatch(director.getName(), similar);
+                                stats.peopleMatched(1);
+                            } else newDirectors.add(director);
+                            directorsByName.put(key(director.getName()), known == null ? director : known);
+                        }
+                        directors.add(known == null ? director : known);
+                    }
+                    movie.setDirectors(directors);
+                }
+
+                int actorsAdded = countInserted(newActors.isEmpty() ? new int[0] : actorDao.insertAll(newActors, batchSize));
+                int directorsAdded = countInserted(newDirectors.isEmpty() ? new int[0] : directorDao.insertAll(newDirectors, batchSize));
+                stats.peopleAdded(actorsAdded, directorsAdded);
+
+                // People which could not be inserted are forgotten, so a later movie can try again
+                for (Actor actor : newActors) if (actor.getActorId() == 0) actorsByName.remove(key(actor.getName()));
+                for (Director director : newDirectors) if (director.getDirectorId() == 0) directorsByName.remove(key(director.getName()));
+
+                if (!put(out, batch, failed)) return;
+            }
+        } finally {
+            put(out, END, failed);
+        }
+    }
+
+    /**
+     * Stage 3: inserts the movies and their links, the people already have their ids at this point.
+     */
+    private void writeMovies(BlockingQueue<List<Movie>> in, ImportStats stats, AtomicBoolean failed)
+            throws InterruptedException {
+        List<Movie> batch;
+        while ((batch = take(in, failed)) != END) {
+            int inserted = countInserted(movieDao.insertAll(batch, batchSize));
+            stats.moviesWritten(inserted, batch.size() - inserted);
+            Log.fine(LOGGER, "Catalog import progress: ", stats);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Stage {
+        void run() throws Exception;
+    }
+
+    /**
+     * Wraps a stage, so its failure stops the other stages instead of leaving them blocked on a queue.
+     */
+    private static Callable<Void> stage(AtomicBoolean failed, Stage stage) {
+        return () -> {
+            try {
+                stage.run();
+                return null;
+            } catch (Exception | Error ex) {
+                failed.set(true);
+                throw ex;
+            }
+        };
+    }
+
+    private static void logMatch(String imported, SearchHit existing) {
+        LOGGER.info(() -> String.format(Locale.ROOT, "Fuzzy matched %s: %s \u2192 %s (%.2f)",
+                existing.getType().name().toLowerCase(Locale.ROOT), imported, existing.getText(), existing.getScore()));
+    }
+
+    private static int countInserted(int[] ids) {
+        int count = 0;
+        for (int id : ids) if (id != 0) count++;
+        return count;
+    }
+
+    private static String key(String name) {
+        return NameIndex.normalize(name);
+    }
+
+    /**
+     * Waits for free space in the queue, gives up if another stage has failed.
+     * @return false if the pipeline has failed
+     */
+    private static boolean put(BlockingQueue<List<Movie>> queue, List<Movie> batch, AtomicBoolean failed)
+            throws InterruptedException {
+        while (!failed.get()) {
+            if (queue.offer(batch, 100, TimeUnit.MILLISECONDS)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Waits for the next batch, returns END if another stage has failed.
+     */
+    private static List<Movie> take(BlockingQueue<List<Movie>> queue, AtomicBoolean failed) throws InterruptedException {
+        while (!failed.get()) {
+            List<Movie> batch = queue.poll(100, TimeUnit.MILLISECONDS);
+            if (batch != null) return batch;
+        }
+        return END;
+    }
+}
@@ -0,0 +1,118 @@
+package com.bakoalex.importer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import com.bakoalex.dto.Actor;
+import com.bakoalex.dto.Director;
+import com.bakoalex.dto.Movie;
+
+/**
+ * Parses the lines of a catalog dump into Movie objects.
+ *
+ * Every line holds one movie with the following columns:
+ * title, year, length, media_type, media_cover, media_origin, actors, directors
+ * The actors and directors columns contain the names separated by '|'.
+ * Fields can be enclosed in double quotes, a double quote inside a quoted field is written as "".
+ */
+public class CatalogParser {
+
+    public static final char CSV = ',';
+    public static final char TSV = '\t';
+
+    private static final int COLUMNS = 8;
+
+    private final char delimiter;
+
+    public CatalogParser(char delimiter) {
+        this.delimiter = delimiter;
+    }
+
+    /**
+     * Picks the delimiter by the file extension: tab for .tsv files, comma for everything else.
+     */
+    public static CatalogParser forFileName(String fileName) {
+        return new CatalogParser(fileName.toLowerCase(Locale.ROOT).endsWith(".tsv") ? TSV : CSV);
+    }
+
+    /**
+     * Returns true for the header line of the dump.
+     */
+    public boolean isHeader(String line) {
+        return line.toLowerCase(Locale.ROOT).startsWith("title" + delimiter);
+    }
+
+    /**
+     * Parses one line of the dump.
+     * @param line the line without the line terminator
+     * @return Movie object with its actors and directors, which do not have ids yet
+     * @throws IllegalArgumentException if the line is malformed
+     */
+    public Movie parse(String line) {
+        List<String> fields = split(line);
+        if (fields.size() != COLUMNS)
+            throw new IllegalArgumentException("Expected " + COLUMNS + " columns but found " + fields.size());
+
+        Movie movie = new Movie();
+        movie.setTitle(required(fields.get(0), "title"));
+        try {
+            movie.setYear(Integer.parseInt(fields.get(1).trim()));
+            movie.setLength(Integer.parseInt(fields.get(2).trim()));
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Invalid number: " + ex.getMessage());
+        }
+        movie.setMediaType(required(fields.get(3), "media_type").toUpperCase(Locale.ROOT));
+        movie.setMediaCover(fields.get(4).trim());
+        movie.setMediaOrigin(required(fields.get(5), "media_origin").toUpperCase(Locale.ROOT));
+
+        List<Actor> actors = new ArrayList<>();
+        for (String name : fields.get(6).split("\\|")) if (!name.trim().isEmpty()) actors.add(new Actor(name.trim()));
+        movie.setActors(actors);
+
+        List<Director> directors = new ArrayList<>();
+        for (String name : fields.get(7).split("\\|")) if (!name.trim().isEmpty()) directors.add(new Director(name.trim()));
+        movie.setDirectors(directors);
+
+        return movie;
+    }
+
+    private static String required(String value, String column) {
+        String trimmed = value.trim();
+        if (trimmed.isEmpty()) throw new IllegalArgumentException("Missing value for column " + column);
+        return trimmed;
+    }
+
+    /**
+     * Splits the line by the delimiter, taking care of the quoted fields.
+     */
+    List<String> split(String line) {
+        List<String> fields = new ArrayList<>(COLUMNS);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == delimiter) {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) throw new IllegalArgumentException("Unterminated quoted field");
+        fields.add(field.toString());
+        return fields;
+    }
+}
@@ -0,0 +1,98 @@
+package com.bakoalex.importer;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters of a running or finished catalog import.
+ */
+public class ImportStats {
+    private final long startNanos = System.nanoTime();
+    private volatile long endNanos;
+
+    private final AtomicLong parsedRows = new AtomicLong();
+    private final AtomicLong rejectedRows = new AtomicLong();
+    private final AtomicLong insertedMovies = new AtomicLong();
+    private final AtomicLong skippedMovies = new AtomicLong();
+    private final AtomicLong newActors = new AtomicLong();
+    private final AtomicLong newDirectors = new AtomicLong();
+    private final AtomicLong matchedPeople = new AtomicLong();
+
+    void rowParsed() {
+        parsedRows.incrementAndGet();
+    }
+
+    void rowRejected() {
+        rejectedRows.incrementAndGet();
+    }
+
+    void moviesWritten(long inserted, long skipped) {
+        insertedMovies.addAndGet(inserted);
+        skippedMovies.addAndGet(skipped);
+    }
+
+    void peopleAdded(long actors, long directors) {
+        newActors.addAndGet(actors);
+        newDirectors.addAndGet(directors);
+    }
+
+    void peopleMatched(long people) {
+        matchedPeople.addAndGet(people);
+    }
+
+    void finish() {
+        endNanos = System.nanoTime();
+    }
+
+    public long getParsedRows() {
+        return parsedRows.get();
+    }
+
+    public long getRejectedRows() {
+        return rejectedRows.get();
+    }
+
+    public long getInsertedMovies() {
+        return insertedMovies.get();
+    }
+
+    public long getSkippedMovies() {
+        return skippedMovies.get();
+    }
+
+    public long getNewActors() {
+        return newActors.get();
+    }
+
+    public long getNewDirectors() {
+        return newDirectors.get();
+    }
+
+    /**
+     * @return the imported actors and directors which were matched to a similar existing name instead of being inserted
+     */
+    public long getMatchedPeople() {
+        return matchedPeople.get();
+    }
+
+    public long getElapsedMillis() {
+        long end = endNanos == 0 ? System.nanoTime() : endNanos;
+        return TimeUnit.NANOSECONDS.toMillis(end - startNanos);
+    }
+
+    /**
+     * @return written (inserted or skipped) movies per second since the start of the import
+     */
+    public double getRowsPerSecond() {
+        long millis = Math.max(getElapsedMillis(), 1);
+        return (getInsertedMovies() + getSkippedMovies()) * 1000.0 / millis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ImportStats(parsed=%d, rejected=%d, inserted=%d, skipped=%d, newActors=%d, "
+            + "newDirectors=%d, matchedPeople=%d, elapsed=%dms, rows/sec=%.1f)", getParsedRows(), getRejectedRows(),
+            getInsertedMovies(), getSkippedMovies(), getNewActors(), getNewDirectors(), getMatchedPeople(),
+            getElapsedMillis(), getRowsPerSecond());
+    }
+}
@@ -0,0 +1,180 @@
+package com.bakoalex.logger;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.ErrorManager;
+import java.util.logging.Formatter;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+/**
+ * Log handler which hands the records to a single writer thread through a bounded ring buffer,
+ * so the logging threads never wait on console I/O, unless the buffer is full and the policy is BLOCK.
+ *
+ * The writer formats the records into a reused buffer and writes them in batches. Records of WARNING
+ * and above are never dropped, whatever the overflow policy. The source class and method of a record
+ * are resolved on the logging thread, since they are inferred from its stack.
+ */
+public class AsyncHandler extends Handler {
+
+    /**
+     * What to do with a record when the buffer is full.
+     */
+    public enum OverflowPolicy {
+        /** Wait until the writer makes room. */
+        BLOCK,
+        /** Drop the record. */
+        DROP,
+        /** Wait for every sampleRate-th record, drop the others. */
+        SAMPLE
+    }
+
+    private static final int BATCH_SIZE = 256;
+
+    private static final LogRecord END = new LogRecord(Level.OFF, "");
+
+    private final BlockingQueue<LogRecord> buffer;
+    private final OverflowPolicy policy;
+    private final int sampleRate;
+    private final Writer out;
+    private final Thread writer;
+
+    private final AtomicLong overflowCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    private volatile boolean closed;
+
+    // Only used by the writer thread
+    private final StringBuilder line = new StringBuilder(256);
+    private char[] chars = new char[256];
+
+    public AsyncHandler(OutputStream stream, int capacity, OverflowPolicy policy, int sampleRate) {
+        if (capacity < 1) throw new IllegalArgumentException("capacity must be at least 1");
+        if (sampleRate < 1) throw new IllegalArgumentException("sampleRate must be at least 1");
+
+        this.buffer = new ArrayBlockingQueue<>(capacity);
+        this.policy = policy;
+        this.sampleRate = sampleRate;
+        this.out = new BufferedWriter(new OutputStreamWriter(stream), 8192);
+        setFormatter(new ConsoleLogger.Format());
+
+        this.writer = new Thread(this::drain, "piratemovies-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        if (closed || !isLoggable(record)) return;
+
+        // Infers the caller now, on the logging thread
+        record.getSourceClassName();
+
+        try {
+            if (policy == OverflowPolicy.BLOCK || record.getLevel().intValue() >= Level.WARNING.intValue()) {
+                buffer.put(record);
+            } else if (!buffer.offer(record)) {
+                if (policy == OverflowPolicy.SAMPLE && overflowCount.incrementAndGet() % sampleRate == 0) buffer.put(record);
+                else droppedCount.incrementAndGet();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            droppedCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * @return the number of records dropped since the start, because the buffer was full
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    @Override
+    public void flush() {
+        synchronized (out) {
+            try {
+                out.flush();
+            } catch (IOException ex) {
+                reportError(null, ex, ErrorManager.FLUSH_FAILURE);
+            }
+        }
+    }
+
+    /**
+     * Writes the records which are already in the buffer, then stops the writer thread.
+     */
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        try {
+            buffer.put(END);
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    private void drain() {
+        List<LogRecord> batch = new ArrayList<>(BATCH_SIZE);
+        long reportedDrops = 0;
+        while (true) {
+            try {
+                batch.add(buffer.take());
+            } catch (InterruptedException ex) {
+                return;
+            }
+            buffer.drainTo(batch, BATCH_SIZE - 1);
+
+            synchronized (out) {
+                try {
+                    for (LogRecord record : batch) {
+                        if (record == END) {
+                            out.flush();
+                            return;
+                        }
+                        write(record);
+                    }
+
+                    long drops = droppedCount.get();
+                    if (drops != reportedDrops) {
+                        LogRecord dropRecord = new LogRecord(Level.WARNING, (drops - reportedDrops) + " log records dropped, the log buffer is full.");
+                        dropRecord.setSourceClassName(AsyncHandler.class.getName());
+                        dropRecord.setSourceMethodName("publish");
+                        write(dropRecord);
+                        reportedDrops = drops;
+                    }
+                    out.flush();
+
+                } catch (IOException | RuntimeException ex) {
+                    reportError(null, ex, ErrorManager.WRITE_FAILURE);
+                }
+            }
+            batch.clear();
+        }
+    }
+
+    private void write(LogRecord record) throws IOException {
+        line.setLength(0);
+        Formatter formatter = getFormatter();
+        if (formatter instanceof ConsoleLogger.Format) ((ConsoleLogger.Format) formatter).formatTo(record, line);
+        else line.append(formatter.format(record));
+
+        int length = line.length();
+        if (chars.length < length) chars = new char[Math.max(length, chars.length * 2)];
+        line.getChars(0, length, chars, 0);
+        out.write(chars, 0, length);
+    }
+}
@@ -1,8 +1,10 @@
 package com.bakoalex.logger;
 
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.logging.ConsoleHandler;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
 import java.util.logging.Formatter;
 import java.util.logging.Level;
 import java.util.logging.LogRecord;
@@ -24,38 +26,91 @@ public class ConsoleLogger {
     public static final String DB_UPDATE_OK = "Successfull update of object: ";
     public static final String SQL_EXC = "Exception during SQL operation: ";
 
+    private static final String LEVEL = System.getProperty("piratemovies.log.level", "INFO");
+    private static final int BUFFER_SIZE = Integer.getInteger("piratemovies.log.bufferSize", 8192);
+    private static final String OVERFLOW_POLICY = System.getProperty("piratemovies.log.overflow", "BLOCK");
+    private static final int SAMPLE_RATE = Integer.getInteger("piratemovies.log.sampleRate", 16);
+
     public static class Format extends Formatter {
+        private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("'['yyyy-MM-dd  HH:mm:ss'] '");
+
+        // The formatted timestamp of the last logged second, replaced as a whole so it is safe to share
+        private volatile CachedDate cachedDate = new CachedDate(Long.MIN_VALUE, "");
+
         public String format(LogRecord rec) {
-            StringBuffer buf = new StringBuffer(1000);
+            StringBuilder buf = new StringBuilder(256);
+            formatTo(rec, buf);
+            return buf.toString();
+        }
+
+        /**
+         * Appends the formatted record to buf, without creating intermediate strings.
+         */
+        public void formatTo(LogRecord rec, StringBuilder buf) {
             buf.append(calcDate(rec.getMillis()));
             buf.append(rec.getSourceClassName());
-            buf.append("::" + rec.getSourceMethodName());
-            buf.append(" | " + rec.getLevel() + " | ");
+            buf.append("::").append(rec.getSourceMethodName());
+            buf.append(" | ").append(rec.getLevel()).append(" | ");
             buf.append(formatMessage(rec));
             buf.append('\n');
-            return buf.toString();
         }
 
         private String calcDate(long millis) {
-            SimpleDateFormat dateFormat = new SimpleDateFormat("[yyyy-mm-dd  HH:mm:ss] ");
-            Date result = new Date(millis);
-            return dateFormat.format(result);
+            long second = millis / 1000;
+            CachedDate current = cachedDate;
+            if (current.second == second) return current.text;
+
+            String text = DATE_FORMAT.format(LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault()));
+            cachedDate = new CachedDate(second, text);
+            return text;
+        }
+
+        private static class CachedDate {
+            private final long second;
+            private final String text;
+
+            private CachedDate(long second, String text) {
+                this.second = second;
+                this.text = text;
+            }
         }
     }
 
-    public static Logger attach() {
+    /**
+     * Returns the application logger. Its level is read from the piratemovies.log.level system property
+     * (INFO by default), and can be changed at runtime with setLevel(). Its records are written to the
+     * console by an AsyncHandler, whose buffer size and overflow policy can be set with the
+     * piratemovies.log.bufferSize, piratemovies.log.overflow (BLOCK, DROP or SAMPLE) and
+     * piratemovies.log.sampleRate system properties.
+     */
+    public static synchronized Logger attach() {
         if (logger == null) {
             logger = Logger.getLogger(Logger.GLOBAL_LOGGER_NAME);
-            logger.setLevel(Level.FINEST);
+            logger.setLevel(parseLevel(LEVEL));
             logger.setUseParentHandlers(false);
 
-            ConsoleHandler handler = new ConsoleHandler();
-            Format format = new ConsoleLogger.Format();
-            handler.setFormatter(format);
+            AsyncHandler handler = new AsyncHandler(System.err, BUFFER_SIZE,
+                AsyncHandler.OverflowPolicy.valueOf(OVERFLOW_POLICY.toUpperCase(Locale.ROOT)), SAMPLE_RATE);
+            // Writes the buffered records before the JVM exits
+            Runtime.getRuntime().addShutdownHook(new Thread(handler::close, "piratemovies-log-shutdown"));
 
             logger.addHandler(handler);
         }
         return logger;
     }
 
-}
\ No newline at end of file
+    /**
+     * Changes the level of the application logger, e.g. to FINE while looking into a problem.
+     */
+    public static void setLevel(Level level) {
+        attach().setLevel(level);
+    }
+
+    private static Level parseLevel(String name) {
+        try {
+            return Level.parse(name.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException ex) {
+            return Level.INFO;
+        }
+    }
+}
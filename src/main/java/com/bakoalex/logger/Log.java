@@ -0,0 +1,71 @@
+package com.bakoalex.logger;
+
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+/**
+ * Level-guarded logging helpers.
+ *
+ * The message parts are only concatenated, and the suppliers only called, if the level is enabled,
+ * so a disabled log call does not allocate. The overloads have a fixed number of parts instead of varargs,
+ * to avoid the array, and take long parts as primitives, to avoid the boxing.
+ */
+public final class Log {
+
+    private Log() {}
+
+    public static void fine(Logger logger, String message, Object part) {
+        if (logger.isLoggable(Level.FINE)) log(logger, Level.FINE, message + part);
+    }
+
+    public static void fine(Logger logger, String message, long part) {
+        if (logger.isLoggable(Level.FINE)) log(logger, Level.FINE, message + part);
+    }
+
+    public static void fine(Logger logger, String message, long part1, String part2) {
+        if (logger.isLoggable(Level.FINE)) log(logger, Level.FINE, message + part1 + part2);
+    }
+
+    public static void fine(Logger logger, String message, Object part1, Object part2) {
+        if (logger.isLoggable(Level.FINE)) log(logger, Level.FINE, message + part1 + part2);
+    }
+
+    public static void fine(Logger logger, String message, Object part1, Object part2, Object part3) {
+        if (logger.isLoggable(Level.FINE)) log(logger, Level.FINE, message + part1 + part2 + part3);
+    }
+
+    public static void fine(Logger logger, String message, Object part1, String part2, long part3) {
+        if (logger.isLoggable(Level.FINE)) log(logger, Level.FINE, message + part1 + part2 + part3);
+    }
+
+    public static void fine(Logger logger, Supplier<String> message) {
+        if (logger.isLoggable(Level.FINE)) log(logger, Level.FINE, message.get());
+    }
+
+    public static void finest(Logger logger, String message, Object part) {
+        if (logger.isLoggable(Level.FINEST)) log(logger, Level.FINEST, message + part);
+    }
+
+    public static void finest(Logger logger, Supplier<String> message) {
+        if (logger.isLoggable(Level.FINEST)) log(logger, Level.FINEST, message.get());
+    }
+
+    /**
+     * Logs the message with the class and method which called the helper as its source.
+     */
+    private static void log(Logger logger, Level level, String message) {
+        LogRecord record = new LogRecord(level, message);
+        record.setLoggerName(logger.getName());
+
+        // The helper frames would be found as the caller by the LogRecord itself
+        for (StackTraceElement frame : new Throwable().getStackTrace()) {
+            if (frame.getClassName().equals(Log.class.getName())) continue;
+            record.setSourceClassName(frame.getClassName());
+            record.setSourceMethodName(frame.getMethodName());
+            break;
+        }
+        logger.log(record);
+    }
+}
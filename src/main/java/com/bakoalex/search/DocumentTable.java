@@ -0,0 +1,105 @@
+package com.bakoalex.search;
+
+import java.util.Arrays;
+
+/**
+ * The records of an index, by document number, in parallel primitive arrays.
+ *
+ * Document numbers are small ints used in the posting lists, the slots of the removed documents are reused.
+ * A per-type array maps the record ids (which are dense auto-increment ids) to their documents.
+ * Not thread-safe, the indexes guard it with their locks.
+ */
+final class DocumentTable {
+
+    private int[] ids = new int[1024];
+    private byte[] types = new byte[1024];
+    private String[] texts = new String[1024];
+    private int[] lengths = new int[1024];
+    private int count;
+    private int live;
+    private final IntPostings free = new IntPostings();
+
+    // The document number + 1 by the record id, one array per EntityType
+    private final int[][] byEntity = new int[EntityType.values().length][16];
+
+    /**
+     * @return the document of the record, or -1 if it is not in the table
+     */
+    int find(EntityType type, int id) {
+        int[] docs = byEntity[type.ordinal()];
+        return id <= 0 || id >= docs.length ? -1 : docs[id] - 1;
+    }
+
+    /**
+     * Adds a record which is not in the table yet.
+     * @param length the number of tokens or trigrams of the text, used for the scoring
+     * @return the document number of the record
+     */
+    int add(EntityType type, int id, String text, int length) {
+        int doc;
+        if (free.size() > 0) {
+            doc = free.get(free.size() - 1);
+            free.remove(doc);
+        } else {
+            if (count == ids.length) {
+                int capacity = count * 2;
+                ids = Arrays.copyOf(ids, capacity);
+                types = Arrays.copyOf(types, capacity);
+                texts = Arrays.copyOf(texts, capacity);
+                lengths = Arrays.copyOf(lengths, capacity);
+            }
+            doc = count++;
+        }
+        ids[doc] = id;
+        types[doc] = (byte) type.ordinal();
+        texts[doc] = text;
+        lengths[doc] = length;
+
+        int[] docs = byEntity[type.ordinal()];
+        if (id >= docs.length) docs = byEntity[type.ordinal()] = Arrays.copyOf(docs, Math.max(id + 1, docs.length * 2));
+        docs[id] = doc + 1;
+        live++;
+        return doc;
+    }
+
+    void remove(int doc) {
+        byEntity[types[doc]][ids[doc]] = 0;
+        texts[doc] = null;
+        free.add(doc);
+        live--;
+    }
+
+    /**
+     * @return the number of records in the table
+     */
+    int size() {
+        return live;
+    }
+
+    /**
+     * @return the highest document number + 1, the size of the arrays indexed by document number
+     */
+    int capacity() {
+        return count;
+    }
+
+    int id(int doc) {
+        return ids[doc];
+    }
+
+    boolean isType(int doc, EntityType type) {
+        return types[doc] == type.ordinal();
+    }
+
+    String text(int doc) {
+        return texts[doc];
+    }
+
+    int length(int doc) {
+        return lengths[doc];
+    }
+
+    SearchHit hit(int doc, double score) {
+        return new SearchHit(EntityType.values()[types[doc]], ids[doc], texts[doc], score);
+    }
+}
@@ -0,0 +1,10 @@
+package com.bakoalex.search;
+
+/**
+ * The kinds of catalog records which can be searched.
+ */
+public enum EntityType {
+    MOVIE,
+    ACTOR,
+    DIRECTOR
+}
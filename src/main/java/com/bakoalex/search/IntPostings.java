@@ -0,0 +1,62 @@
+package com.bakoalex.search;
+
+import java.util.Arrays;
+
+/**
+ * Sorted set of document numbers in a growable int array, the posting list of one term.
+ */
+final class IntPostings {
+
+    private int[] docs = new int[2];
+    private int size;
+
+    int size() {
+        return size;
+    }
+
+    int get(int index) {
+        return docs[index];
+    }
+
+    boolean contains(int doc) {
+        return Arrays.binarySearch(docs, 0, size, doc) >= 0;
+    }
+
+    /**
+     * Finds the first position at or after from with a document not lower than doc, with an exponential search,
+     * so a run of ascending lookups walks the list about once, like a merge.
+     * @return the position, size() if every document from there is lower
+     */
+    int advance(int from, int doc) {
+        if (from >= size || docs[from] >= doc) return from;
+        int low = from;
+        int step = 1;
+        while (low + step < size && docs[low + step] < doc) {
+            low += step;
+            step <<= 1;
+        }
+        int index = Arrays.binarySearch(docs, low + 1, Math.min(low + step, size - 1) + 1, doc);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    /**
+     * Adds the document, appending is the fast path as new documents get the highest numbers.
+     */
+    void add(int doc) {
+        int index = size == 0 || docs[size - 1] < doc ? size : Arrays.binarySearch(docs, 0, size, doc);
+        if (index >= 0 && index < size) return;
+        if (index < 0) index = -index - 1;
+
+        if (size == docs.length) docs = Arrays.copyOf(docs, size + (size >> 1) + 1);
+        System.arraycopy(docs, index, docs, index + 1, size - index);
+        docs[index] = doc;
+        size++;
+    }
+
+    void remove(int doc) {
+        int index = Arrays.binarySearch(docs, 0, size, doc);
+        if (index < 0) return;
+        System.arraycopy(docs, index + 1, docs, index, size - index - 1);
+        size--;
+    }
+}
@@ -0,0 +1,49 @@
+package com.bakoalex.search;
+
+import java.util.Comparator;
+
+/**
+ * One result of a SearchIndex query: the record, its indexed text and its score.
+ */
+public final class SearchHit {
+
+    /** The worst hit first, the order of the top-k heaps. Equal scores are ordered by the text. */
+    static final Comparator<SearchHit> WORST_FIRST = Comparator.comparingDouble(SearchHit::getScore)
+        .thenComparing(SearchHit::getText, Comparator.reverseOrder());
+
+    private final EntityType type;
+    private final int id;
+    private final String text;
+    private final double score;
+
+    SearchHit(EntityType type, int id, String text, double score) {
+        this.type = type;
+        this.id = id;
+        this.text = text;
+        this.score = score;
+    }
+
+    public EntityType getType() {
+        return type;
+    }
+
+    /** The movie_id, actor_id or director_id of the record. */
+    public int getId() {
+        return id;
+    }
+
+    /** The title of the movie, or the name of the actor or director. */
+    public String getText() {
+        return text;
+    }
+
+    /** Higher is better, only comparable between the hits of the same query. */
+    public double getScore() {
+        return score;
+    }
+
+    @Override
+    public String toString() {
+        return type + "#" + id + " " + text + " (" + String.format("%.3f", score) + ")";
+    }
+}
@@ -0,0 +1,313 @@
+package com.bakoalex.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+import com.bakoalex.dao.ActorDao;
+import com.bakoalex.dao.DirectorDao;
+import com.bakoalex.dao.MovieDao;
+import com.bakoalex.dto.Actor;
+import com.bakoalex.dto.Director;
+import com.bakoalex.dto.Movie;
+import com.bakoalex.logger.ConsoleLogger;
+import com.bakoalex.logger.Log;
+
+/**
+ * In-memory inverted index of the movie titles and the actor and director names.
+ *
+ * Every token of a query has to match a token of the record, either exactly or as its prefix, so
+ * "star wa" finds "Star Wars". The hits are ranked by the sum of the matched tokens' weights: rare tokens
+ * weigh more (idf), a prefix match weighs half of an exact one, and the sum is divided by the square root
+ * of the record's token count, so shorter records with the same matches come first.
+ *
+ * The posting lists are sorted int arrays of document numbers. A query walks the postings of its most
+ * selective token only, and checks the other tokens by advancing a cursor in their postings, like a merge,
+ * so its cost depends on how selective the query is, not on the size of the catalog.
+ *
+ * The shared index is built with loadShared(), the DAOs keep it up to date after their writes.
+ */
+public final class SearchIndex {
+
+    private static final Logger LOGGER = ConsoleLogger.attach();
+
+    /** Weight of a query token which is only a prefix of the record's token, an exact match weighs 1. */
+    private static final double PREFIX_WEIGHT = 0.5;
+
+    /** Shorter query tokens only match whole tokens, so "a" does not expand to every token starting with it. */
+    private static final int MIN_PREFIX_LENGTH = 2;
+
+    private static volatile SearchIndex shared;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final TreeMap<String, IntPostings> terms = new TreeMap<>();
+
+    private final DocumentTable docs = new DocumentTable();
+
+    /**
+     * @return the index kept up to date by the DAOs, or null if loadShared() was not called
+     */
+    public static SearchIndex getShared() {
+        return shared;
+    }
+
+    /**
+     * Builds a new index from the catalog, and makes it the shared index.
+     * It becomes shared before it is filled, so the writes of the DAOs during the load are not lost,
+     * but the queries during the load only see a part of the catalog.
+     */
+    public static SearchIndex loadShared() {
+        SearchIndex index = new SearchIndex();
+        shared = index;
+        index.load();
+        return index;
+    }
+
+    /**
+     * Indexes the record in the shared index, if there is one. Called by the DAOs after they committed a write.
+     */
+    public static void sharedPut(EntityType type, int id, String text) {
+        SearchIndex index = shared;
+        if (index != null) index.put(type, id, text);
+    }
+
+    /**
+     * Removes the record from the shared index, if there is one.
+     */
+    public static void sharedRemove(EntityType type, int id) {
+        SearchIndex index = shared;
+        if (index != null) index.remove(type, id);
+    }
+
+    /**
+     * Adds every movie, actor and director to the index, streaming them from the database.
+     */
+    public void load() {
+        long start = System.nanoTime();
+        try (Stream<Movie> movies = new MovieDao().streamTitles()) {
+            movies.forEach(movie -> put(EntityType.MOVIE, movie.getMovieId(), movie.getTitle()));
+        }
+        try (Stream<Actor> actors = new ActorDao().stream()) {
+            actors.forEach(actor -> put(EntityType.ACTOR, actor.getActorId(), actor.getName()));
+        }
+        try (Stream<Director> directors = new DirectorDao().stream()) {
+            directors.forEach(director -> put(EntityType.DIRECTOR, director.getDirectorId(), director.getName()));
+        }
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        Log.fine(LOGGER, () -> "Search index loaded with " + size() + " records in " + millis + "ms.");
+    }
+
+    /**
+     * Adds the record to the index, or replaces its text if it is already indexed.
+     */
+    public void put(EntityType type, int id, String text) {
+        if (id <= 0 || text == null) return;
+        List<String> tokens = distinctTokens(text);
+
+        lock.writeLock().lock();
+        try {
+            removeLocked(type, id);
+            int doc = docs.add(type, id, text, Math.max(tokens.size(), 1));
+            for (String token : tokens) terms.computeIfAbsent(token, key -> new IntPostings()).add(doc);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(EntityType type, int id) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(type, id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return the number of indexed records
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return docs.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<SearchHit> search(String query, int limit) {
+        return search(query, null, limit);
+    }
+
+    /**
+     * Returns the best hits of the query, the best first.
+     * @param type the kind of records to search, or null for all of them
+     * @param limit the maximum number of hits
+     */
+    public List<SearchHit> search(String query, EntityType type, int limit) {
+        List<String> tokens = distinctTokens(query);
+        if (tokens.isEmpty() || limit < 1) return Collections.emptyList();
+
+        lock.readLock().lock();
+        try {
+            TokenMatch[] matches = new TokenMatch[tokens.size()];
+            for (int i = 0; i < matches.length; i++) {
+                matches[i] = match(tokens.get(i));
+                if (matches[i].postings.isEmpty()) return Collections.emptyList();
+            }
+            Arrays.sort(matches, Comparator.comparingLong(match -> match.postingCount));
+
+            PriorityQueue<SearchHit> best = new PriorityQueue<>(limit + 1, SearchHit.WORST_FIRST);
+            TokenMatch driver = matches[0];
+            for (int list = 0; list < driver.postings.size(); list++) {
+                IntPostings postings = driver.postings.get(list);
+                for (TokenMatch match : matches) match.resetCursors();
+                for (int i = 0; i < postings.size(); i++) {
+                    int doc = postings.get(i);
+                    if (type != null && !docs.isType(doc, type)) continue;
+                    if (driver.matchedBefore(doc, list)) continue;
+
+                    double score = score(doc, matches);
+                    if (score > 0) offer(best, doc, score, limit);
+                }
+            }
+
+            List<SearchHit> hits = new ArrayList<>(best);
+            hits.sort(SearchHit.WORST_FIRST.reversed());
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the score of the document, or 0 if one of the query tokens does not match it
+     */
+    private double score(int doc, TokenMatch[] matches) {
+        double score = 0;
+        for (TokenMatch match : matches) {
+            double weight = match.weightOf(doc);
+            if (weight == 0) return 0;
+            score += weight;
+        }
+        return score / Math.sqrt(docs.length(doc));
+    }
+
+    private void offer(PriorityQueue<SearchHit> best, int doc, double score, int limit) {
+        if (best.size() == limit) {
+            SearchHit worst = best.peek();
+            if (score < worst.getScore() || (score == worst.getScore() && docs.text(doc).compareTo(worst.getText()) >= 0)) return;
+            best.poll();
+        }
+        best.add(docs.hit(doc, score));
+    }
+
+    /**
+     * Collects the posting lists of the indexed tokens matching the query token, the exact match first.
+     */
+    private TokenMatch match(String token) {
+        TokenMatch match = new TokenMatch();
+        IntPostings exact = terms.get(token);
+        if (exact != null) match.add(exact, idf(exact));
+
+        if (token.length() >= MIN_PREFIX_LENGTH) {
+            for (IntPostings postings : terms.subMap(token, false, token + Character.MAX_VALUE, false).values()) {
+                match.add(postings, PREFIX_WEIGHT * idf(postings));
+            }
+        }
+        match.sortByWeight();
+        return match;
+    }
+
+    private double idf(IntPostings postings) {
+        return Math.log(1 + (double) docs.size() / postings.size());
+    }
+
+    private void removeLocked(EntityType type, int id) {
+        int doc = docs.find(type, id);
+        if (doc < 0) return;
+
+        for (String token : distinctTokens(docs.text(doc))) {
+            IntPostings postings = terms.get(token);
+            if (postings == null) continue;
+            postings.remove(doc);
+            if (postings.size() == 0) terms.remove(token);
+        }
+        docs.remove(doc);
+    }
+
+    private static List<String> distinctTokens(String text) {
+        return new ArrayList<>(new LinkedHashSet<>(Tokenizer.tokenize(text)));
+    }
+
+    /**
+     * The posting lists matched by one query token, with their weights, the highest weight first.
+     */
+    private static final class TokenMatch {
+        private final List<IntPostings> postings = new ArrayList<>();
+        private double[] weights = new double[4];
+        private int[] cursors;
+        private long postingCount;
+
+        private void add(IntPostings list, double weight) {
+            if (postings.size() == weights.length) weights = Arrays.copyOf(weights, weights.length * 2);
+            weights[postings.size()] = weight;
+            postings.add(list);
+            postingCount += list.size();
+        }
+
+        private void sortByWeight() {
+            Integer[] order = new Integer[postings.size()];
+            for (int i = 0; i < order.length; i++) order[i] = i;
+            Arrays.sort(order, (a, b) -> Double.compare(weights[b], weights[a]));
+
+            List<IntPostings> sortedPostings = new ArrayList<>(order.length);
+            double[] sortedWeights = new double[order.length];
+            for (int i = 0; i < order.length; i++) {
+                sortedPostings.add(postings.get(order[i]));
+                sortedWeights[i] = weights[order[i]];
+            }
+            postings.clear();
+            postings.addAll(sortedPostings);
+            weights = sortedWeights;
+            cursors = new int[order.length];
+        }
+
+        /**
+         * Starts the lookups from the beginning of the lists again, they have to be in ascending document order in between.
+         */
+        private void resetCursors() {
+            Arrays.fill(cursors, 0);
+        }
+
+        private boolean contains(int list, int doc) {
+            IntPostings postingList = postings.get(list);
+            int cursor = cursors[list] = postingList.advance(cursors[list], doc);
+            return cursor < postingList.size() && postingList.get(cursor) == doc;
+        }
+
+        /**
+         * @return the weight of the best posting list containing the document, or 0 if none contains it
+         */
+        private double weightOf(int doc) {
+            for (int i = 0; i < postings.size(); i++) if (contains(i, doc)) return weights[i];
+            return 0;
+        }
+
+        /**
+         * @return true if the document is in one of the lists before the given one, i.e. it was already scored
+         */
+        private boolean matchedBefore(int doc, int list) {
+            for (int i = 0; i < list; i++) if (contains(i, doc)) return true;
+            return false;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.bakoalex.search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits text into search tokens: runs of letters and digits, lower-cased and with the accents removed,
+ * so "AMELIE" and "Amelie" written with an accented e are the same token.
+ */
+final class Tokenizer {
+
+    private Tokenizer() {}
+
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) return tokens;
+
+        String decomposed = isAscii(text) ? text : Normalizer.normalize(text, Normalizer.Form.NFD);
+        StringBuilder token = new StringBuilder();
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) continue;
+            if (Character.isLetterOrDigit(c)) {
+                appendFolded(token, Character.toLowerCase(c));
+            } else if (token.length() > 0) {
+                tokens.add(token.toString());
+                token.setLength(0);
+            }
+        }
+        if (token.length() > 0) tokens.add(token.toString());
+        return tokens;
+    }
+
+    /**
+     * Letters which have no decomposed form, but are usually typed without their stroke or ligature.
+     */
+    private static void appendFolded(StringBuilder token, char c) {
+        switch (c) {
+            case '\u00df': token.append("ss"); break;
+            case '\u00e6': token.append("ae"); break;
+            case '\u0153': token.append("oe"); break;
+            case '\u00f8': token.append('o'); break;
+            case '\u0142': token.append('l'); break;
+            case '\u0111': token.append('d'); break;
+            default: token.append(c);
+        }
+    }
+
+    private static boolean isAscii(String text) {
+        for (int i = 0; i < text.length(); i++) if (text.charAt(i) >= 0x80) return false;
+        return true;
+    }
+}
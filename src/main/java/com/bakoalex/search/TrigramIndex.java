@@ -0,0 +1,346 @@
+package com.bakoalex.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+import com.bakoalex.dao.ActorDao;
+import com.bakoalex.dao.DirectorDao;
+import com.bakoalex.dto.Actor;
+import com.bakoalex.dto.Director;
+import com.bakoalex.logger.ConsoleLogger;
+import com.bakoalex.logger.Log;
+
+/**
+ * Trigram index of the actor and director names, for finding the names similar to a given one,
+ * e.g. the variant spellings and typos of an imported cast list.
+ *
+ * A name is split into tokens like in the SearchIndex, and every token is padded with two spaces before
+ * and one after, so "tom" has the trigrams "  t", " to", "tom" and "om ". The similarity of two names is
+ * the Jaccard index of their trigram sets: the shared trigrams divided by all distinct trigrams of the two.
+ *
+ * A trigram is packed into a long (three 16 bit chars), and mapped to its posting list, a sorted int array
+ * of document numbers, by an open-addressing table. A query only collects candidates from its rarest trigrams:
+ * a name with a similarity of at least t has to share ceil(t * n) of the query's n trigrams, so it contains
+ * one of the n - ceil(t * n) + 1 rarest ones. The other trigrams are only checked for these candidates.
+ */
+public final class TrigramIndex {
+
+    private static final Logger LOGGER = ConsoleLogger.attach();
+
+    private static volatile TrigramIndex shared;
+
+    /** Per-thread counters of the shared trigrams, indexed by document number. */
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final DocumentTable docs = new DocumentTable();
+
+    // Open-addressing map from the packed trigram to its posting list, slots with a null list are empty
+    private long[] keys = new long[1024];
+    private IntPostings[] lists = new IntPostings[1024];
+    private int trigramCount;
+
+    /**
+     * @return the index kept up to date by the DAOs, or null if loadShared() was not called
+     */
+    public static TrigramIndex getShared() {
+        return shared;
+    }
+
+    /**
+     * Builds a new index of the actors and directors, and makes it the shared index.
+     * Like SearchIndex.loadShared(), it becomes shared before it is filled.
+     */
+    public static TrigramIndex loadShared() {
+        TrigramIndex index = new TrigramIndex();
+        shared = index;
+        index.load();
+        return index;
+    }
+
+    /**
+     * Indexes the name in the shared index, if there is one. Called by the DAOs after they committed a write.
+     */
+    public static void sharedPut(EntityType type, int id, String name) {
+        TrigramIndex index = shared;
+        if (index != null) index.put(type, id, name);
+    }
+
+    /**
+     * Removes the name from the shared index, if there is one.
+     */
+    public static void sharedRemove(EntityType type, int id) {
+        TrigramIndex index = shared;
+        if (index != null) index.remove(type, id);
+    }
+
+    /**
+     * Adds every actor and director to the index, streaming them from the database.
+     */
+    public void load() {
+        long start = System.nanoTime();
+        try (Stream<Actor> actors = new ActorDao().stream()) {
+            actors.forEach(actor -> put(EntityType.ACTOR, actor.getActorId(), actor.getName()));
+        }
+        try (Stream<Director> directors = new DirectorDao().stream()) {
+            directors.forEach(director -> put(EntityType.DIRECTOR, director.getDirectorId(), director.getName()));
+        }
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        Log.fine(LOGGER, () -> "Trigram index loaded with " + size() + " names in " + millis + "ms.");
+    }
+
+    /**
+     * Adds the name to the index, or replaces it if the record is already indexed.
+     */
+    public void put(EntityType type, int id, String name) {
+        if (id <= 0 || name == null) return;
+        long[] trigrams = trigrams(name);
+        if (trigrams.length == 0) return;
+
+        lock.writeLock().lock();
+        try {
+            removeLocked(type, id);
+            int doc = docs.add(type, id, name, trigrams.length);
+            for (long trigram : trigrams) postingsFor(trigram).add(doc);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(EntityType type, int id) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(type, id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return the number of indexed names
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return docs.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the Jaccard similarity of the trigram sets of the two names, from 0 to 1
+     */
+    public static double similarity(String name1, String name2) {
+        long[] trigrams1 = trigrams(name1);
+        long[] trigrams2 = trigrams(name2);
+        if (trigrams1.length == 0 || trigrams2.length == 0) return 0;
+
+        int shared = 0;
+        for (int i = 0, j = 0; i < trigrams1.length && j < trigrams2.length;) {
+            if (trigrams1[i] == trigrams2[j]) {
+                shared++;
+                i++;
+                j++;
+            } else if (trigrams1[i] < trigrams2[j]) i++;
+            else j++;
+        }
+        return (double) shared / (trigrams1.length + trigrams2.length - shared);
+    }
+
+    /**
+     * @return the most similar name of the given type, or null if none reaches minSimilarity
+     */
+    public SearchHit mostSimilar(String name, EntityType type, double minSimilarity) {
+        List<SearchHit> hits = similar(name, type, minSimilarity, 1);
+        return hits.isEmpty() ? null : hits.get(0);
+    }
+
+    /**
+     * Returns the names with a similarity of at least minSimilarity, the most similar first.
+     * @param type the kind of records to search, or null for all of them
+     * @param minSimilarity from 0 (exclusive) to 1
+     * @param limit the maximum number of hits
+     */
+    public List<SearchHit> similar(String name, EntityType type, double minSimilarity, int limit) {
+        if (minSimilarity <= 0 || minSimilarity > 1) throw new IllegalArgumentException("minSimilarity must be in (0, 1]");
+        long[] query = name == null ? new long[0] : trigrams(name);
+        if (query.length == 0 || limit < 1) return Collections.emptyList();
+
+        // The candidates have to share at least minShared trigrams with the query, and their trigram count
+        // can only be in [t * n, n / t], otherwise the similarity is below t even if they share all they can
+        int minShared = (int) Math.ceil(minSimilarity * query.length - 1e-9);
+        int minLength = minShared;
+        int maxLength = (int) Math.floor(query.length / minSimilarity + 1e-9);
+        lock.readLock().lock();
+        try {
+            IntPostings[] postings = new IntPostings[query.length];
+            for (int i = 0; i < query.length; i++) postings[i] = lists[slotOf(query[i])];
+            Arrays.sort(postings, (a, b) -> Integer.compare(a == null ? 0 : a.size(), b == null ? 0 : b.size()));
+
+            Scratch scratch = SCRATCH.get();
+            scratch.ensureCapacity(docs.capacity());
+            int[] counts = scratch.counts;
+            int candidates = query.length - minShared + 1;
+            for (int i = 0; i < candidates; i++) {
+                if (postings[i] == null) continue;
+                for (int j = 0; j < postings[i].size(); j++) {
+                    int doc = postings[i].get(j);
+                    if (counts[doc]++ != 0) continue;
+
+                    // The documents which cannot match stay touched, so their counter is cleared at the end
+                    int length = docs.length(doc);
+                    if (length < minLength || length > maxLength || (type != null && !docs.isType(doc, type))) counts[doc] = Integer.MIN_VALUE;
+                    scratch.touch(doc);
+                }
+            }
+            scratch.prune(minShared - (query.length - candidates));
+
+            // The other trigrams are only counted for the candidates which can still reach minShared
+            for (int i = candidates; i < postings.length && scratch.touched > 0; i++) {
+                IntPostings list = postings[i];
+                if (list != null && scratch.touched * 16 < list.size()) {
+                    for (int j = 0; j < scratch.touched; j++) if (list.contains(scratch.docs[j])) counts[scratch.docs[j]]++;
+                } else if (list != null) {
+                    for (int j = 0; j < list.size(); j++) if (counts[list.get(j)] > 0) counts[list.get(j)]++;
+                }
+                scratch.prune(minShared - (query.length - i - 1));
+            }
+
+            PriorityQueue<SearchHit> best = new PriorityQueue<>(limit + 1, SearchHit.WORST_FIRST);
+            for (int j = 0; j < scratch.touched; j++) {
+                int doc = scratch.docs[j];
+                int shared = counts[doc];
+                counts[doc] = 0;
+                if (shared < minShared) continue;
+
+                double similarity = (double) shared / (query.length + docs.length(doc) - shared);
+                if (similarity < minSimilarity) continue;
+                if (best.size() == limit) {
+                    if (similarity <= best.peek().getScore()) continue;
+                    best.poll();
+                }
+                best.add(docs.hit(doc, similarity));
+            }
+            scratch.touched = 0;
+
+            List<SearchHit> hits = new ArrayList<>(best);
+            hits.sort(SearchHit.WORST_FIRST.reversed());
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the distinct trigrams of the name, packed into longs and sorted
+     */
+    static long[] trigrams(String name) {
+        List<String> tokens = Tokenizer.tokenize(name);
+        int total = 0;
+        for (String token : tokens) total += token.length() + 1;
+
+        long[] trigrams = new long[total];
+        int count = 0;
+        for (String token : tokens) {
+            char c1 = ' ';
+            char c2 = ' ';
+            for (int i = 0; i <= token.length(); i++) {
+                char c3 = i < token.length() ? token.charAt(i) : ' ';
+                trigrams[count++] = ((long) c1 << 32) | ((long) c2 << 16) | c3;
+                c1 = c2;
+                c2 = c3;
+            }
+        }
+
+        Arrays.sort(trigrams, 0, count);
+        int distinct = 0;
+        for (int i = 0; i < count; i++) if (distinct == 0 || trigrams[distinct - 1] != trigrams[i]) trigrams[distinct++] = trigrams[i];
+        return Arrays.copyOf(trigrams, distinct);
+    }
+
+    private void removeLocked(EntityType type, int id) {
+        int doc = docs.find(type, id);
+        if (doc < 0) return;
+
+        for (long trigram : trigrams(docs.text(doc))) {
+            IntPostings postings = lists[slotOf(trigram)];
+            if (postings != null) postings.remove(doc);
+        }
+        docs.remove(doc);
+    }
+
+    /**
+     * @return the slot of the trigram, or the empty slot where it would be inserted
+     */
+    private int slotOf(long trigram) {
+        int mask = keys.length - 1;
+        int slot = Long.hashCode(trigram * 0x9E3779B97F4A7C15L) & mask;
+        while (lists[slot] != null && keys[slot] != trigram) slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    private IntPostings postingsFor(long trigram) {
+        int slot = slotOf(trigram);
+        if (lists[slot] != null) return lists[slot];
+
+        // Keep the table at most half full
+        if (++trigramCount * 2 > keys.length) {
+            grow();
+            slot = slotOf(trigram);
+        }
+        keys[slot] = trigram;
+        return lists[slot] = new IntPostings();
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        IntPostings[] oldLists = lists;
+        keys = new long[oldKeys.length * 2];
+        lists = new IntPostings[oldLists.length * 2];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldLists[i] == null) continue;
+            int slot = slotOf(oldKeys[i]);
+            keys[slot] = oldKeys[i];
+            lists[slot] = oldLists[i];
+        }
+    }
+
+    /**
+     * The shared trigram counters of one query, and the documents with a non-zero counter.
+     */
+    private static final class Scratch {
+        private int[] counts = new int[0];
+        private int[] docs = new int[256];
+        private int touched;
+
+        private void ensureCapacity(int capacity) {
+            if (counts.length < capacity) counts = new int[Math.max(capacity, counts.length * 2)];
+        }
+
+        private void touch(int doc) {
+            if (touched == docs.length) docs = Arrays.copyOf(docs, touched * 2);
+            docs[touched++] = doc;
+        }
+
+        /**
+         * Drops the candidates with fewer than minCount shared trigrams, and clears their counters.
+         */
+        private void prune(int minCount) {
+            if (minCount <= 1) return;
+            int kept = 0;
+            for (int j = 0; j < touched; j++) {
+                int doc = docs[j];
+                if (counts[doc] >= minCount) docs[kept++] = doc;
+                else counts[doc] = 0;
+            }
+            touched = kept;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.bakoalex.service;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.logging.Logger;
+
+import com.bakoalex.dao.RentCounter;
+import com.bakoalex.dao.RentDao;
+import com.bakoalex.database.ConnectionFactory;
+import com.bakoalex.dto.Rent;
+import com.bakoalex.logger.ConsoleLogger;
+import com.bakoalex.logger.Log;
+
+/**
+ * Check-out and check-in of movies.
+ *
+ * A check-out flips movies.is_rented with a single conditional UPDATE (... WHERE is_rented=0),
+ * and inserts the rents row in the same transaction. The row lock of the UPDATE makes sure that
+ * of any number of concurrent check-outs of the same movie only one succeeds, without reading
+ * the movie first. The number of rents is counted by the RentCounter, which writes it to the
+ * movies table in the background, so check-outs of a popular movie do not wait on its row for that.
+ */
+public class RentalService {
+
+    private static final Logger LOGGER = ConsoleLogger.attach();
+
+    private static final String CHECK_OUT_STRING =
+        "UPDATE movies SET movies.is_rented=1 WHERE movies.movie_id=? AND movies.is_rented=0;";
+
+    private static final String CHECK_IN_STRING =
+        "UPDATE movies SET movies.is_rented=0 WHERE movies.movie_id=? AND movies.is_rented=1;";
+
+    private final RentDao rentDao;
+    private final RentCounter rentCounter;
+    private final Clock clock;
+
+    public RentalService() {
+        this(new RentDao(), RentCounter.shared(), Clock.systemDefaultZone());
+    }
+
+    public RentalService(RentDao rentDao, RentCounter rentCounter, Clock clock) {
+        this.rentDao = rentDao;
+        this.rentCounter = rentCounter;
+        this.clock = clock;
+    }
+
+    /**
+     * Rents the movie to the renter.
+     * @return true if the movie was checked out, false if it is already rented, does not exist, or in case of an error
+     */
+    public boolean checkOut(int movieId, int renterId) {
+        try (Connection conn = ConnectionFactory.getConnection()) {
+            conn.setAutoCommit(false);
+
+            // Only one of the concurrent check-outs can flip is_rented from 0 to 1
+            if (updateMovie(conn, CHECK_OUT_STRING, movieId) != 1) {
+                Log.fine(LOGGER, "Movie is already rented or does not exist, movie_id=", movieId);
+                conn.rollback();
+                return false;
+            }
+
+            if (!rentDao.insert(conn, new Rent(movieId, renterId, LocalDate.now(clock), null))) {
+                LOGGER.info(ConsoleLogger.DB_INSERT_FAIL + "rent of movie_id=" + movieId);
+                conn.rollback();
+                return false;
+            }
+
+            conn.commit();
+            rentCounter.increment(movieId);
+            return true;
+
+        } catch (SQLException ex) {
+            LOGGER.info(ConsoleLogger.SQL_EXC + ex.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Brings the movie back, and closes its open rent with today's date.
+     * @return true if the movie was checked in, false if it was not rented, or in case of an error
+     */
+    public boolean checkIn(int movieId) {
+        try (Connection conn = ConnectionFactory.getConnection()) {
+            conn.setAutoCommit(false);
+
+            if (updateMovie(conn, CHECK_IN_STRING, movieId) != 1) {
+                Log.fine(LOGGER, "Movie is not rented or does not exist, movie_id=", movieId);
+                conn.rollback();
+                return false;
+            }
+
+            if (rentDao.closeOpenRent(conn, movieId, LocalDate.now(clock)) == 0) {
+                LOGGER.info("No open rent found for the rented movie, movie_id=" + movieId);
+            }
+
+            conn.commit();
+            return true;
+
+        } catch (SQLException ex) {
+            LOGGER.info(ConsoleLogger.SQL_EXC + ex.getMessage());
+            return false;
+        }
+    }
+
+    private int updateMovie(Connection conn, String sqlQueryString, int movieId) throws SQLException {
+        Log.fine(LOGGER, ConsoleLogger.DB_QUERY, sqlQueryString);
+        PreparedStatement pStatement = conn.prepareStatement(sqlQueryString);
+        pStatement.setInt(1, movieId);
+        return pStatement.executeUpdate();
+    }
+}
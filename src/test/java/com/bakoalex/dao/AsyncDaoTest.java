@@ -0,0 +1,96 @@
+package com.bakoalex.dao;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit test for the concurrency limit of the DaoExecutor, through the AsyncDao facade.
+ */
+public class AsyncDaoTest extends TestCase {
+
+    /**
+     * Dao whose get() blocks until it is released, and records how many calls ran at the same time.
+     */
+    private static class BlockingDao implements Dao<Integer> {
+        private final AtomicInteger running = new AtomicInteger();
+        private final AtomicInteger maxRunning = new AtomicInteger();
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final List<Thread> callers = Collections.synchronizedList(new ArrayList<>());
+
+        public Integer get(int id) {
+            callers.add(Thread.currentThread());
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } finally {
+                running.decrementAndGet();
+            }
+            return id;
+        }
+        public List<Integer> getAll() { return Collections.emptyList(); }
+        public Map<Integer, Integer> getMany(Collection<Integer> ids) { return Collections.emptyMap(); }
+        public Stream<Integer> stream() { return Stream.empty(); }
+        public List<Integer> page(int afterId, int limit) { return Collections.emptyList(); }
+        public int insert(Integer t) { return 0; }
+        public int[] insertAll(Collection<Integer> items, int chunkSize) { return new int[items.size()]; }
+        public boolean update(Integer t) { return false; }
+        public boolean delete(Integer t) { return false; }
+    }
+
+    public void testConcurrencyNeverExceedsTheLimit() throws Exception {
+        BlockingDao dao = new BlockingDao();
+        AsyncDao<Integer> asyncDao = new AsyncDao<>(dao, DaoExecutor.create(3));
+
+        List<CompletableFuture<Integer>> futures = new ArrayList<>();
+        for (int id = 0; id < 100; id++) futures.add(asyncDao.get(id));
+        // Let the tasks pile up on the busy threads
+        Thread.sleep(200);
+        dao.release.countDown();
+
+        for (int id = 0; id < 100; id++) assertEquals(id, futures.get(id).get(10, TimeUnit.SECONDS).intValue());
+        assertTrue("Max running: " + dao.maxRunning.get(), dao.maxRunning.get() <= 3);
+    }
+
+    public void testSaturatedExecutorFailsTheFuture() throws Exception {
+        Executor executor = DaoExecutor.create(1);
+        // Virtual threads wait for a permit instead of being rejected
+        if (!(executor instanceof ThreadPoolExecutor)) return;
+
+        BlockingDao dao = new BlockingDao();
+        AsyncDao<Integer> asyncDao = new AsyncDao<>(dao, executor);
+        int capacity = 1 + ((ThreadPoolExecutor) executor).getQueue().remainingCapacity();
+
+        List<CompletableFuture<Integer>> futures = new ArrayList<>();
+        for (int id = 0; id < capacity + 5; id++) futures.add(asyncDao.get(id));
+        dao.release.countDown();
+
+        int rejected = 0;
+        for (CompletableFuture<Integer> future : futures) {
+            try {
+                future.get(10, TimeUnit.SECONDS);
+            } catch (ExecutionException ex) {
+                assertTrue(ex.getCause() instanceof RejectedExecutionException);
+                rejected++;
+            }
+        }
+        assertTrue("Rejected: " + rejected, rejected >= 5);
+        assertEquals(1, dao.maxRunning.get());
+        assertFalse(dao.callers.contains(Thread.currentThread()));
+    }
+}
@@ -0,0 +1,91 @@
+package com.bakoalex.dao;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import com.bakoalex.dto.Actor;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit test for the CachingDao, on top of an in-memory Dao which counts the reads.
+ */
+public class CachingDaoTest extends TestCase {
+
+    private static class InMemoryActorDao implements Dao<Actor> {
+        private final Map<Integer, Actor> actors = new HashMap<>();
+        private int reads;
+
+        public Actor get(int id) {
+            reads++;
+            Actor actor = actors.get(id);
+            return actor == null ? null : new Actor(actor.getActorId(), actor.getName());
+        }
+        public Map<Integer, Actor> getMany(Collection<Integer> ids) {
+            Map<Integer, Actor> result = new HashMap<>();
+            for (int id : ids) {
+                Actor actor = get(id);
+                if (actor != null) result.put(id, actor);
+            }
+            return result;
+        }
+        public List<Actor> getAll() { return new ArrayList<>(actors.values()); }
+        public Stream<Actor> stream() { return getAll().stream(); }
+        public List<Actor> page(int afterId, int limit) { return getAll(); }
+        public int insert(Actor actor) { actors.put(actor.getActorId(), actor); return actor.getActorId(); }
+        public int[] insertAll(Collection<Actor> items, int chunkSize) { return new int[items.size()]; }
+        public boolean update(Actor actor) { return actors.put(actor.getActorId(), actor) != null; }
+        public boolean delete(Actor actor) { return actors.remove(actor.getActorId()) != null; }
+    }
+
+    public void testReadThroughAndInvalidation() {
+        InMemoryActorDao database = new InMemoryActorDao();
+        database.insert(new Actor(1, "Johnny Depp"));
+        CachingDao<Actor> cache = new CachingDao<>(database, Actor::getActorId, 100, 0);
+
+        assertEquals("Johnny Depp", cache.get(1).getName());
+        assertEquals("Johnny Depp", cache.get(1).getName());
+        assertEquals(1, database.reads);
+
+        assertTrue(cache.update(new Actor(1, "Keira Knightley")));
+        assertEquals("Keira Knightley", cache.get(1).getName());
+        assertEquals(2, database.reads);
+
+        assertTrue(cache.delete(new Actor(1, "Keira Knightley")));
+        assertNull(cache.get(1));
+
+        CacheStats stats = cache.getStats();
+        assertEquals(1, stats.getHits());
+        assertEquals(3, stats.getMisses());
+    }
+
+    public void testGetManyLoadsOnlyMissingRecords() {
+        InMemoryActorDao database = new InMemoryActorDao();
+        for (int i = 1; i <= 10; i++) database.insert(new Actor(i, "Actor " + i));
+        CachingDao<Actor> cache = new CachingDao<>(database, Actor::getActorId, 100, 0);
+
+        cache.get(1);
+        cache.get(2);
+        Map<Integer, Actor> actors = cache.getMany(Arrays.asList(1, 2, 3, 3, 42));
+        assertEquals(3, actors.size());
+        assertEquals("Actor 3", actors.get(3).getName());
+        assertEquals(4, database.reads);
+        assertEquals(2, cache.getStats().getHits());
+    }
+
+    public void testSizeBoundEvictsLeastRecentlyUsed() {
+        InMemoryActorDao database = new InMemoryActorDao();
+        for (int i = 1; i <= 1000; i++) database.insert(new Actor(i, "Actor " + i));
+        CachingDao<Actor> cache = new CachingDao<>(database, Actor::getActorId, 64, 0);
+
+        for (int i = 1; i <= 1000; i++) cache.get(i);
+        CacheStats stats = cache.getStats();
+        assertTrue(stats.getSize() <= 64);
+        assertEquals(1000 - stats.getSize(), stats.getEvictions());
+    }
+}
@@ -0,0 +1,74 @@
+package com.bakoalex.dao;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.bakoalex.database.EmbeddedDatabase;
+import com.bakoalex.dto.Actor;
+import com.bakoalex.dto.Movie;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import junit.framework.TestCase;
+
+/**
+ * Unit test for the Flight Recorder events of the DAOs, recorded against the embedded database.
+ */
+public class DaoEventTest extends TestCase {
+
+    public void testOperationsAreRecorded() throws Exception {
+        EmbeddedDatabase database = EmbeddedDatabase.start(20, false);
+        Path file = Files.createTempFile("piratemovies", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("com.bakoalex.piratemovies.DaoGet").withoutThreshold();
+            recording.enable("com.bakoalex.piratemovies.DaoGetAll").withoutThreshold();
+            recording.enable("com.bakoalex.piratemovies.DaoInsert").withoutThreshold();
+            recording.enable("com.bakoalex.piratemovies.DaoUpdate").withoutThreshold();
+            recording.enable("com.bakoalex.piratemovies.ConnectionAcquire").withoutThreshold();
+            recording.start();
+
+            new MovieDao().get(7);
+            new ActorDao().getAll();
+            int actorId = new ActorDao().insert(new Actor("Recorded Actor"));
+            Movie movie = new MovieDao().get(3);
+            movie.setTitle("Recorded Title");
+            assertTrue(new MovieDao().update(movie));
+
+            recording.stop();
+            recording.dump(file);
+
+            Map<String, RecordedEvent> events = new HashMap<>();
+            List<RecordedEvent> recorded = RecordingFile.readAllEvents(file);
+            // The first event of each type, the update also reads the movie
+            for (RecordedEvent event : recorded) events.putIfAbsent(event.getEventType().getName(), event);
+
+            RecordedEvent get = events.get("com.bakoalex.piratemovies.DaoGet");
+            assertEquals("Movie", get.getString("entityType"));
+            assertEquals(7, get.getInt("id"));
+            assertEquals(1, get.getInt("rows"));
+
+            RecordedEvent getAll = events.get("com.bakoalex.piratemovies.DaoGetAll");
+            assertEquals("Actor", getAll.getString("entityType"));
+            assertEquals(20, getAll.getInt("rows"));
+
+            RecordedEvent insert = events.get("com.bakoalex.piratemovies.DaoInsert");
+            assertEquals(actorId, insert.getInt("id"));
+            assertEquals(1, insert.getInt("rows"));
+
+            RecordedEvent update = events.get("com.bakoalex.piratemovies.DaoUpdate");
+            assertEquals("Movie", update.getString("entityType"));
+            assertEquals(3, update.getInt("id"));
+            assertEquals(1, update.getInt("rows"));
+            assertEquals("Recorded Title", new MovieDao().get(3).getTitle());
+
+            assertTrue(events.get("com.bakoalex.piratemovies.ConnectionAcquire").getBoolean("acquired"));
+        } finally {
+            Files.deleteIfExists(file);
+            database.stop();
+        }
+    }
+}
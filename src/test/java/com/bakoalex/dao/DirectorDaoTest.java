@@ -0,0 +1,54 @@
+package com.bakoalex.dao;
+
+import java.util.Arrays;
+
+import com.bakoalex.database.EmbeddedDatabase;
+import com.bakoalex.dto.Director;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit test for the DirectorDao, against the embedded database.
+ */
+public class DirectorDaoTest extends TestCase {
+
+    private EmbeddedDatabase database;
+
+    @Override
+    protected void setUp() throws Exception {
+        database = EmbeddedDatabase.start(20, false);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        database.stop();
+    }
+
+    public void testGet() {
+        Director director = new DirectorDao().get(1);
+        assertNotNull(director);
+        assertEquals(1, director.getDirectorId());
+        assertEquals("Director 0000001", director.getName());
+
+        assertNull(new DirectorDao().get(database.getDirectorCount() + 1));
+    }
+
+    public void testCachedGetHitsAfterTheFirstRead() {
+        CachingDao<Director> cache = new CachingDao<>(new DirectorDao(), Director::getDirectorId, 10, 0);
+        assertEquals("Director 0000001", cache.get(1).getName());
+        assertEquals("Director 0000001", cache.get(1).getName());
+
+        assertEquals(1, cache.getStats().getHits());
+        assertEquals(1, cache.getStats().getMisses());
+    }
+
+    public void testSingleAndBatchInsertStoreTheSameName() {
+        DirectorDao directorDao = new DirectorDao();
+        int singleId = directorDao.insert(new Director("  Single   Director "));
+        int batchId = directorDao.insertAll(Arrays.asList(new Director(" Batch \t Director  ")))[0];
+
+        assertEquals("Single Director", directorDao.get(singleId).getName());
+        assertEquals("Batch Director", directorDao.get(batchId).getName());
+        assertEquals(0, directorDao.insert(new Director("Batch Director")));
+    }
+}
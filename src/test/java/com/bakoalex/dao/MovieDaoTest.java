@@ -0,0 +1,152 @@
+package com.bakoalex.dao;
+
+import java.lang.reflect.Proxy;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.sql.DataSource;
+
+import com.bakoalex.database.ConnectionFactory;
+import com.bakoalex.database.EmbeddedDatabase;
+import com.bakoalex.dto.Actor;
+import com.bakoalex.dto.Director;
+import com.bakoalex.dto.Movie;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests of the MovieDao against the embedded database, including the number of statements per call,
+ * so N+1 query regressions fail the build.
+ */
+public class MovieDaoTest extends TestCase {
+
+    private static final int CATALOG_SIZE = 300;
+
+    private EmbeddedDatabase database;
+    private MovieDao movieDao;
+
+    @Override
+    protected void setUp() throws Exception {
+        database = EmbeddedDatabase.start(CATALOG_SIZE, true);
+        movieDao = new MovieDao();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        database.stop();
+    }
+
+    public void testGetLoadsMovieWithOneStatement() {
+        database.resetStatementCount();
+        Movie movie = movieDao.get(7);
+
+        assertEquals("Movie 0000007", movie.getTitle());
+        assertEquals(EmbeddedDatabase.ACTORS_PER_MOVIE, movie.getActors().size());
+        assertEquals(1, movie.getDirectors().size());
+        assertEquals(1, database.getStatementCount());
+    }
+
+    public void testSeparateQueriesMatchJoinedFetch() {
+        Movie joined = movieDao.get(42);
+        Movie separate = new MovieDao(MovieDao.FetchMode.SEPARATE_QUERIES).get(42);
+        assertEquals(joined, separate);
+    }
+
+    public void testGetAllUsesThreeStatements() {
+        database.resetStatementCount();
+        List<Movie> movies = movieDao.getAll();
+
+        assertEquals(CATALOG_SIZE, movies.size());
+        for (Movie movie : movies) assertEquals(EmbeddedDatabase.ACTORS_PER_MOVIE, movie.getActors().size());
+        assertEquals(3, database.getStatementCount());
+    }
+
+    public void testGetManyDoesNotQueryPerMovie() {
+        List<Integer> ids = new ArrayList<>();
+        for (int id = 1; id <= 100; id++) ids.add(id);
+
+        database.resetStatementCount();
+        Map<Integer, Movie> movies = movieDao.getMany(ids);
+
+        assertEquals(100, movies.size());
+        assertEquals("Movie 0000100", movies.get(100).getTitle());
+        assertTrue("Statements: " + database.getStatementCount(), database.getStatementCount() <= 3);
+    }
+
+    public void testPagesCoverTheCatalogOnce() {
+        Set<Integer> seen = new HashSet<>();
+        String cursor = null;
+        String lastTitle = "";
+        do {
+            Page<Movie> page = movieDao.page(MovieDao.SortOrder.TITLE, cursor, 64);
+            for (Movie movie : page.getItems()) {
+                assertTrue(seen.add(movie.getMovieId()));
+                assertTrue(movie.getTitle().compareTo(lastTitle) > 0);
+                lastTitle = movie.getTitle();
+            }
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        assertEquals(CATALOG_SIZE, seen.size());
+    }
+
+    public void testFailedPageIsNotTheLastPage() {
+        boolean[] down = { true };
+        ConnectionFactory.useDataSource((DataSource) Proxy.newProxyInstance(DataSource.class.getClassLoader(),
+            new Class<?>[] { DataSource.class }, (proxy, method, args) -> {
+                if (!method.getName().equals("getConnection")) return null;
+                if (down[0]) throw new SQLException("Database is down");
+                return database.getDirectConnection();
+            }));
+
+        for (MovieDao.SortOrder order : MovieDao.SortOrder.values()) {
+            // A new pool, without the connections opened while the database was up
+            ConnectionFactory.shutdown();
+            down[0] = true;
+            Page<Movie> failed = movieDao.page(order, null, 10);
+            assertTrue(failed.getItems().isEmpty());
+            assertTrue(failed.hasNext());
+
+            // The cursor of the failed page starts over from the first movie
+            down[0] = false;
+            List<Movie> retried = movieDao.page(order, failed.getNextCursor(), 10).getItems();
+            List<Movie> first = movieDao.page(order, null, 10).getItems();
+            assertEquals(10, retried.size());
+            for (int i = 0; i < first.size(); i++) assertEquals(first.get(i).getMovieId(), retried.get(i).getMovieId());
+        }
+    }
+
+    public void testInsertReusesExistingPeople() {
+        Movie movie = new Movie("Offline Test Movie", Arrays.asList(new Director("Director 0000001")),
+            Arrays.asList(new Actor("Actor 0000001"), new Actor("Brand New Actor")), 2001, 95, "DVD", "cover.jpg", "PIRATE", 0, false);
+
+        int movieId = movieDao.insert(movie);
+        assertTrue(movieId > CATALOG_SIZE);
+
+        Movie inserted = movieDao.get(movieId);
+        assertEquals("Offline Test Movie", inserted.getTitle());
+        assertEquals(1, inserted.getDirectors().get(0).getDirectorId());
+        assertEquals(2, inserted.getActors().size());
+        assertEquals(1, inserted.getActors().get(0).getActorId());
+        assertEquals(CATALOG_SIZE + 1, inserted.getActors().get(1).getActorId());
+
+        // The same title and year is a duplicate
+        assertTrue(movieDao.insert(movie) <= 0);
+    }
+
+    public void testInsertAllSkipsMoviesWithoutTitle() {
+        Movie untitled = new Movie(null, Arrays.asList(new Director("Director 0000001")),
+            Arrays.asList(new Actor("Actor 0000001")), 2001, 95, "DVD", "cover.jpg", "PIRATE", 0, false);
+        Movie titled = new Movie("Titled Test Movie", Arrays.asList(new Director("Director 0000001")),
+            Arrays.asList(new Actor("Actor 0000001")), 2001, 95, "DVD", "cover.jpg", "PIRATE", 0, false);
+
+        int[] ids = movieDao.insertAll(Arrays.asList(untitled, titled));
+        assertEquals(0, ids[0]);
+        assertTrue(ids[1] > CATALOG_SIZE);
+    }
+}
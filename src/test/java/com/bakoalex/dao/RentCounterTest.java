@@ -0,0 +1,132 @@
+package com.bakoalex.dao;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import com.bakoalex.database.ConnectionFactory;
+import com.bakoalex.database.EmbeddedDatabase;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests of the write-behind rent counter against the embedded database.
+ */
+public class RentCounterTest extends TestCase {
+
+    private EmbeddedDatabase database;
+    private RentCounter counter;
+
+    @FunctionalInterface
+    private interface CommitHook {
+        void run() throws SQLException;
+    }
+
+    /** Called on every commit of a connection handed out by the data source, and fails it if it throws. */
+    private volatile CommitHook onCommit = () -> {};
+    private volatile boolean down;
+
+    @Override
+    protected void setUp() throws Exception {
+        database = EmbeddedDatabase.start(10, false);
+        ConnectionFactory.useDataSource((DataSource) Proxy.newProxyInstance(DataSource.class.getClassLoader(),
+            new Class<?>[] { DataSource.class }, (proxy, method, args) -> {
+                if (!method.getName().equals("getConnection")) return null;
+                if (down) throw new SQLException("Database is down");
+                return interceptCommits(database.getDirectConnection());
+            }));
+        // Only flushed by the test
+        counter = new RentCounter(TimeUnit.HOURS.toMillis(1));
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        down = false;
+        counter.close();
+        database.stop();
+    }
+
+    private Connection interceptCommits(Connection conn) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+            new Class<?>[] { Connection.class }, (proxy, method, args) -> {
+                if (method.getName().equals("commit")) onCommit.run();
+                try {
+                    return method.invoke(conn, args);
+                } catch (InvocationTargetException ex) {
+                    throw ex.getCause();
+                }
+            });
+    }
+
+    public void testFlushWritesTheDeltas() throws Exception {
+        int before = numOfRents(4);
+        for (int i = 0; i < 5; i++) counter.increment(4);
+        counter.increment(5);
+        assertEquals(5, counter.pending(4));
+
+        assertTrue(counter.flush());
+        assertEquals(0, counter.pending(4));
+        assertEquals(0, counter.pending(5));
+        assertEquals(before + 5, numOfRents(4));
+    }
+
+    public void testFlushedDeltaIsNotPendingWhileItIsCommitted() throws Exception {
+        for (int i = 0; i < 3; i++) counter.increment(4);
+        long[] pendingAtCommit = { -1 };
+        onCommit = () -> {
+            pendingAtCommit[0] = counter.pending(4);
+            // Counted during the flush, kept for the next one
+            counter.increment(4);
+        };
+
+        assertTrue(counter.flush());
+        assertEquals(0, pendingAtCommit[0]);
+        assertEquals(1, counter.pending(4));
+    }
+
+    public void testFailedFlushKeepsTheDeltas() throws Exception {
+        int before = numOfRents(4);
+        for (int i = 0; i < 3; i++) counter.increment(4);
+        onCommit = () -> {
+            throw new SQLException("Commit failed");
+        };
+        assertFalse(counter.flush());
+        assertEquals(3, counter.pending(4));
+        assertEquals(before, numOfRents(4));
+
+        // Also when no connection can be borrowed
+        onCommit = () -> {};
+        down = true;
+        ConnectionFactory.shutdown();
+        assertFalse(counter.flush());
+        assertEquals(3, counter.pending(4));
+
+        down = false;
+        assertTrue(counter.flush());
+        assertEquals(0, counter.pending(4));
+        assertEquals(before + 3, numOfRents(4));
+    }
+
+    public void testCloseWritesTheRemainingDeltas() throws Exception {
+        int before = numOfRents(6);
+        for (int i = 0; i < 7; i++) counter.increment(6);
+        counter.close();
+        assertEquals(before + 7, numOfRents(6));
+    }
+
+    private int numOfRents(int movieId) throws SQLException {
+        try (Connection conn = database.getDirectConnection()) {
+            PreparedStatement statement = conn.prepareStatement("SELECT num_of_rents FROM movies WHERE movie_id=?");
+            statement.setInt(1, movieId);
+            ResultSet result = statement.executeQuery();
+            assertTrue(result.next());
+            return result.getInt(1);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.bakoalex.database;
+
+import java.io.PrintWriter;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import javax.sql.DataSource;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit test for the ConnectionPool, using fake connections instead of a database.
+ */
+public class ConnectionPoolTest extends TestCase {
+
+    private final AtomicInteger opened = new AtomicInteger();
+    private final AtomicInteger closed = new AtomicInteger();
+
+    private Connection fakeConnection() {
+        opened.incrementAndGet();
+        boolean[] autoCommit = { true };
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+            new Class<?>[] { Connection.class }, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "close": closed.incrementAndGet(); return null;
+                    case "isValid": return true;
+                    case "isClosed": return false;
+                    case "getAutoCommit": return autoCommit[0];
+                    case "setAutoCommit": autoCommit[0] = (Boolean) args[0]; return null;
+                    default: return null;
+                }
+            });
+    }
+
+    private DataSource fakeDataSource() {
+        return new DataSource() {
+            public Connection getConnection() { return fakeConnection(); }
+            public Connection getConnection(String user, String pass) { return fakeConnection(); }
+            public PrintWriter getLogWriter() { return null; }
+            public void setLogWriter(PrintWriter out) {}
+            public void setLoginTimeout(int seconds) {}
+            public int getLoginTimeout() { return 0; }
+            public Logger getParentLogger() { return null; }
+            public <T> T unwrap(Class<T> iface) { return null; }
+            public boolean isWrapperFor(Class<?> iface) { return false; }
+        };
+    }
+
+    public void testConnectionsAreReused() throws SQLException {
+        try (ConnectionPool pool = new ConnectionPool(fakeDataSource(), 2, 1, 100, 500, 0)) {
+            assertEquals(1, opened.get());
+            for (int i = 0; i < 10; i++) {
+                try (Connection conn = pool.borrow()) {
+                    conn.setAutoCommit(false);
+                }
+            }
+            assertEquals(1, opened.get());
+            assertEquals(10, pool.getStats().getBorrowCount());
+            assertEquals(1, pool.getStats().getIdle());
+        }
+        assertEquals(1, closed.get());
+    }
+
+    public void testBorrowTimesOutWhenExhausted() throws SQLException {
+        try (ConnectionPool pool = new ConnectionPool(fakeDataSource(), 1, 0, 50, 500, 0)) {
+            Connection conn = pool.borrow();
+            assertEquals(1, pool.getStats().getActive());
+            try {
+                pool.borrow();
+                fail("Borrowing from an exhausted pool should time out");
+            } catch (SQLTransientConnectionException expected) {
+                assertEquals(1, pool.getStats().getTimeoutCount());
+            }
+            conn.close();
+            conn.close();
+            assertEquals(0, pool.getStats().getActive());
+            pool.borrow().close();
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.bakoalex.database;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sql.DataSource;
+
+import org.h2.jdbcx.JdbcDataSource;
+
+import com.bakoalex.dao.ActorDao;
+import com.bakoalex.dao.DirectorDao;
+import com.bakoalex.database.migration.Migration;
+import com.bakoalex.database.migration.MigrationRunner;
+
+/**
+ * Embedded H2 database in MySQL mode, with the schema of resources/sql and a generated catalog,
+ * for running the DAOs in tests and benchmarks without a MySQL server.
+ *
+ * H2 has no YEAR type, so the year column becomes INT, like the SMALLINT columns, so catalogs
+ * above 32767 rows fit. The generated data only depends on the catalog size: movie i is titled
+ * "Movie 000000i", has 3 actors with consecutive ids and 1 director.
+ * The statements executed through ConnectionFactory can be counted, to catch round trip regressions.
+ */
+public final class EmbeddedDatabase {
+
+    public static final int ACTORS_PER_MOVIE = 3;
+
+    private static final int BATCH_SIZE = 1000;
+
+    private static final AtomicInteger DATABASE_COUNT = new AtomicInteger();
+
+    private final JdbcDataSource dataSource;
+    private final int catalogSize;
+    private final AtomicLong statementCount = new AtomicLong();
+
+    private EmbeddedDatabase(int catalogSize) {
+        this.catalogSize = catalogSize;
+        this.dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:piratemovies-" + DATABASE_COUNT.incrementAndGet()
+            + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1;NON_KEYWORDS=YEAR,LENGTH,VALUE");
+    }
+
+    /**
+     * Creates a new database with catalogSize movies, catalogSize actors and catalogSize / 10 directors,
+     * and makes ConnectionFactory use it.
+     * @param countStatements whether to count the executed statements, which adds a proxy to every statement
+     */
+    public static EmbeddedDatabase start(int catalogSize, boolean countStatements) throws SQLException, IOException {
+        EmbeddedDatabase database = new EmbeddedDatabase(catalogSize);
+        try (Connection conn = database.dataSource.getConnection()) {
+            Migration baseline = new MigrationRunner().loadMigrations().get(0);
+            Statement statement = conn.createStatement();
+            for (String sql : baseline.getStatements()) statement.execute(sql.replaceAll("\\b(YEAR|SMALLINT)\\b", "INT"));
+            database.seed(conn);
+        }
+
+        ConnectionFactory.useDataSource(countStatements ? database.countingDataSource() : database.dataSource);
+        ActorDao.invalidateNameIndex();
+        DirectorDao.invalidateNameIndex();
+        return database;
+    }
+
+    /**
+     * Closes the connection pool and drops the database.
+     */
+    public void stop() throws SQLException {
+        ConnectionFactory.useDataSource(null);
+        try (Connection conn = dataSource.getConnection()) {
+            conn.createStatement().execute("SHUTDOWN");
+        }
+    }
+
+    public int getCatalogSize() {
+        return catalogSize;
+    }
+
+    public int getDirectorCount() {
+        return Math.max(1, catalogSize / 10);
+    }
+
+    /**
+     * @return the number of statements executed through ConnectionFactory since the last reset
+     */
+    public long getStatementCount() {
+        return statementCount.get();
+    }
+
+    public void resetStatementCount() {
+        statementCount.set(0);
+    }
+
+    /**
+     * @return a connection to the database which does not go through ConnectionFactory, and is not counted
+     */
+    public Connection getDirectConnection() throws SQLException {
+        return dataSource.getConnection();
+    }
+
+    private void seed(Connection conn) throws SQLException {
+        conn.setAutoCommit(false);
+        Random random = new Random(42);
+        int directorCount = getDirectorCount();
+
+        insertNames(conn, "INSERT INTO actors (name) VALUES (?)", "Actor ", catalogSize);
+        insertNames(conn, "INSERT INTO directors (name) VALUES (?)", "Director ", directorCount);
+
+        PreparedStatement movies = conn.prepareStatement("INSERT INTO movies (title, year, length, media_type, "
+            + "media_cover, media_origin, num_of_rents, is_rented) VALUES (?, ?, ?, ?, ?, ?, ?, ?)");
+        PreparedStatement actors = conn.prepareStatement("INSERT INTO movies_actors (movie_id, actor_id) VALUES (?, ?)");
+        PreparedStatement directors = conn.prepareStatement("INSERT INTO movies_directors (movie_id, director_id) VALUES (?, ?)");
+
+        for (int movieId = 1; movieId <= catalogSize; movieId++) {
+            movies.setString(1, String.format("Movie %07d", movieId));
+            movies.setInt(2, 1950 + random.nextInt(70));
+            movies.setInt(3, 80 + random.nextInt(100));
+            movies.setString(4, random.nextBoolean() ? "DVD" : "VHS");
+            movies.setString(5, "cover-" + movieId + ".jpg");
+            movies.setString(6, random.nextBoolean() ? "OFFICIAL" : "PIRATE");
+            movies.setInt(7, random.nextInt(100));
+            movies.setInt(8, 0);
+            movies.addBatch();
+
+            // Consecutive actor ids, so a movie never gets the same actor twice
+            int firstActor = random.nextInt(catalogSize);
+            for (int i = 0; i < Math.min(ACTORS_PER_MOVIE, catalogSize); i++) {
+                actors.setInt(1, movieId);
+                actors.setInt(2, (firstActor + i) % catalogSize + 1);
+                actors.addBatch();
+            }
+            directors.setInt(1, movieId);
+            directors.setInt(2, random.nextInt(directorCount) + 1);
+            directors.addBatch();
+
+            if (movieId % BATCH_SIZE == 0 || movieId == catalogSize) {
+                movies.executeBatch();
+                actors.executeBatch();
+                directors.executeBatch();
+            }
+        }
+        conn.commit();
+    }
+
+    private static void insertNames(Connection conn, String sql, String prefix, int count) throws SQLException {
+        PreparedStatement statement = conn.prepareStatement(sql);
+        for (int i = 1; i <= count; i++) {
+            statement.setString(1, String.format("%s%07d", prefix, i));
+            statement.addBatch();
+            if (i % BATCH_SIZE == 0 || i == count) statement.executeBatch();
+        }
+    }
+
+    /**
+     * Wraps the connections, so the statements they create count their executions.
+     */
+    private DataSource countingDataSource() {
+        return (DataSource) Proxy.newProxyInstance(DataSource.class.getClassLoader(), new Class<?>[] { DataSource.class },
+            (proxy, method, args) -> {
+                Object result = invoke(dataSource, method, args);
+                return result instanceof Connection ? countingConnection((Connection) result) : result;
+            });
+    }
+
+    private Connection countingConnection(Connection conn) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] { Connection.class },
+            (proxy, method, args) -> {
+                Object result = invoke(conn, method, args);
+                if (result instanceof PreparedStatement) return countingStatement(result, PreparedStatement.class);
+                if (result instanceof Statement) return countingStatement(result, Statement.class);
+                return result;
+            });
+    }
+
+    private Object countingStatement(Object statement, Class<? extends Statement> type) {
+        return Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type },
+            (proxy, method, args) -> {
+                if (method.getName().startsWith("execute")) statementCount.incrementAndGet();
+                return invoke(statement, method, args);
+            });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException ex) {
+            throw ex.getCause();
+        }
+    }
+}
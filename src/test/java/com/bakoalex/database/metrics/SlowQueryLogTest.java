@@ -0,0 +1,53 @@
+package com.bakoalex.database.metrics;
+
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit test for the slow query ring.
+ */
+public class SlowQueryLogTest extends TestCase {
+
+    public void testRingKeepsTheMostRecentEntries() {
+        SlowQueryLog log = new SlowQueryLog(10, 3, false, false);
+        assertFalse(log.isSlow(9_999_999));
+        assertTrue(log.isSlow(10_000_000));
+
+        for (int i = 1; i <= 5; i++) log.record("SELECT " + i, null, null, i * 10_000_000L, false, i);
+
+        List<SlowQuery> entries = log.getEntries();
+        assertEquals(3, entries.size());
+        assertEquals("SELECT 5", entries.get(0).getShape());
+        assertEquals("SELECT 3", entries.get(2).getShape());
+
+        log.clear();
+        assertTrue(log.getEntries().isEmpty());
+    }
+
+    public void testBindValuesAreFormatted() {
+        SlowQueryLog log = new SlowQueryLog(0, 10, false, true);
+        char[] longName = new char[100];
+        Arrays.fill(longName, 'a');
+
+        SlowQuery entry = log.record("SELECT * FROM movies WHERE movies.title=? AND movies.year=? AND movies.media_cover=?",
+            null, new Object[] { new String(longName), 1999, null }, 1, false, -1);
+        assertEquals("'" + new String(longName, 0, 64) + "...'", entry.getBinds().get(0));
+        assertEquals(Arrays.asList("1999", "NULL"), entry.getBinds().subList(1, 3));
+        assertEquals(-1, entry.getRows());
+        assertNull(entry.getCaller());
+    }
+
+    public void testNegativeThresholdDisablesTheLog() {
+        SlowQueryLog log = new SlowQueryLog(-1, 10, false, true);
+        assertFalse(log.isEnabled());
+        assertFalse(log.isSlow(Long.MAX_VALUE));
+        assertFalse(log.isCapturingBinds());
+    }
+
+    public void testBindsAreNotCapturedByDefault() {
+        assertFalse(new SlowQueryLog().isCapturingBinds());
+        assertTrue(new SlowQueryLog(0, 10, false, true).isCapturingBinds());
+    }
+}
@@ -0,0 +1,66 @@
+package com.bakoalex.database.metrics;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
+import com.bakoalex.database.ConnectionFactory;
+import com.bakoalex.database.EmbeddedDatabase;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit test for the statement shapes and the latency histogram, and the recording of the statements run on the embedded database.
+ */
+public class SqlMetricsTest extends TestCase {
+
+    public void testLiteralsAndInListsShareTheShape() {
+        String shape = SqlMetrics.shapeOf("SELECT *  FROM movies\n WHERE movies.movie_id IN (?, ?, ?) AND title='It''s' LIMIT 10;");
+        assertEquals("SELECT * FROM movies WHERE movies.movie_id IN (?...) AND title=? LIMIT ?", shape);
+        assertEquals(shape, SqlMetrics.shapeOf("SELECT * FROM movies WHERE movies.movie_id IN (?,?) AND title='x' LIMIT 20"));
+        assertEquals("SELECT * FROM tbl2 WHERE a.b1=?", SqlMetrics.shapeOf("SELECT * FROM tbl2 WHERE a.b1=5"));
+    }
+
+    public void testPercentilesAreWithinTheBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long micros = 1; micros <= 1000; micros++) histogram.record(micros * 1000);
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(1000, snapshot.getCount());
+        assertEquals(1_000_000, snapshot.getMaxNanos());
+        assertEquals(500_000, snapshot.getPercentileNanos(50), 500_000 / 16);
+        assertEquals(990_000, snapshot.getPercentileNanos(99), 990_000 / 16);
+
+        histogram.reset();
+        assertEquals(0, histogram.snapshot().getCount());
+    }
+
+    public void testStatementsOfPooledConnectionsAreRecorded() throws Exception {
+        EmbeddedDatabase database = EmbeddedDatabase.start(20, false);
+        try {
+            SqlMetrics metrics = SqlMetrics.get();
+            metrics.reset();
+            String sql = "SELECT * FROM movies ORDER BY movies.movie_id LIMIT ?;";
+            for (int i = 0; i < 3; i++) {
+                try (Connection conn = ConnectionFactory.getConnection()) {
+                    PreparedStatement pStatement = conn.prepareStatement(sql);
+                    pStatement.setInt(1, 5);
+                    ResultSet result = pStatement.executeQuery();
+                    while (result.next()) result.getInt(1);
+                }
+            }
+
+            StatementStats stats = null;
+            for (StatementStats statement : metrics.getStatements()) {
+                if (statement.getSql().equals(SqlMetrics.shapeOf(sql))) stats = statement;
+            }
+            assertNotNull(stats);
+            assertEquals(3, stats.getCount());
+            assertEquals(15, stats.getRows());
+            assertEquals(0, stats.getErrorCount());
+            assertTrue(metrics.getPoolWaitCount() >= 3);
+        } finally {
+            database.stop();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.bakoalex.database.migration;
+
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit test for reading the schema migrations, without a database.
+ */
+public class MigrationRunnerTest extends TestCase {
+
+    public void testSplitIgnoresSemicolonsInQuotesAndComments() {
+        List<String> statements = SqlScript.split(
+            "-- first; comment\nCREATE TABLE a (name VARCHAR(10) DEFAULT 'x;y');\n/* skipped; */INSERT INTO a VALUES ('it\\'s;');");
+
+        assertEquals(2, statements.size());
+        assertEquals("CREATE TABLE a (name VARCHAR(10) DEFAULT 'x;y')", statements.get(0));
+        assertEquals("INSERT INTO a VALUES ('it\\'s;')", statements.get(1));
+    }
+
+    public void testBaselineCreatesReferencedTablesFirst() throws Exception {
+        MigrationRunner runner = new MigrationRunner(Paths.get("resources/sql"), Paths.get("resources/sql/migrations"));
+        List<Migration> migrations = runner.loadMigrations();
+
+        assertEquals(1, migrations.get(0).getVersion());
+        assertEquals(2, migrations.get(1).getVersion());
+
+        List<String> baseline = migrations.get(0).getStatements();
+        assertTrue(indexOfTable(baseline, "movies") < indexOfTable(baseline, "movies_actors"));
+        assertTrue(indexOfTable(baseline, "actors") < indexOfTable(baseline, "movies_actors"));
+        assertTrue(indexOfTable(baseline, "renter_persons") < indexOfTable(baseline, "rents"));
+    }
+
+    public void testIndexStatementsAreBuiltOnline() {
+        String statement = "CREATE UNIQUE INDEX uq_movies_title_year ON movies (title, year)";
+        assertEquals("movies", SqlScript.indexedTable(statement));
+        assertEquals(statement + " ALGORITHM=INPLACE LOCK=NONE", SqlScript.online(statement));
+        assertNull(SqlScript.indexedTable("DROP INDEX idx_movies_title ON movies"));
+    }
+
+    public void testTableNamesDoNotDependOnTheDefaultLocale() {
+        Locale defaultLocale = Locale.getDefault();
+        Locale.setDefault(new Locale("tr", "TR"));
+        try {
+            assertEquals("movies", SqlScript.indexedTable("CREATE INDEX IDX_MOVIES_YEAR ON MOVIES (year)"));
+            assertEquals("movies_actors", SqlScript.createdTable("CREATE TABLE IF NOT EXISTS MOVIES_ACTORS (movie_id INT)"));
+            assertEquals(Arrays.asList("movies"), SqlScript.referencedTables("FOREIGN KEY (movie_id) REFERENCES MOVIES (movie_id)"));
+        } finally {
+            Locale.setDefault(defaultLocale);
+        }
+    }
+
+    public void testDataChangesAreSeparateSteps() throws Exception {
+        List<List<String>> steps = MigrationRunner.steps(Arrays.asList(
+            "CREATE TABLE a (id INT)", "DROP TABLE b", "INSERT IGNORE INTO a SELECT id FROM c",
+            "delete a FROM a INNER JOIN a keep ON keep.id<a.id", "RENAME TABLE a TO c"));
+
+        assertEquals(3, steps.size());
+        assertEquals(2, steps.get(0).size());
+        assertEquals(2, steps.get(1).size());
+        assertTrue(SqlScript.changesData(steps.get(1).get(1)));
+        assertFalse(SqlScript.changesData(steps.get(2).get(0)));
+        assertFalse(SqlScript.changesData("CREATE TABLE deleted_rows (id INT)"));
+    }
+
+    public void testUpgradeAddsTheIndexesOfTheBaseline() throws Exception {
+        MigrationRunner runner = new MigrationRunner(Paths.get("resources/sql"), Paths.get("resources/sql/migrations"));
+        List<Migration> migrations = runner.loadMigrations();
+        String upgrade = String.join("\n", migrations.get(1).getStatements());
+
+        // Every index of the baseline tables has to be created by the upgrade too
+        Matcher index = Pattern.compile("(?:INDEX|KEY)\\s+(\\w+)\\s*\\(").matcher(String.join("\n", migrations.get(0).getStatements()));
+        int indexes = 0;
+        while (index.find()) {
+            assertTrue(index.group(1), upgrade.contains(index.group(1)));
+            indexes++;
+        }
+        assertEquals(8, indexes);
+    }
+
+    private static int indexOfTable(List<String> statements, String table) {
+        for (int i = 0; i < statements.size(); i++) {
+            if (table.equals(SqlScript.createdTable(statements.get(i)))) return i;
+        }
+        return -1;
+    }
+}
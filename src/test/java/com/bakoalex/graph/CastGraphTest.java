@@ -0,0 +1,96 @@
+package com.bakoalex.graph;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Arrays;
+import java.util.List;
+
+import com.bakoalex.dao.MovieActorDao;
+import com.bakoalex.database.EmbeddedDatabase;
+import com.bakoalex.dto.MovieActor;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit test for the traversals of the cast graph, and for building it from the link tables.
+ */
+public class CastGraphTest extends TestCase {
+
+    private static CastGraph smallGraph() {
+        return new CastGraph.Builder()
+            .addActor(1, 10).addActor(1, 11).addActor(1, 12)
+            .addActor(2, 12).addActor(2, 13)
+            .addActor(3, 10).addActor(3, 13).addActor(3, 10)
+            .addDirector(1, 5).addDirector(2, 5).addDirector(3, 6).addDirector(3, 5)
+            .build();
+    }
+
+    public void testNeighboursInBothDirections() {
+        CastGraph graph = smallGraph();
+        assertTrue(Arrays.equals(new int[] { 1, 3 }, graph.moviesOfActor(10)));
+        assertTrue(Arrays.equals(new int[] { 10, 13 }, graph.actorsOfMovie(3)));
+        assertTrue(Arrays.equals(new int[] { 1, 2, 3 }, graph.moviesOfDirector(5)));
+        assertTrue(Arrays.equals(new int[] { 5, 6 }, graph.directorsOfMovie(3)));
+        assertEquals(0, graph.moviesOfActor(99).length);
+        assertEquals(0, graph.actorsOfMovie(-1).length);
+        // The repeated link is kept once
+        assertEquals(7, graph.getActorLinkCount());
+        // Offsets of 4 movie, 14 actor and 7 director rows, and 4 bytes per link and direction
+        assertEquals(4 * (5 + 5 + 15 + 8) + 8 * (7 + 4), graph.sizeInBytes());
+    }
+
+    public void testTraversals() {
+        CastGraph graph = smallGraph();
+        assertTrue(Arrays.equals(new int[] { 11, 12, 13 }, graph.coStars(10)));
+        assertTrue(Arrays.equals(new int[] { 10, 11, 13 }, graph.coStars(12)));
+        assertEquals(0, graph.coStars(99).length);
+        assertTrue(Arrays.equals(new int[] { 1, 3 }, graph.moviesByDirectorWithActor(5, 10)));
+        assertTrue(Arrays.equals(new int[] { 3 }, graph.moviesByDirectorWithActor(6, 13)));
+        assertEquals(0, graph.moviesByDirectorWithActor(6, 11).length);
+    }
+
+    public void testBuiltGraphMatchesTheLinkTables() throws Exception {
+        EmbeddedDatabase database = EmbeddedDatabase.start(200, false);
+        try (Connection conn = database.getDirectConnection()) {
+            CastGraph graph = CastGraph.loadShared();
+            assertSame(graph, CastGraph.getShared());
+
+            PreparedStatement coStars = conn.prepareStatement("SELECT DISTINCT b.actor_id FROM movies_actors a "
+                + "INNER JOIN movies_actors b ON b.movie_id=a.movie_id WHERE a.actor_id=? AND b.actor_id<>? ORDER BY 1");
+            PreparedStatement byDirector = conn.prepareStatement("SELECT md.movie_id FROM movies_directors md "
+                + "INNER JOIN movies_actors ma ON ma.movie_id=md.movie_id WHERE md.director_id=? AND ma.actor_id=? ORDER BY 1");
+            for (int actorId = 1; actorId <= 200; actorId += 7) {
+                coStars.setInt(1, actorId);
+                coStars.setInt(2, actorId);
+                assertTrue(Arrays.equals(ids(coStars.executeQuery()), graph.coStars(actorId)));
+
+                for (int directorId : graph.directorsOfMovie(graph.moviesOfActor(actorId).length > 0
+                        ? graph.moviesOfActor(actorId)[0] : 1)) {
+                    byDirector.setInt(1, directorId);
+                    byDirector.setInt(2, actorId);
+                    int[] movies = graph.moviesByDirectorWithActor(directorId, actorId);
+                    assertTrue(Arrays.equals(ids(byDirector.executeQuery()), movies));
+                }
+            }
+
+            List<MovieActor> rows = new MovieActorDao().getByActorId(1);
+            int[] movieIds = new int[rows.size()];
+            for (int i = 0; i < movieIds.length; i++) movieIds[i] = rows.get(i).getMovieId();
+            assertTrue(movieIds.length > 1);
+            assertTrue(Arrays.equals(graph.moviesOfActor(1), movieIds));
+        } finally {
+            database.stop();
+        }
+    }
+
+    private static int[] ids(ResultSet result) throws Exception {
+        int[] ids = new int[16];
+        int count = 0;
+        while (result.next()) {
+            if (count == ids.length) ids = Arrays.copyOf(ids, count * 2);
+            ids[count++] = result.getInt(1);
+        }
+        return Arrays.copyOf(ids, count);
+    }
+}
@@ -0,0 +1,120 @@
+package com.bakoalex.importer;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.util.Collection;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.bakoalex.dao.ActorDao;
+import com.bakoalex.dao.DirectorDao;
+import com.bakoalex.dao.MovieDao;
+import com.bakoalex.database.EmbeddedDatabase;
+import com.bakoalex.dto.Movie;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit test for the CatalogImporter, against the embedded database.
+ */
+public class CatalogImporterTest extends TestCase {
+
+    private EmbeddedDatabase database;
+
+    @Override
+    protected void setUp() throws Exception {
+        database = EmbeddedDatabase.start(20, false);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        database.stop();
+    }
+
+    public void testImportLinksExistingPeopleAndRejectsDuplicates() throws Exception {
+        Movie seeded = new MovieDao().get(1);
+        String catalog = "title,year,length,media_type,media_cover,media_origin,actors,directors\n"
+            + "New Film,2001,100,dvd,new.jpg,pirate,Actor 0000001|Brand  New Actor,Director 0000002\n"
+            + "Other Film,2002,90,vhs,other.jpg,pirate, actor 0000001 |Brand New Actor,director   0000002\n"
+            + "New Film,2001,100,dvd,new.jpg,pirate,Actor 0000002,Director 0000001\n"
+            + seeded.getTitle() + "," + seeded.getYear() + ",95,dvd,seeded.jpg,pirate,Actor 0000003,Director 0000001\n"
+            + "Broken Film,nineteen,100,dvd,broken.jpg,pirate,Actor 0000001,Director 0000001\n";
+
+        ImportStats stats = new CatalogImporter().importFrom(new BufferedReader(new StringReader(catalog)),
+            new CatalogParser(CatalogParser.CSV));
+
+        assertEquals(4, stats.getParsedRows());
+        assertEquals(1, stats.getRejectedRows());
+        assertEquals(2, stats.getInsertedMovies());
+        assertEquals(2, stats.getSkippedMovies());
+        assertEquals(1, stats.getNewActors());
+        assertEquals(0, stats.getNewDirectors());
+        assertEquals(21, new ActorDao().getAll().size());
+        assertEquals(database.getDirectorCount(), new DirectorDao().getAll().size());
+
+        int linked = 0;
+        for (Movie movie : new MovieDao().getAll()) {
+            if (!movie.getTitle().equals("New Film") && !movie.getTitle().equals("Other Film")) continue;
+            assertEquals(2, movie.getActors().size());
+            assertTrue(movie.getActors().stream().anyMatch(actor -> actor.getActorId() == 1));
+            assertEquals(1, movie.getDirectors().size());
+            assertEquals(2, movie.getDirectors().get(0).getDirectorId());
+            linked++;
+        }
+        assertEquals(2, linked);
+    }
+
+    /**
+     * Blocks the movie writer stage, and checks that the parser stops once the queues are full.
+     */
+    public void testSlowWriterBlocksTheParser() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        MovieDao blockedDao = new MovieDao() {
+            @Override
+            public int[] insertAll(Collection<Movie> movies, int chunkSize) {
+                writing.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.insertAll(movies, chunkSize);
+            }
+        };
+        AtomicInteger parsedLines = new AtomicInteger();
+        CatalogParser countingParser = new CatalogParser(CatalogParser.CSV) {
+            @Override
+            public Movie parse(String line) {
+                parsedLines.incrementAndGet();
+                return super.parse(line);
+            }
+        };
+
+        StringBuilder catalog = new StringBuilder();
+        for (int i = 1; i <= 50; i++) catalog.append("Queued Film ").append(i).append(",2010,90,dvd,q.jpg,pirate,Actor 0000001,Director 0000001\n");
+
+        // batchSize 1 and queueCapacity 1: at most (1 * 2 + 3) * 1 movies are held by the pipeline
+        CatalogImporter importer = new CatalogImporter(new ActorDao(), new DirectorDao(), blockedDao, 1, 1);
+        AtomicReference<ImportStats> stats = new AtomicReference<>();
+        Thread importThread = new Thread(() -> {
+            try {
+                stats.set(importer.importFrom(new BufferedReader(new StringReader(catalog.toString())), countingParser));
+            } catch (Exception ex) {
+                throw new IllegalStateException(ex);
+            }
+        });
+        importThread.start();
+
+        assertTrue(writing.await(10, TimeUnit.SECONDS));
+        Thread.sleep(200);
+        assertTrue("Parsed " + parsedLines.get() + " lines while the writer was blocked", parsedLines.get() <= 5);
+
+        release.countDown();
+        importThread.join(TimeUnit.SECONDS.toMillis(30));
+        assertEquals(50, parsedLines.get());
+        assertEquals(50, stats.get().getInsertedMovies());
+    }
+}
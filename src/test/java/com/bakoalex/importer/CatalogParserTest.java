@@ -0,0 +1,51 @@
+package com.bakoalex.importer;
+
+import java.util.Locale;
+
+import com.bakoalex.dto.Movie;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit test for the CatalogParser.
+ */
+public class CatalogParserTest extends TestCase {
+
+    public void testParseQuotedCsvLine() {
+        CatalogParser parser = new CatalogParser(CatalogParser.CSV);
+        Movie movie = parser.parse("\"Crouching Tiger, Hidden Dragon\",2000,120,dvd,cover.jpg,pirate,"
+            + "Chow Yun-fat| Michelle Yeoh ,Ang Lee");
+
+        assertEquals("Crouching Tiger, Hidden Dragon", movie.getTitle());
+        assertEquals(2000, movie.getYear());
+        assertEquals("DVD", movie.getMediaType());
+        assertEquals("PIRATE", movie.getMediaOrigin());
+        assertEquals(2, movie.getActors().size());
+        assertEquals("Michelle Yeoh", movie.getActors().get(1).getName());
+        assertEquals("Ang Lee", movie.getDirectors().get(0).getName());
+    }
+
+    public void testRejectMalformedTsvLine() {
+        CatalogParser parser = CatalogParser.forFileName("dump.TSV");
+        assertTrue(parser.isHeader("title\tyear\tlength"));
+        try {
+            parser.parse("Alien\tnineteen79\t117\tVHS\talien.jpg\tOFFICIAL\tSigourney Weaver\tRidley Scott");
+            fail("Invalid year should be rejected");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    public void testParseDoesNotDependOnTheDefaultLocale() {
+        Locale defaultLocale = Locale.getDefault();
+        Locale.setDefault(new Locale("tr", "TR"));
+        try {
+            CatalogParser parser = CatalogParser.forFileName("DUMP.TSV");
+            assertTrue(parser.isHeader("TITLE\tYEAR"));
+            Movie movie = parser.parse("Alien\t1979\t117\tdigital\talien.jpg\tofficial\tSigourney Weaver\tRidley Scott");
+            assertEquals("DIGITAL", movie.getMediaType());
+            assertEquals("OFFICIAL", movie.getMediaOrigin());
+        } finally {
+            Locale.setDefault(defaultLocale);
+        }
+    }
+}
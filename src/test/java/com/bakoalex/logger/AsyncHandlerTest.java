@@ -0,0 +1,43 @@
+package com.bakoalex.logger;
+
+import java.io.ByteArrayOutputStream;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit test for the AsyncHandler.
+ */
+public class AsyncHandlerTest extends TestCase {
+
+    public void testCloseWritesBufferedRecords() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        AsyncHandler handler = new AsyncHandler(out, 4, AsyncHandler.OverflowPolicy.BLOCK, 1);
+
+        for (int i = 0; i < 10; i++) handler.publish(record(Level.INFO, "record " + i));
+        handler.close();
+
+        String written = out.toString();
+        assertTrue(written.contains("AsyncHandlerTest::record | INFO | record 0\n"));
+        assertTrue(written.contains("record 9\n"));
+        assertEquals(0, handler.getDroppedCount());
+    }
+
+    public void testFormatUsesMonthOfYear() {
+        LogRecord record = record(Level.FINE, "message");
+        // The record keeps its own creation time, setMillis() is deprecated
+        String date = Instant.ofEpochMilli(record.getMillis()).atZone(ZoneId.systemDefault()).toLocalDate().toString();
+        String line = new ConsoleLogger.Format().format(record);
+        assertTrue(line, line.startsWith("[" + date + " "));
+    }
+
+    private static LogRecord record(Level level, String message) {
+        LogRecord record = new LogRecord(level, message);
+        record.setSourceClassName(AsyncHandlerTest.class.getSimpleName());
+        record.setSourceMethodName("record");
+        return record;
+    }
+}
@@ -0,0 +1,49 @@
+package com.bakoalex.logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit test for the Log helpers.
+ */
+public class LogTest extends TestCase {
+
+    private final List<LogRecord> records = new ArrayList<>();
+    private Logger logger;
+
+    @Override
+    protected void setUp() {
+        logger = Logger.getLogger(LogTest.class.getName());
+        logger.setUseParentHandlers(false);
+        logger.addHandler(new Handler() {
+            public void publish(LogRecord record) { records.add(record); }
+            public void flush() {}
+            public void close() {}
+        });
+    }
+
+    public void testDisabledLevelSkipsMessage() {
+        logger.setLevel(Level.INFO);
+        Log.fine(logger, "never ", new Object() {
+            public String toString() { throw new AssertionError("Message built for a disabled level"); }
+        });
+        Log.fine(logger, () -> { throw new AssertionError("Supplier called for a disabled level"); });
+        assertTrue(records.isEmpty());
+    }
+
+    public void testEnabledLevelReportsCaller() {
+        logger.setLevel(Level.FINE);
+        Log.fine(logger, "Running SQL Query: ", "SELECT 1;", " x", 3);
+
+        assertEquals(1, records.size());
+        assertEquals("Running SQL Query: SELECT 1; x3", records.get(0).getMessage());
+        assertEquals(LogTest.class.getName(), records.get(0).getSourceClassName());
+        assertEquals("testEnabledLevelReportsCaller", records.get(0).getSourceMethodName());
+    }
+}
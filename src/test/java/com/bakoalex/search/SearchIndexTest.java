@@ -0,0 +1,76 @@
+package com.bakoalex.search;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.bakoalex.dao.ActorDao;
+import com.bakoalex.database.EmbeddedDatabase;
+import com.bakoalex.dto.Actor;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit test for the tokenizer and the ranking of the search index, and for its updates by the DAOs.
+ */
+public class SearchIndexTest extends TestCase {
+
+    public void testTokensAreLowerCasedWithoutAccents() {
+        assertEquals(Arrays.asList("amelie", "2001", "strasse"), Tokenizer.tokenize("  Am\u00e9lie (2001) - Stra\u00dfe"));
+    }
+
+    public void testPrefixQueriesAreRanked() {
+        SearchIndex index = new SearchIndex();
+        index.put(EntityType.MOVIE, 1, "Star Wars");
+        index.put(EntityType.MOVIE, 2, "Star Wars: The Empire Strikes Back");
+        index.put(EntityType.MOVIE, 3, "Starship Troopers");
+        index.put(EntityType.MOVIE, 4, "Lone Star");
+        index.put(EntityType.ACTOR, 1, "Ringo Starr");
+
+        assertEquals(Arrays.asList("Star Wars", "Star Wars: The Empire Strikes Back"), texts(index.search("star wa", 10)));
+        // The short titles with an exact match first
+        List<String> star = texts(index.search("STAR", 10));
+        assertEquals(Arrays.asList("Lone Star", "Star Wars"), star.subList(0, 2));
+        assertEquals(5, star.size());
+        assertEquals(Arrays.asList("Ringo Starr"), texts(index.search("star", EntityType.ACTOR, 10)));
+        assertEquals(2, index.search("star", 2).size());
+        assertTrue(index.search("star trek", 10).isEmpty());
+    }
+
+    public void testRecordsAreReplacedAndRemoved() {
+        SearchIndex index = new SearchIndex();
+        index.put(EntityType.DIRECTOR, 5, "Jon Smith");
+        index.put(EntityType.DIRECTOR, 5, "John Smith");
+        assertEquals(1, index.size());
+        assertTrue(index.search("jon", 10).isEmpty());
+        assertEquals(5, index.search("john", 10).get(0).getId());
+
+        index.remove(EntityType.DIRECTOR, 5);
+        assertEquals(0, index.size());
+        assertTrue(index.search("smith", 10).isEmpty());
+    }
+
+    public void testSharedIndexFollowsTheDaoWrites() throws Exception {
+        EmbeddedDatabase database = EmbeddedDatabase.start(30, false);
+        try {
+            SearchIndex index = SearchIndex.loadShared();
+            assertEquals(30 + 30 + database.getDirectorCount(), index.size());
+            assertEquals("Movie 0000017", index.search("0000017", EntityType.MOVIE, 1).get(0).getText());
+
+            ActorDao actorDao = new ActorDao();
+            Actor actor = new Actor("Zo\u00eb Searchable");
+            actor.setActorId(actorDao.insert(actor));
+            assertEquals(actor.getActorId(), index.search("zoe sea", 10).get(0).getId());
+
+            actorDao.delete(actor);
+            assertTrue(index.search("zoe sea", 10).isEmpty());
+        } finally {
+            database.stop();
+        }
+    }
+
+    private static List<String> texts(List<SearchHit> hits) {
+        String[] texts = new String[hits.size()];
+        for (int i = 0; i < texts.length; i++) texts[i] = hits.get(i).getText();
+        return Arrays.asList(texts);
+    }
+}
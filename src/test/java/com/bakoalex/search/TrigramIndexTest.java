@@ -0,0 +1,67 @@
+package com.bakoalex.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit test for the trigram similarity and the candidate pruning of the trigram index.
+ */
+public class TrigramIndexTest extends TestCase {
+
+    public void testSimilarity() {
+        assertEquals(1.0, TrigramIndex.similarity("Tom Hanks", "  tom HANKS "), 1e-9);
+        assertEquals(0.0, TrigramIndex.similarity("Tom Hanks", "Meryl Streep"), 1e-9);
+        double typo = TrigramIndex.similarity("Tom Hanks", "Tom Hanx");
+        assertTrue(typo > 0.5 && typo < 1);
+    }
+
+    public void testSimilarNamesAreFound() {
+        TrigramIndex index = new TrigramIndex();
+        index.put(EntityType.ACTOR, 1, "Arnold Schwarzenegger");
+        index.put(EntityType.ACTOR, 2, "Sylvester Stallone");
+        index.put(EntityType.DIRECTOR, 1, "Arnold Schwarzenegger");
+
+        SearchHit hit = index.mostSimilar("Arnold Schwarzeneger", EntityType.ACTOR, 0.7);
+        assertEquals(EntityType.ACTOR, hit.getType());
+        assertEquals(1, hit.getId());
+        assertEquals(2, index.similar("arnold schwarzenneger", null, 0.7, 10).size());
+        assertNull(index.mostSimilar("Arnold Palmer", EntityType.ACTOR, 0.7));
+
+        index.remove(EntityType.ACTOR, 1);
+        assertNull(index.mostSimilar("Arnold Schwarzeneger", EntityType.ACTOR, 0.7));
+        assertEquals(2, index.size());
+    }
+
+    /**
+     * The pruned query has to find exactly the names a full scan finds.
+     */
+    public void testQueryMatchesFullScan() {
+        Random random = new Random(7);
+        List<String> names = new ArrayList<>();
+        TrigramIndex index = new TrigramIndex();
+        for (int id = 1; id <= 2000; id++) {
+            String name = randomWord(random, 4) + " " + randomWord(random, 6);
+            names.add(name);
+            index.put(EntityType.ACTOR, id, name);
+        }
+
+        for (int i = 0; i < 50; i++) {
+            String query = names.get(random.nextInt(names.size()));
+            if (i % 2 == 0) query = query.substring(0, query.length() - 1) + "x";
+            for (double threshold : new double[] { 0.3, 0.5, 0.8 }) {
+                int expected = 0;
+                for (String name : names) if (TrigramIndex.similarity(query, name) >= threshold) expected++;
+                assertEquals(query + " @ " + threshold, expected, index.similar(query, EntityType.ACTOR, threshold, 10_000).size());
+            }
+        }
+    }
+
+    private static String randomWord(Random random, int length) {
+        char[] word = new char[length];
+        for (int i = 0; i < length; i++) word[i] = (char) ('a' + random.nextInt(6));
+        return new String(word);
+    }
+}
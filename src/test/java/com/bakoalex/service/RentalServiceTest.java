@@ -0,0 +1,123 @@
+package com.bakoalex.service;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.bakoalex.dao.RentCounter;
+import com.bakoalex.dao.RentDao;
+import com.bakoalex.database.EmbeddedDatabase;
+import com.bakoalex.dto.Rent;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests of the check-out and check-in against the embedded database, including concurrent check-outs of one movie.
+ */
+public class RentalServiceTest extends TestCase {
+
+    private static final int RENTERS = 100;
+    private static final LocalDate CHECK_OUT_DATE = LocalDate.of(2024, 3, 1);
+    private static final LocalDate CHECK_IN_DATE = LocalDate.of(2024, 3, 8);
+
+    private EmbeddedDatabase database;
+    private RentCounter rentCounter;
+    private RentDao rentDao;
+
+    @Override
+    protected void setUp() throws Exception {
+        database = EmbeddedDatabase.start(20, false);
+        try (Connection conn = database.getDirectConnection()) {
+            PreparedStatement statement = conn.prepareStatement("INSERT INTO renter_persons (name) VALUES (?)");
+            for (int i = 1; i <= RENTERS; i++) {
+                statement.setString(1, "Renter " + i);
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+        // Only flushed by the test
+        rentCounter = new RentCounter(TimeUnit.HOURS.toMillis(1));
+        rentDao = new RentDao();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        rentCounter.close();
+        database.stop();
+    }
+
+    private RentalService service(LocalDate today) {
+        Clock clock = Clock.fixed(today.atStartOfDay(ZoneOffset.UTC).toInstant(), ZoneOffset.UTC);
+        return new RentalService(rentDao, rentCounter, clock);
+    }
+
+    public void testConcurrentCheckOutsHaveOneWinner() throws Exception {
+        RentalService rentalService = service(CHECK_OUT_DATE);
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService threads = Executors.newFixedThreadPool(RENTERS);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int renterId = 1; renterId <= RENTERS; renterId++) {
+                int renter = renterId;
+                results.add(threads.submit(() -> {
+                    start.await();
+                    return rentalService.checkOut(7, renter);
+                }));
+            }
+            start.countDown();
+
+            int winners = 0;
+            for (Future<Boolean> result : results) if (result.get(30, TimeUnit.SECONDS)) winners++;
+            assertEquals(1, winners);
+        } finally {
+            threads.shutdownNow();
+        }
+
+        assertEquals(1, rentDao.getByMovieId(7).size());
+        assertEquals(1, rentCounter.pending(7));
+        assertTrue(isRented(7));
+        assertFalse(rentalService.checkOut(7, 1));
+    }
+
+    public void testCheckInClosesTheRent() throws Exception {
+        assertTrue(service(CHECK_OUT_DATE).checkOut(3, 5));
+        Rent open = rentDao.getOpenRent(3);
+        assertEquals(5, open.getRenterId());
+        assertEquals(CHECK_OUT_DATE, open.getRentStartDate());
+        assertNull(open.getRentEndDate());
+
+        RentalService later = service(CHECK_IN_DATE);
+        assertTrue(later.checkIn(3));
+        assertNull(rentDao.getOpenRent(3));
+        List<Rent> rents = rentDao.getByMovieId(3);
+        assertEquals(1, rents.size());
+        assertEquals(CHECK_IN_DATE, rents.get(0).getRentEndDate());
+        assertFalse(isRented(3));
+
+        // Not rented any more, and can be rented again
+        assertFalse(later.checkIn(3));
+        assertTrue(later.checkOut(3, 6));
+        assertEquals(2, rentDao.getByMovieId(3).size());
+    }
+
+    private boolean isRented(int movieId) throws SQLException {
+        try (Connection conn = database.getDirectConnection()) {
+            PreparedStatement statement = conn.prepareStatement("SELECT is_rented FROM movies WHERE movie_id=?");
+            statement.setInt(1, movieId);
+            ResultSet result = statement.executeQuery();
+            assertTrue(result.next());
+            return result.getBoolean(1);
+        }
+    }
+}